@@ -0,0 +1,109 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.app.AlarmManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * The feed service with its Android context swapped for temporary directories and in-memory
+ * preferences, so the sync and card code can be driven from a plain JVM.
+ * @author betker
+ */
+public class HeadlessService extends YoutubeFeedService {
+	final File root;
+	final MemoryPreferences prefs = new MemoryPreferences();
+	final ContentResolver resolver = new ContentResolver(this);
+	final AlarmManager alarms = new AlarmManager();
+	
+	public HeadlessService(File root){
+		this.root = root;
+		me = this;
+	}
+	
+	@Override
+	public File getFilesDir(){
+		return dir("files");
+	}
+	
+	@Override
+	public File getCacheDir(){
+		return dir("cache");
+	}
+	
+	@Override
+	public File getExternalCacheDir(){
+		return dir("external");
+	}
+	
+	@Override
+	public SharedPreferences getSharedPreferences(String name, int mode){
+		return prefs; //the service only keeps the one store
+	}
+	
+	@Override
+	public ContentResolver getContentResolver(){
+		return resolver;
+	}
+	
+	@Override
+	public Object getSystemService(String name){
+		return ALARM_SERVICE.equals(name) ? alarms : null;
+	}
+	
+	@Override
+	public Context getApplicationContext(){
+		return this;
+	}
+	
+	@Override
+	public String getPackageName(){
+		return "com.appliedanalog.glass.youtube";
+	}
+	
+	File dir(String name){
+		File d = new File(root, name);
+		d.mkdirs();
+		return d;
+	}
+	
+	static File tempDir(String prefix) throws IOException{
+		File dir = File.createTempFile(prefix, "");
+		if(!dir.delete() || !dir.mkdir()){
+			throw new IOException("Unable to create " + dir);
+		}
+		return dir;
+	}
+	
+	static void deleteDir(File dir){
+		File[] files = dir.listFiles();
+		if(files != null){
+			for(File f : files){
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+}
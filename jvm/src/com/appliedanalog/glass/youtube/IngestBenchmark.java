@@ -0,0 +1,375 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Times the feed ingest pipeline on the JVM: reading a feed with ROME, reading it with the
+ * streaming Atom and JSON readers, and building the timeline cards for the result. Each stage is
+ * run over feeds built from a fixture's entries (the JSON feed holds the same videos), at a typical
+ * (25) and a large (500) feed size, and reports its throughput, median and p99 latency and bytes
+ * allocated per entry. Feeds bigger than the fixture cycle through its entries with fresh ids.
+ * <p>
+ * Every stage is measured in FORKS fresh JVMs of its own, so one stage's JIT profile and heap don't
+ * colour the next, and each fork warms up for at least WARMUP_MILLIS before it is timed.
+ * <p>
+ * The Glass and Android classes are the stand-ins from jvm/stubs, so the numbers are for our code
+ * alone and are meant to be compared run to run, before and after a change. In particular the
+ * streaming Atom reader runs on the stand-in android.util.Xml, which is the JDK's StAX parser and
+ * not the pull parser on the device. Run it with:
+ * <pre>
+ * cd jvm && ant bench
+ * </pre>
+ * @author betker
+ */
+public class IngestBenchmark {
+	static final String[] DEFAULT_FIXTURES = { "bench/newsubscriptionvideos.xml", "bench/mixedsubscriptionvideos.xml" };
+	static final String[] STAGES = { "rome", "stream", "json", "cards", "pipeline" };
+	static final int[] FEED_SIZES = { 25, 500 };
+	static final int FORKS = 2;
+	static final int WARMUP_ITERATIONS = 20;
+	static final long WARMUP_MILLIS = 1000;
+	static final int MEASURED_ITERATIONS = 30;
+	//First argument of a forked measurement, followed by the fixture, feed size and stage.
+	static final String MEASURE = "--measure";
+	
+	/**
+	 * One stage of the pipeline.
+	 */
+	interface Stage{
+		/**
+		 * @return The number of entries processed.
+		 */
+		int run() throws Exception;
+	}
+	
+	/**
+	 * Counts entries and keeps them, so the card stage has something to build from.
+	 */
+	static class Collector implements FeedSource.EntryHandler{
+		final ArrayList<VideoInfo> vids = new ArrayList<VideoInfo>();
+		public boolean onEntry(VideoInfo vid){
+			vids.add(vid);
+			return true;
+		}
+	}
+	
+	final YoutubeFeedService service;
+	final File fixtureFile;
+	
+	public IngestBenchmark(YoutubeFeedService svc, File fixture){
+		service = svc;
+		fixtureFile = fixture;
+	}
+	
+	/**
+	 * Usage: IngestBenchmark [fixture.xml ...]
+	 */
+	public static void main(String[] args) throws Exception{
+		if(args.length == 4 && args[0].equals(MEASURE)){
+			System.out.print(measureOne(new File(args[1]), Integer.parseInt(args[2]), args[3]));
+			System.exit(0); //the card code can leave pool threads behind
+		}
+		String report = run(args.length > 0 ? args : DEFAULT_FIXTURES);
+		System.out.print(report);
+		System.exit(report.contains("FAILED") ? 1 : 0);
+	}
+	
+	/**
+	 * Measures every stage of every fixture, each in forked JVMs.
+	 */
+	static String run(String[] fixtures){
+		StringBuilder report = new StringBuilder();
+		report.append("YouTube Feed ingest benchmark, " + MEASURED_ITERATIONS + " iterations after at least " + WARMUP_ITERATIONS +
+					  " and " + WARMUP_MILLIS + " ms of warmup, " + FORKS + " forked JVMs per stage (one line each)\n");
+		report.append(System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + "\n");
+		report.append("stream and pipeline read XML with the JDK's StAX parser behind the android.util.Xml stand-in, not the\n" +
+					  "device's pull parser. Compare these numbers run to run on one machine, not with a device.\n");
+		for(String fixture : fixtures){
+			File file = new File(fixture);
+			try{
+				report.append("\n" + file.getName() + ", " + entries(readFixture(file)).size() + " entries in the fixture\n");
+			}catch(IOException e){
+				report.append("FAILED: " + fixture + ": " + e + "\n");
+				continue;
+			}
+			for(int size : FEED_SIZES){
+				for(String stage : STAGES){
+					for(int fork = 0; fork < FORKS; fork++){
+						report.append(fork(file, size, stage));
+					}
+				}
+			}
+		}
+		return report.toString();
+	}
+	
+	/**
+	 * Runs one measurement in a new JVM with the same class path and heap.
+	 * @return Its report line, or a FAILED line with whatever it printed.
+	 */
+	static String fork(File fixture, int size, String stage){
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Xmx" + (Runtime.getRuntime().maxMemory() / (1024 * 1024)) + "m");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(IngestBenchmark.class.getName());
+		command.add(MEASURE);
+		command.add(fixture.getPath());
+		command.add(Integer.toString(size));
+		command.add(stage);
+		StringBuilder output = new StringBuilder();
+		try{
+			Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), "UTF-8"));
+			try{
+				String line;
+				while((line = reader.readLine()) != null){
+					output.append(line).append('\n');
+				}
+			}finally{
+				reader.close();
+			}
+			if(child.waitFor() == 0){
+				return output.toString();
+			}
+		}catch(Exception e){
+			output.append(e).append('\n');
+		}
+		return "FAILED: " + stage + " " + size + "\n" + output;
+	}
+	
+	/**
+	 * The forked side: builds the feeds and times a single stage.
+	 */
+	static String measureOne(File fixture, int size, String stageName) throws Exception{
+		File work = HeadlessService.tempDir("youtubefeed-bench");
+		try{
+			return new IngestBenchmark(new HeadlessService(work), fixture).measure(stageName, size);
+		}finally{
+			HeadlessService.deleteDir(work);
+		}
+	}
+	
+	String measure(String stageName, int size) throws Exception{
+		final byte[] feed = buildFeed(readFixture(fixtureFile), size);
+		final Collector parsed = new Collector();
+		new AtomEntryReader().read(new ByteArrayInputStream(feed), null, parsed);
+		final byte[] json = buildJsonFeed(parsed.vids);
+		
+		Stage stage;
+		if(stageName.equals("rome")){
+			stage = new Stage(){
+				public int run() throws Exception{
+					Collector c = new Collector();
+					new RomeFeedSource().read(new ByteArrayInputStream(feed), "application/atom+xml; charset=UTF-8", c);
+					return c.vids.size();
+				}
+			};
+		}else if(stageName.equals("stream")){
+			stage = new Stage(){
+				public int run() throws Exception{
+					Collector c = new Collector();
+					new AtomEntryReader().read(new ByteArrayInputStream(feed), null, c);
+					return c.vids.size();
+				}
+			};
+		}else if(stageName.equals("json")){
+			stage = new Stage(){
+				public int run() throws Exception{
+					Collector c = new Collector();
+					new JsonFeedSource().read(new ByteArrayInputStream(json), "application/json; charset=UTF-8", c);
+					return c.vids.size();
+				}
+			};
+		}else if(stageName.equals("cards")){
+			stage = new Stage(){
+				public int run() throws Exception{
+					return buildCards(parsed.vids);
+				}
+			};
+		}else if(stageName.equals("pipeline")){
+			stage = new Stage(){
+				public int run() throws Exception{
+					Collector c = new Collector();
+					new AtomEntryReader().read(new ByteArrayInputStream(feed), null, c);
+					return buildCards(c.vids);
+				}
+			};
+		}else{
+			throw new IllegalArgumentException("Unknown stage " + stageName);
+		}
+		return measure(stageName, size, stage);
+	}
+	
+	int buildCards(ArrayList<VideoInfo> vids){
+		CardContext ctx = new CardContext(service.getContentResolver());
+		for(VideoInfo vid : vids){
+			service.videoCardBuilder(vid, "benchmark-bundle", ctx).build();
+		}
+		return vids.size();
+	}
+	
+	String measure(String name, int size, Stage stage) throws Exception{
+		long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+		for(int i = 0; i < WARMUP_ITERATIONS || System.nanoTime() < warmupEnd; i++){
+			stage.run();
+		}
+		
+		long[] times = new long[MEASURED_ITERATIONS];
+		long allocated = 0, entries = 0;
+		for(int i = 0; i < MEASURED_ITERATIONS; i++){
+			long before = threadAllocatedBytes();
+			long start = System.nanoTime();
+			entries += stage.run();
+			times[i] = System.nanoTime() - start;
+			allocated += threadAllocatedBytes() - before;
+		}
+		
+		long total = 0;
+		for(long t : times){
+			total += t;
+		}
+		Arrays.sort(times);
+		double perSecond = entries / (total / 1e9);
+		double p50 = times[times.length / 2] / 1e6;
+		double p99 = times[Math.min(times.length - 1, (int)Math.ceil(times.length * 0.99) - 1)] / 1e6;
+		long bytesPerEntry = entries == 0 ? 0 : allocated / entries;
+		return String.format("%-9s %4d entries  %9.1f entries/s  p50 %7.2f ms  p99 %7.2f ms  %7d B/entry\n",
+							 name, size, perSecond, p50, p99, bytesPerEntry);
+	}
+	
+	/**
+	 * @return How many bytes this thread has allocated, or 0 if the VM can't tell us.
+	 */
+	static long threadAllocatedBytes(){
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(threads instanceof com.sun.management.ThreadMXBean){
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+	
+	static String readFixture(File file) throws IOException{
+		InputStream in = new FileInputStream(file);
+		try{
+			byte[] buf = new byte[(int)file.length()];
+			int off = 0, read;
+			while(off < buf.length && (read = in.read(buf, off, buf.length - off)) != -1){
+				off += read;
+			}
+			return new String(buf, 0, off, "UTF-8");
+		}finally{
+			in.close();
+		}
+	}
+	
+	/**
+	 * @return The fixture's entries, as they appear in it.
+	 */
+	static ArrayList<String> entries(String fixture){
+		ArrayList<String> entries = new ArrayList<String>();
+		int start = fixture.indexOf("<entry>");
+		while(start != -1){
+			int end = fixture.indexOf("</entry>", start) + "</entry>".length();
+			entries.add(fixture.substring(start, end));
+			start = fixture.indexOf("<entry>", end);
+		}
+		return entries;
+	}
+	
+	/**
+	 * Cycles through the fixture's entries until the feed holds the requested number, each with its own
+	 * id of the same length as a YouTube one.
+	 */
+	static byte[] buildFeed(String fixture, int entries) throws IOException{
+		ArrayList<String> recorded = entries(fixture);
+		if(recorded.isEmpty()){
+			throw new IOException("The fixture has no entries");
+		}
+		int entryStart = fixture.indexOf("<entry>");
+		int entryEnd = fixture.lastIndexOf("</entry>") + "</entry>".length();
+		StringBuilder feed = new StringBuilder(fixture.length() * (entries / recorded.size() + 1));
+		feed.append(fixture, 0, entryStart);
+		for(int i = 0; i < entries; i++){
+			String entry = recorded.get(i % recorded.size());
+			feed.append(entry.replace(videoId(entry), String.format("bench%06d", i)));
+		}
+		feed.append(fixture, entryEnd, fixture.length());
+		return feed.toString().getBytes("UTF-8");
+	}
+	
+	/**
+	 * @return The video id at the end of the entry's id element.
+	 */
+	static String videoId(String entry) throws IOException{
+		int end = entry.indexOf("</id>");
+		int start = entry.lastIndexOf('/', end) + 1;
+		if(end == -1 || start == 0){
+			throw new IOException("Entry without a video id");
+		}
+		return entry.substring(start, end);
+	}
+	
+	/**
+	 * Writes the videos out as the flat JSON list JsonFeedSource reads.
+	 */
+	static byte[] buildJsonFeed(ArrayList<VideoInfo> vids) throws IOException{
+		StringBuilder feed = new StringBuilder();
+		feed.append("{\"videos\":[");
+		for(int i = 0; i < vids.size(); i++){
+			VideoInfo vid = vids.get(i);
+			feed.append(i == 0 ? "{" : ",{");
+			feed.append("\"id\":").append(jsonString(vid.id));
+			feed.append(",\"title\":").append(jsonString(vid.title));
+			feed.append(",\"author\":").append(jsonString(vid.author));
+			feed.append(",\"duration\":").append(jsonString(vid.duration));
+			feed.append(",\"views\":\"").append(vid.views).append('"');
+			feed.append(",\"published\":\"").append(vid.published).append("\"}");
+		}
+		feed.append("]}");
+		return feed.toString().getBytes("UTF-8");
+	}
+	
+	static String jsonString(String s){
+		StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				out.append('\\').append(c);
+			}else if(c < 0x20){
+				out.append(String.format("\\u%04x", (int)c));
+			}else{
+				out.append(c);
+			}
+		}
+		return out.append('"').toString();
+	}
+}
@@ -0,0 +1,146 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.SharedPreferences;
+
+/**
+ * Shared preferences held in memory, for running the service code on the JVM.
+ * @author betker
+ */
+public class MemoryPreferences implements SharedPreferences {
+	final HashMap<String, Object> values = new HashMap<String, Object>();
+	
+	public synchronized Map<String, ?> getAll(){
+		return new HashMap<String, Object>(values);
+	}
+	
+	public String getString(String key, String defValue){
+		return (String)get(key, defValue);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public Set<String> getStringSet(String key, Set<String> defValues){
+		return (Set<String>)get(key, defValues);
+	}
+	
+	public int getInt(String key, int defValue){
+		return (Integer)get(key, defValue);
+	}
+	
+	public long getLong(String key, long defValue){
+		return (Long)get(key, defValue);
+	}
+	
+	public float getFloat(String key, float defValue){
+		return (Float)get(key, defValue);
+	}
+	
+	public boolean getBoolean(String key, boolean defValue){
+		return (Boolean)get(key, defValue);
+	}
+	
+	synchronized Object get(String key, Object defValue){
+		return values.containsKey(key) ? values.get(key) : defValue;
+	}
+	
+	public synchronized boolean contains(String key){
+		return values.containsKey(key);
+	}
+	
+	public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener){
+	}
+	
+	public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener){
+	}
+	
+	public Editor edit(){
+		return new Editor(){
+			final HashMap<String, Object> puts = new HashMap<String, Object>();
+			final HashSet<String> removes = new HashSet<String>();
+			boolean clear = false;
+			
+			public Editor putString(String key, String value){
+				return put(key, value);
+			}
+			
+			public Editor putStringSet(String key, Set<String> values){
+				return put(key, values == null ? null : new HashSet<String>(values));
+			}
+			
+			public Editor putInt(String key, int value){
+				return put(key, value);
+			}
+			
+			public Editor putLong(String key, long value){
+				return put(key, value);
+			}
+			
+			public Editor putFloat(String key, float value){
+				return put(key, value);
+			}
+			
+			public Editor putBoolean(String key, boolean value){
+				return put(key, value);
+			}
+			
+			Editor put(String key, Object value){
+				if(value == null){
+					return remove(key);
+				}
+				puts.put(key, value);
+				removes.remove(key);
+				return this;
+			}
+			
+			public Editor remove(String key){
+				puts.remove(key);
+				removes.add(key);
+				return this;
+			}
+			
+			public Editor clear(){
+				clear = true;
+				return this;
+			}
+			
+			public boolean commit(){
+				synchronized(MemoryPreferences.this){
+					if(clear){
+						values.clear();
+					}
+					for(String key : removes){
+						values.remove(key);
+					}
+					values.putAll(puts);
+				}
+				return true;
+			}
+			
+			public void apply(){
+				commit();
+			}
+		};
+	}
+}
@@ -0,0 +1,248 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * A local HTTP server that plays synthetic YouTube feeds to SyncSimulator. Feed n publishes a video
+ * every cadence(n) of virtual time, and serves the newest feedLength of them built from the recorded
+ * bench entry, with an ETag so unchanged feeds come back as 304s. A set share of the responses are
+ * slowed down or fail with a 500. Which ones is worked out from the feed and the virtual time, so a
+ * run with the same parameters replays the same way. Every MIRROR_EVERY-th feed serves the videos of
+ * the feed before it MIRROR_LAG late, like a playlist of a channel's uploads, so merged feeds have
+ * duplicates to drop.
+ * @author betker
+ */
+public class SimFeedServer {
+	static final String TAG = "SimFeedServer";
+	
+	//The fixture holds a single entry, every occurrence of this is swapped for a unique id per copy.
+	static final String ID_PLACEHOLDER = "VIDEOID0";
+	
+	static final long MIN_CADENCE = 20 * 60 * 1000;
+	static final int CADENCES = 144; //feeds cycle through cadences of 20 minutes up to 48 hours
+	static final int MIRROR_EVERY = 10;
+	static final long MIRROR_LAG = 30 * 60 * 1000;
+	
+	final String head, entry, tail; //the fixture, split around its entry
+	final int feedLength;
+	final int slowPercent, errorPercent;
+	final long slowMillis;
+	final long start; //virtual time the simulation starts at
+	volatile long now; //the virtual clock, moved on by the simulator
+	
+	ServerSocket socket;
+	final AtomicInteger requests = new AtomicInteger(), notModified = new AtomicInteger();
+	final AtomicInteger errors = new AtomicInteger(), slow = new AtomicInteger();
+	
+	public SimFeedServer(String fixture, int feedLength, int slowPercent, long slowMillis, int errorPercent, long start){
+		int entryStart = fixture.indexOf("<entry>");
+		int entryEnd = fixture.lastIndexOf("</entry>") + "</entry>".length();
+		head = fixture.substring(0, entryStart);
+		entry = fixture.substring(entryStart, entryEnd);
+		tail = fixture.substring(entryEnd);
+		this.feedLength = feedLength;
+		this.slowPercent = slowPercent;
+		this.slowMillis = slowMillis;
+		this.errorPercent = errorPercent;
+		this.start = start;
+		now = start;
+	}
+	
+	public void start() throws IOException{
+		socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptor = new Thread("SimFeedServer Thread."){
+			public void run(){
+				while(!socket.isClosed()){
+					try{
+						final Socket conn = socket.accept();
+						new Thread("SimFeedServer Connection."){
+							public void run(){
+								serve(conn);
+							}
+						}.start();
+					}catch(IOException e){
+						if(!socket.isClosed()){
+							Log.v(TAG, "Error accepting connection: " + e.getMessage());
+						}
+					}
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+	
+	public void stop(){
+		try{
+			socket.close();
+		}catch(IOException e){
+			//nothing more to do
+		}
+	}
+	
+	public String feedUrl(int feed){
+		return "http://127.0.0.1:" + socket.getLocalPort() + "/feed/" + feed;
+	}
+	
+	/**
+	 * @return The feed whose videos the given feed serves, itself unless it is a mirror.
+	 */
+	static int source(int feed){
+		return feed % MIRROR_EVERY == MIRROR_EVERY - 1 ? feed - 1 : feed;
+	}
+	
+	long cadence(int feed){
+		return MIN_CADENCE * (1 + feed % CADENCES);
+	}
+	
+	/**
+	 * @return When video i of a feed is published. Each feed has a full feed of videos at the start.
+	 */
+	long published(int feed, long i){
+		long cadence = cadence(feed);
+		return start + (i - feedLength) * cadence + (feed * 7919L) % cadence;
+	}
+	
+	/**
+	 * @return The newest video of the feed at the given time.
+	 */
+	long newest(int feed, long time){
+		long cadence = cadence(feed);
+		long since = time - start - (feed * 7919L) % cadence;
+		//Rounded down, the first video may not be out yet.
+		return (since >= 0 ? since / cadence : -((cadence - 1 - since) / cadence)) + feedLength;
+	}
+	
+	/**
+	 * @return A number from 0 to 99, fixed for the feed and the minute of virtual time.
+	 */
+	static int roll(int feed, long time, int salt){
+		long h = feed * 0x9E3779B97F4A7C15L + (time / 60000) * 0xC2B2AE3D27D4EB4FL + salt;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 32;
+		return (int)((h & Long.MAX_VALUE) % 100);
+	}
+	
+	void serve(Socket conn){
+		try{
+			try{
+				BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), "ISO-8859-1"));
+				String request = in.readLine();
+				String ifNoneMatch = null, line;
+				while((line = in.readLine()) != null && line.length() > 0){
+					if(line.regionMatches(true, 0, "If-None-Match:", 0, 14)){
+						ifNoneMatch = line.substring(14).trim();
+					}
+				}
+				requests.incrementAndGet();
+				OutputStream out = conn.getOutputStream();
+				int feed = feedOf(request);
+				long time = now;
+				if(feed < 0){
+					respond(out, "404 Not Found", null, null);
+				}else if(roll(feed, time, 1) < errorPercent){
+					errors.incrementAndGet();
+					respond(out, "500 Internal Server Error", null, null);
+				}else{
+					if(roll(feed, time, 2) < slowPercent){
+						slow.incrementAndGet();
+						Thread.sleep(slowMillis);
+					}
+					int videos = source(feed);
+					long newest = newest(videos, videos == feed ? time : time - MIRROR_LAG);
+					String etag = "\"" + feed + "-" + newest + "\"";
+					if(etag.equals(ifNoneMatch)){
+						notModified.incrementAndGet();
+						respond(out, "304 Not Modified", etag, null);
+					}else{
+						respond(out, "200 OK", etag, buildFeed(videos, newest));
+					}
+				}
+			}finally{
+				conn.close();
+			}
+		}catch(Exception e){
+			Log.v(TAG, "Error serving feed: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * @return The feed number of a request line such as "GET /feed/12 HTTP/1.1", or -1.
+	 */
+	static int feedOf(String request){
+		if(request == null){
+			return -1;
+		}
+		String[] parts = request.split(" ");
+		if(parts.length < 2 || !parts[1].startsWith("/feed/")){
+			return -1;
+		}
+		try{
+			return Integer.parseInt(parts[1].substring(6));
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+	
+	static void respond(OutputStream out, String status, String etag, byte[] body) throws IOException{
+		StringBuilder headers = new StringBuilder();
+		headers.append("HTTP/1.1 ").append(status).append("\r\n");
+		if(etag != null){
+			headers.append("ETag: ").append(etag).append("\r\n");
+		}
+		if(body != null){
+			headers.append("Content-Type: application/atom+xml; charset=UTF-8\r\n");
+		}
+		headers.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+		headers.append("Connection: close\r\n\r\n");
+		out.write(headers.toString().getBytes("ISO-8859-1"));
+		if(body != null){
+			out.write(body);
+		}
+		out.flush();
+	}
+	
+	byte[] buildFeed(int feed, long newest) throws IOException{
+		SimpleDateFormat atomDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		atomDate.setTimeZone(TimeZone.getTimeZone("UTC"));
+		StringBuilder doc = new StringBuilder(head.length() + tail.length() + entry.length() * feedLength);
+		doc.append(head);
+		for(long i = newest; i > newest - feedLength; i--){
+			String published = atomDate.format(new Date(published(feed, i)));
+			doc.append(entry.replace(ID_PLACEHOLDER, String.format("s%03dv%06d", feed, i))
+							.replaceFirst("<published>[^<]*</published>", "<published>" + published + "</published>"));
+		}
+		doc.append(tail);
+		return doc.toString().getBytes("UTF-8");
+	}
+}
@@ -0,0 +1,360 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.googlex.glass.common.proto.TimelineItem;
+
+/**
+ * Load tests the sync path without Glass or YouTube. Hundreds of synthetic feeds are served from a
+ * local SimFeedServer and synced on a virtual clock: each tick moves the clock on, the due feeds are
+ * fetched, read and collected by the same code the service uses, and their cards are built and
+ * pushed to a TimelineSink that only counts them. When feeds are merged, videos are dropped against
+ * a delivered index the same way the service does it.
+ * <p>
+ * It runs on a plain JVM against HeadlessService and the stand-ins in jvm/stubs, so any Linux box
+ * will do. Start it with:
+ * <pre>
+ * cd jvm && ant simulate -Dsim.args="feeds=500 hours=48"
+ * </pre>
+ * where the arguments are any of the OPTIONS below, plus config=file to use the settings from a copy
+ * of the configuration file so modes can be compared. The report is printed.
+ * @author betker
+ */
+public class SyncSimulator {
+	static final String PREFS = "simulator"; //validators and poll state for the simulated feeds
+	static final String DEFAULT_FIXTURE = "bench/newsubscriptionvideos.xml";
+	static final long TICK = 5 * 60 * 1000; //virtual time between wakeups
+	
+	//The load options, in the order of their defaults below. entries is per feed, hours is virtual time.
+	static final String[] OPTIONS = { "feeds", "entries", "hours", "slowPercent", "slowMillis", "errorPercent" };
+	static final int[] DEFAULTS = { 200, 25, 24, 5, 2000, 2 };
+	
+	/**
+	 * Counts what would have been written to the timeline.
+	 */
+	static class CountingSink implements TimelineSink{
+		final AtomicInteger inserts = new AtomicInteger(), cards = new AtomicInteger();
+		final AtomicInteger batches = new AtomicInteger(), ops = new AtomicInteger();
+		final AtomicInteger hydrated = new AtomicInteger();
+		
+		public void insert(List<TimelineItem> items){
+			inserts.incrementAndGet();
+			cards.addAndGet(items.size());
+		}
+		
+		public void apply(ArrayList<ContentProviderOperation> batch){
+			batches.incrementAndGet();
+			ops.addAndGet(batch.size());
+		}
+		
+		public void hydrate(List<CardHydrator.Job> stubs, Runnable onDone){
+			hydrated.addAndGet(stubs.size());
+			onDone.run();
+		}
+	}
+	
+	final YoutubeFeedService service;
+	final File fixtureFile;
+	final int feeds, entries, hours, slowPercent, slowMillis, errorPercent;
+	
+	final CountingSink sink = new CountingSink();
+	final AtomicInteger fetches = new AtomicInteger(), failures = new AtomicInteger();
+	final AtomicLong entriesRead = new AtomicLong(), wireBytes = new AtomicLong();
+	SeenVideoIndex deliveredIndex; //null unless feeds are merged
+	final AtomicLong droppedElsewhere = new AtomicLong();
+	long delivered = 0;
+	long heapHighWater = 0, nonHeapHighWater = 0;
+	
+	/**
+	 * @param load The value of each of the OPTIONS.
+	 */
+	public SyncSimulator(YoutubeFeedService svc, File fixture, int[] load){
+		service = svc;
+		fixtureFile = fixture;
+		feeds = load[0];
+		entries = load[1];
+		hours = load[2];
+		slowPercent = load[3];
+		slowMillis = load[4];
+		errorPercent = load[5];
+	}
+	
+	/**
+	 * Usage: SyncSimulator [name=value ...], with names from OPTIONS, config=file and fixture=file.
+	 */
+	public static void main(String[] args) throws IOException{
+		int[] load = DEFAULTS.clone();
+		String config = null, fixture = DEFAULT_FIXTURE;
+		for(String arg : args){
+			int eq = arg.indexOf('=');
+			String name = eq < 0 ? arg : arg.substring(0, eq), value = arg.substring(eq + 1);
+			int option = Arrays.asList(OPTIONS).indexOf(name);
+			if(name.equals("config")){
+				config = value;
+			}else if(name.equals("fixture")){
+				fixture = value;
+			}else if(option >= 0 && eq > 0){
+				load[option] = Integer.parseInt(value);
+			}else{
+				System.err.println("Unknown argument " + arg + ", expected name=value with a name from " + Arrays.toString(OPTIONS) +
+								   ", config or fixture.");
+				System.exit(2);
+			}
+		}
+		
+		File work = HeadlessService.tempDir("youtubefeed-sim");
+		String report;
+		try{
+			HeadlessService service = new HeadlessService(work);
+			if(config != null){
+				File file = new File(config);
+				if(!file.isFile()){
+					throw new IOException("No configuration file at " + file);
+				}
+				service.useConfiguration(FeedConfig.parse(file, file.lastModified(), file.length()));
+			}else{
+				service.useConfiguration(new FeedConfig(null, 0, 0));
+			}
+			report = new SyncSimulator(service, new File(fixture), load).run();
+		}finally{
+			HeadlessService.deleteDir(work);
+		}
+		System.out.print(report);
+		//Exit rather than wait on the sync scheduler's idle threads to time out.
+		System.exit(report.contains("FAILED") ? 1 : 0);
+	}
+	
+	public String run(){
+		StringBuilder report = new StringBuilder();
+		report.append("YouTube Feed sync simulation: " + feeds + " feeds of " + entries + " entries, " + hours + " virtual hours in "
+					  + (TICK / 60000) + " minute ticks, " + slowPercent + "% slow responses (" + slowMillis + " ms), "
+					  + errorPercent + "% errors\n");
+		//Buffered like the service's own preferences, and flushed once per tick the same way.
+		StateStore prefs = new StateStore(service.getSharedPreferences(PREFS, Context.MODE_PRIVATE));
+		prefs.edit().clear().commit();
+		File seenDir = new File(service.getCacheDir(), "simulator");
+		ArrayList<String> feedUrls = new ArrayList<String>();
+		SimFeedServer server = null;
+		try{
+			long start = System.currentTimeMillis();
+			server = new SimFeedServer(IngestBenchmark.readFixture(fixtureFile), entries, slowPercent, slowMillis, errorPercent, start);
+			server.start();
+			for(int i = 0; i < feeds; i++){
+				feedUrls.add(server.feedUrl(i));
+			}
+			if(service.usingMergedBundles()){
+				//Sized the way the service sizes its own, for a full page of every feed.
+				deliveredIndex = SeenVideoIndex.forFeed(seenDir, YoutubeFeedService.ALL_FEEDS,
+														SeenVideoIndex.capacityFor(feeds * YoutubeFeedService.FEED_PAGE_ENTRIES));
+			}
+			report.append(simulate(server, feedUrls, prefs, seenDir, start));
+		}catch(Exception e){
+			e.printStackTrace();
+			report.append("FAILED: " + e + "\n");
+		}finally{
+			if(server != null){
+				server.stop();
+			}
+			cleanUp(feedUrls, prefs, seenDir);
+		}
+		return report.toString();
+	}
+	
+	String simulate(SimFeedServer server, ArrayList<String> feedUrls, StateStore prefs, File seenDir, long start) throws Exception{
+		AdaptivePollScheduler polls = new AdaptivePollScheduler(prefs, service.updateInterval, service.minUpdateInterval, service.maxUpdateInterval);
+		FeedSyncScheduler<FeedResult> syncs = new FeedSyncScheduler<FeedResult>();
+		ArrayList<Long> wakeupMillis = new ArrayList<Long>();
+		long syncNanos = 0, writeNanos = 0, lastPoll = Long.MIN_VALUE;
+		long end = start + hours * 60L * 60 * 1000;
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for(long now = start + TICK; now <= end; now += TICK){
+			server.now = now;
+			List<String> due;
+			if(service.adaptivePolling){
+				due = polls.dueFeeds(feedUrls, now);
+			}else if(lastPoll == Long.MIN_VALUE || now - lastPoll >= service.updateInterval){
+				due = feedUrls;
+				lastPoll = now;
+			}else{
+				continue;
+			}
+			if(due.isEmpty()){
+				continue;
+			}
+			
+			long wakeStart = System.nanoTime();
+			List<FeedResult> results = sync(syncs, due, polls, prefs, seenDir, now);
+			long synced = System.nanoTime();
+			deliver(results, prefs, seenDir, now);
+			//Syncs run one at a time here, so nothing can have been asked for again meanwhile.
+			syncs.release(due);
+			prefs.flush();
+			long delivered = System.nanoTime();
+			syncNanos += synced - wakeStart;
+			writeNanos += delivered - synced;
+			wakeupMillis.add((delivered - wakeStart) / 1000000);
+			
+			heapHighWater = Math.max(heapHighWater, memory.getHeapMemoryUsage().getUsed());
+			nonHeapHighWater = Math.max(nonHeapHighWater, memory.getNonHeapMemoryUsage().getUsed());
+		}
+		
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("wakeups   %d, fetches %d (%d not modified, %d failed, %d slowed), %d entries read, %d videos delivered, %d KB over the wire\n",
+									wakeupMillis.size(), fetches.get(), server.notModified.get(), failures.get(), server.slow.get(),
+									entriesRead.get(), delivered, wireBytes.get() / 1024));
+		if(deliveredIndex != null){
+			report.append(String.format("merged    %d videos dropped as already delivered from another feed\n", droppedElsewhere.get()));
+		}
+		double syncSeconds = syncNanos / 1e9;
+		report.append(String.format("sync      %.1f s total, %.1f fetches/s, %.1f entries/s, %.1f s writing cards\n",
+									syncSeconds, fetches.get() / syncSeconds, entriesRead.get() / syncSeconds, writeNanos / 1e9));
+		if(!wakeupMillis.isEmpty()){
+			Collections.sort(wakeupMillis);
+			report.append(String.format("wakeup    p50 %d ms, p99 %d ms, max %d ms\n", wakeupMillis.get(wakeupMillis.size() / 2),
+										wakeupMillis.get(Math.min(wakeupMillis.size() - 1, (int)Math.ceil(wakeupMillis.size() * 0.99) - 1)),
+										wakeupMillis.get(wakeupMillis.size() - 1)));
+		}
+		report.append(String.format("timeline  %d inserts (%d cards), %d batches (%d operations), %d stubs hydrated\n",
+									sink.inserts.get(), sink.cards.get(), sink.batches.get(), sink.ops.get(), sink.hydrated.get()));
+		report.append(String.format("memory    heap high-water %d KB, non-heap high-water %d KB\n",
+									heapHighWater / 1024, nonHeapHighWater / 1024));
+		return report.toString();
+	}
+	
+	/**
+	 * Fetches and reads the due feeds on the sync scheduler, and waits for them all.
+	 */
+	List<FeedResult> sync(FeedSyncScheduler<FeedResult> syncs, List<String> due, final AdaptivePollScheduler polls,
+						  final SharedPreferences prefs, final File seenDir, final long now) throws InterruptedException{
+		final CountDownLatch done = new CountDownLatch(1);
+		final ArrayList<FeedResult> finished = new ArrayList<FeedResult>();
+		boolean started = syncs.syncAll(due, new FeedSyncScheduler.FeedSyncer<FeedResult>(){
+			public FeedResult syncFeed(String feedUrl) throws Exception{
+				try{
+					FeedResult result = fetch(feedUrl, prefs, seenDir);
+					polls.recordSync(feedUrl, result, now);
+					return result;
+				}catch(Exception e){
+					failures.incrementAndGet();
+					polls.recordFailure(feedUrl, now);
+					throw e;
+				}
+			}
+		}, new FeedSyncScheduler.CompletionHandler<FeedResult>(){
+			public void onSyncComplete(List<FeedResult> results, List<String> feedUrls){
+				finished.addAll(results);
+				done.countDown();
+			}
+		});
+		if(started){
+			done.await();
+		}
+		return finished;
+	}
+	
+	/**
+	 * The read half of YoutubeFeedService.parseFeed(), against the simulator's own state.
+	 */
+	FeedResult fetch(String feedUrl, SharedPreferences prefs, File seenDir) throws Exception{
+		fetches.incrementAndGet();
+		FeedFetcher fetcher = new FeedFetcher(prefs, service.fetchTimeout, service.maxFeedSize);
+		FeedFetcher.Response response = fetcher.fetch(feedUrl);
+		if(response == null){
+			return null;
+		}
+		try{
+			YoutubeFeedService.FeedCollector collector = service.new FeedCollector(SeenVideoIndex.forFeed(seenDir, feedUrl), deliveredIndex, null);
+			FeedSource source = service.getFeedSource(feedUrl, response.getContentType());
+			entriesRead.addAndGet(source.read(response.getStream(), response.getContentType(), collector));
+			droppedElsewhere.addAndGet(collector.duplicates);
+			wireBytes.addAndGet(response.getWireBytes());
+			ArrayList<VideoInfo> vids = collector.hasNewVideos() ? collector.vids : new ArrayList<VideoInfo>();
+			return new FeedResult(feedUrl, response, vids, collector.readIds, collector.readPublished);
+		}finally{
+			response.close();
+		}
+	}
+	
+	/**
+	 * Pushes the results through the service's card path to the counting sink, then commits them.
+	 */
+	void deliver(List<FeedResult> results, SharedPreferences prefs, File seenDir, long now) throws Exception{
+		ArrayList<FeedResult> toPush = new ArrayList<FeedResult>();
+		String mergedBundleId = service.usingMergedBundles() ? UUID.randomUUID().toString() : null;
+		for(FeedResult result : results){
+			if(!result.vids.isEmpty()){
+				result.bundleId = mergedBundleId;
+				toPush.add(result);
+			}
+		}
+		if(!toPush.isEmpty()){
+			service.pushCards(toPush, false, sink);
+		}
+		for(FeedResult result : results){
+			SeenVideoIndex seen = SeenVideoIndex.forFeed(seenDir, result.feedUrl);
+			for(String id : result.readIds){
+				seen.markSeen(id, now);
+			}
+			result.response.commitValidators();
+			delivered += result.vids.size();
+			if(deliveredIndex != null){
+				for(VideoInfo vid : result.vids){
+					deliveredIndex.markSeen(vid.id, now);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Throws away everything the simulated feeds left behind.
+	 */
+	void cleanUp(List<String> feedUrls, StateStore prefs, File seenDir){
+		SeenVideoIndex.release(YoutubeFeedService.ALL_FEEDS);
+		for(String feedUrl : feedUrls){
+			SeenVideoIndex.release(feedUrl);
+			//Bundle reuse mode tracks its bundles next to the real ones.
+			TimelineBundleTracker.load(service.getBundleStateDir(), feedUrl).file.delete();
+		}
+		File[] files = seenDir.listFiles();
+		if(files != null){
+			for(File f : files){
+				f.delete();
+			}
+		}
+		seenDir.delete();
+		prefs.edit().clear().commit();
+		prefs.flush();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.app;
+
+/**
+ * JVM stand-in for the alarm service. Alarms are accepted and never fire.
+ */
+public class AlarmManager {
+	public static final int RTC_WAKEUP = 0;
+	public static final int RTC = 1;
+	public static final int ELAPSED_REALTIME_WAKEUP = 2;
+	public static final int ELAPSED_REALTIME = 3;
+	public static final long INTERVAL_FIFTEEN_MINUTES = 15 * 60 * 1000L;
+	
+	public void set(int type, long triggerAtMillis, PendingIntent operation){
+	}
+	
+	public void setRepeating(int type, long triggerAtMillis, long intervalMillis, PendingIntent operation){
+	}
+	
+	public void setInexactRepeating(int type, long triggerAtMillis, long intervalMillis, PendingIntent operation){
+	}
+	
+	public void cancel(PendingIntent operation){
+	}
+}
@@ -0,0 +1,45 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * JVM stand-in for a pending intent, it just holds on to the intent.
+ */
+public final class PendingIntent {
+	public static final int FLAG_NO_CREATE = 1 << 29;
+	public static final int FLAG_UPDATE_CURRENT = 1 << 27;
+	
+	final Intent intent;
+	
+	PendingIntent(Intent intent){
+		this.intent = intent;
+	}
+	
+	public static PendingIntent getService(Context context, int requestCode, Intent intent, int flags){
+		return new PendingIntent(intent);
+	}
+	
+	public Intent getIntent(){
+		return intent;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.app;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * JVM stand-in for a service. Nothing starts or stops it, the caller drives the lifecycle methods.
+ */
+public abstract class Service extends ContextWrapper {
+	public static final int START_STICKY = 1;
+	public static final int START_NOT_STICKY = 2;
+	
+	public void onCreate(){
+	}
+	
+	public int onStartCommand(Intent intent, int flags, int startId){
+		return START_STICKY;
+	}
+	
+	public void onDestroy(){
+	}
+	
+	public void onLowMemory(){
+	}
+	
+	public void onTrimMemory(int level){
+	}
+	
+	public abstract IBinder onBind(Intent intent);
+	
+	public final void stopSelf(){
+	}
+	
+	public final void stopSelf(int startId){
+	}
+	
+	public final boolean stopSelfResult(int startId){
+		return true;
+	}
+}
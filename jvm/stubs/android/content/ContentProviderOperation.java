@@ -0,0 +1,110 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.content;
+
+import android.net.Uri;
+
+/**
+ * JVM stand-in for a content provider operation. It records what it was built with.
+ */
+public class ContentProviderOperation {
+	public static final int TYPE_INSERT = 1;
+	public static final int TYPE_UPDATE = 2;
+	public static final int TYPE_DELETE = 3;
+	
+	final int type;
+	final Uri uri;
+	final ContentValues values;
+	final String selection;
+	final String[] selectionArgs;
+	
+	ContentProviderOperation(Builder b){
+		type = b.type;
+		uri = b.uri;
+		values = b.values;
+		selection = b.selection;
+		selectionArgs = b.selectionArgs;
+	}
+	
+	public static Builder newInsert(Uri uri){
+		return new Builder(TYPE_INSERT, uri);
+	}
+	
+	public static Builder newUpdate(Uri uri){
+		return new Builder(TYPE_UPDATE, uri);
+	}
+	
+	public static Builder newDelete(Uri uri){
+		return new Builder(TYPE_DELETE, uri);
+	}
+	
+	public int getType(){
+		return type;
+	}
+	
+	public Uri getUri(){
+		return uri;
+	}
+	
+	public ContentValues getValues(){
+		return values;
+	}
+	
+	public String getSelection(){
+		return selection;
+	}
+	
+	public String[] getSelectionArgs(){
+		return selectionArgs;
+	}
+	
+	public static class Builder {
+		final int type;
+		final Uri uri;
+		ContentValues values = new ContentValues();
+		String selection;
+		String[] selectionArgs;
+		
+		Builder(int type, Uri uri){
+			this.type = type;
+			this.uri = uri;
+		}
+		
+		public Builder withValues(ContentValues v){
+			values.putAll(v);
+			return this;
+		}
+		
+		public Builder withValue(String key, Object value){
+			values.values.put(key, value);
+			return this;
+		}
+		
+		public Builder withSelection(String sel, String[] args){
+			selection = sel;
+			selectionArgs = args;
+			return this;
+		}
+		
+		public ContentProviderOperation build(){
+			return new ContentProviderOperation(this);
+		}
+	}
+}
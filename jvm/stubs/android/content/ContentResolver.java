@@ -0,0 +1,69 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.content;
+
+import java.util.ArrayList;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.RemoteException;
+
+/**
+ * JVM stand-in for the content resolver. There are no providers behind it: queries come back empty,
+ * and writes succeed without going anywhere.
+ */
+public class ContentResolver {
+	final Context context;
+	
+	public ContentResolver(Context context){
+		this.context = context;
+	}
+	
+	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder){
+		return SQLiteDatabase.EMPTY;
+	}
+	
+	public Uri insert(Uri uri, ContentValues values){
+		return uri;
+	}
+	
+	public int bulkInsert(Uri uri, ContentValues[] values){
+		return values.length;
+	}
+	
+	public int update(Uri uri, ContentValues values, String where, String[] selectionArgs){
+		return 0;
+	}
+	
+	public int delete(Uri uri, String where, String[] selectionArgs){
+		return 0;
+	}
+	
+	public ContentProviderResult[] applyBatch(String authority, ArrayList<ContentProviderOperation> operations)
+			throws RemoteException, OperationApplicationException{
+		ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+		for(int i = 0; i < results.length; i++){
+			ContentProviderOperation op = operations.get(i);
+			results[i] = op.getType() == ContentProviderOperation.TYPE_INSERT ? new ContentProviderResult(op.getUri()) : new ContentProviderResult(0);
+		}
+		return results;
+	}
+}
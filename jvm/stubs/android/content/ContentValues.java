@@ -0,0 +1,85 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM stand-in for content values, a plain map.
+ */
+public final class ContentValues {
+	final HashMap<String, Object> values = new HashMap<String, Object>();
+	
+	public void put(String key, String value){
+		values.put(key, value);
+	}
+	
+	public void put(String key, Integer value){
+		values.put(key, value);
+	}
+	
+	public void put(String key, Long value){
+		values.put(key, value);
+	}
+	
+	public void put(String key, Boolean value){
+		values.put(key, value);
+	}
+	
+	public void put(String key, byte[] value){
+		values.put(key, value);
+	}
+	
+	public void putNull(String key){
+		values.put(key, null);
+	}
+	
+	public void putAll(ContentValues other){
+		values.putAll(other.values);
+	}
+	
+	public Object get(String key){
+		return values.get(key);
+	}
+	
+	public String getAsString(String key){
+		Object value = values.get(key);
+		return value == null ? null : value.toString();
+	}
+	
+	public Long getAsLong(String key){
+		Object value = values.get(key);
+		return value == null ? null : Long.valueOf(value.toString());
+	}
+	
+	public boolean containsKey(String key){
+		return values.containsKey(key);
+	}
+	
+	public Set<Map.Entry<String, Object>> valueSet(){
+		return values.entrySet();
+	}
+	
+	public int size(){
+		return values.size();
+	}
+}
@@ -0,0 +1,74 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.content;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for a context. Everything comes back empty, a harness overrides what it needs.
+ */
+public abstract class Context {
+	public static final String ALARM_SERVICE = "alarm";
+	public static final String CONNECTIVITY_SERVICE = "connectivity";
+	public static final int MODE_PRIVATE = 0;
+	
+	public Context getApplicationContext(){
+		return this;
+	}
+	
+	public String getPackageName(){
+		return null;
+	}
+	
+	public Object getSystemService(String name){
+		return null;
+	}
+	
+	public ContentResolver getContentResolver(){
+		return null;
+	}
+	
+	public SharedPreferences getSharedPreferences(String name, int mode){
+		return null;
+	}
+	
+	public File getFilesDir(){
+		return null;
+	}
+	
+	public File getCacheDir(){
+		return null;
+	}
+	
+	public File getExternalCacheDir(){
+		return null;
+	}
+	
+	public ComponentName startService(Intent service){
+		return null;
+	}
+	
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter){
+		return null;
+	}
+	
+	public void unregisterReceiver(BroadcastReceiver receiver){
+	}
+}
@@ -0,0 +1,116 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.content;
+
+import android.net.Uri;
+import android.os.Bundle;
+
+/**
+ * JVM stand-in for an intent, holding its data URI and extras.
+ */
+public class Intent {
+	String action;
+	Uri data;
+	Bundle extras;
+	
+	public Intent(){
+	}
+	
+	public Intent(String action){
+		this.action = action;
+	}
+	
+	public Intent(Context context, Class<?> cls){
+	}
+	
+	public String getAction(){
+		return action;
+	}
+	
+	public Intent setAction(String action){
+		this.action = action;
+		return this;
+	}
+	
+	public Uri getData(){
+		return data;
+	}
+	
+	public String getDataString(){
+		return data == null ? null : data.toString();
+	}
+	
+	public Intent setData(Uri data){
+		this.data = data;
+		return this;
+	}
+	
+	public Bundle getExtras(){
+		return extras == null ? null : new Bundle(extras);
+	}
+	
+	Bundle extras(){
+		if(extras == null){
+			extras = new Bundle();
+		}
+		return extras;
+	}
+	
+	public Intent putExtra(String key, int value){
+		extras().putInt(key, value);
+		return this;
+	}
+	
+	public Intent putExtra(String key, long value){
+		extras().putLong(key, value);
+		return this;
+	}
+	
+	public Intent putExtra(String key, boolean value){
+		extras().putBoolean(key, value);
+		return this;
+	}
+	
+	public Intent putExtra(String key, String value){
+		extras().putString(key, value);
+		return this;
+	}
+	
+	public int getIntExtra(String key, int defaultValue){
+		return extras == null ? defaultValue : extras.getInt(key, defaultValue);
+	}
+	
+	public long getLongExtra(String key, long defaultValue){
+		return extras == null ? defaultValue : extras.getLong(key, defaultValue);
+	}
+	
+	public boolean getBooleanExtra(String key, boolean defaultValue){
+		return extras == null ? defaultValue : extras.getBoolean(key, defaultValue);
+	}
+	
+	public String getStringExtra(String key){
+		return extras == null ? null : extras.getString(key);
+	}
+	
+	@Override
+	public String toString(){
+		return "Intent { act=" + action + " dat=" + data + " extras=" + extras + " }";
+	}
+}
@@ -0,0 +1,56 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package android.content;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM stand-in for the Android interface of the same name.
+ */
+public interface SharedPreferences {
+	public interface OnSharedPreferenceChangeListener{
+		void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key);
+	}
+	
+	public interface Editor{
+		Editor putString(String key, String value);
+		Editor putStringSet(String key, Set<String> values);
+		Editor putInt(String key, int value);
+		Editor putLong(String key, long value);
+		Editor putFloat(String key, float value);
+		Editor putBoolean(String key, boolean value);
+		Editor remove(String key);
+		Editor clear();
+		boolean commit();
+		void apply();
+	}
+	
+	Map<String, ?> getAll();
+	String getString(String key, String defValue);
+	Set<String> getStringSet(String key, Set<String> defValues);
+	int getInt(String key, int defValue);
+	long getLong(String key, long defValue);
+	float getFloat(String key, float defValue);
+	boolean getBoolean(String key, boolean defValue);
+	boolean contains(String key);
+	Editor edit();
+	void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+	void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener);
+}
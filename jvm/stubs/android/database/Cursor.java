@@ -0,0 +1,37 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * JVM stand-in for a query result.
+ */
+public interface Cursor extends Closeable {
+	int getCount();
+	boolean moveToFirst();
+	boolean moveToNext();
+	int getColumnIndex(String columnName);
+	boolean isNull(int columnIndex);
+	String getString(int columnIndex);
+	int getInt(int columnIndex);
+	long getLong(int columnIndex);
+	void close();
+}
@@ -0,0 +1,118 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.database.sqlite;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+/**
+ * JVM stand-in for a database. There is no SQLite behind it: statements are accepted and
+ * dropped, and every query comes back empty.
+ */
+public class SQLiteDatabase {
+	public static final int CONFLICT_IGNORE = 4;
+	public static final int CONFLICT_REPLACE = 5;
+	
+	/**
+	 * The result of every query.
+	 */
+	public static final Cursor EMPTY = new Cursor(){
+		public int getCount(){
+			return 0;
+		}
+		
+		public boolean moveToFirst(){
+			return false;
+		}
+		
+		public boolean moveToNext(){
+			return false;
+		}
+		
+		public int getColumnIndex(String columnName){
+			return -1;
+		}
+		
+		public boolean isNull(int columnIndex){
+			throw new IndexOutOfBoundsException();
+		}
+		
+		public String getString(int columnIndex){
+			throw new IndexOutOfBoundsException();
+		}
+		
+		public int getInt(int columnIndex){
+			throw new IndexOutOfBoundsException();
+		}
+		
+		public long getLong(int columnIndex){
+			throw new IndexOutOfBoundsException();
+		}
+		
+		public void close(){
+		}
+	};
+	
+	public void execSQL(String sql){
+	}
+	
+	public void execSQL(String sql, Object[] bindArgs){
+	}
+	
+	public SQLiteStatement compileStatement(String sql){
+		return new SQLiteStatement();
+	}
+	
+	public Cursor rawQuery(String sql, String[] selectionArgs){
+		return EMPTY;
+	}
+	
+	public Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy){
+		return EMPTY;
+	}
+	
+	public Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit){
+		return EMPTY;
+	}
+	
+	public long insertWithOnConflict(String table, String nullColumnHack, ContentValues values, int conflictAlgorithm){
+		return -1;
+	}
+	
+	public int update(String table, ContentValues values, String whereClause, String[] whereArgs){
+		return 0;
+	}
+	
+	public int delete(String table, String whereClause, String[] whereArgs){
+		return 0;
+	}
+	
+	public void beginTransaction(){
+	}
+	
+	public void setTransactionSuccessful(){
+	}
+	
+	public void endTransaction(){
+	}
+	
+	public void close(){
+	}
+}
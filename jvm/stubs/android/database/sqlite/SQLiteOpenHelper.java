@@ -0,0 +1,52 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.database.sqlite;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the database helper, handing out the empty database from SQLiteDatabase.
+ */
+public abstract class SQLiteOpenHelper {
+	SQLiteDatabase db;
+	
+	public SQLiteOpenHelper(Context context, String name, Object factory, int version){
+	}
+	
+	public abstract void onCreate(SQLiteDatabase db);
+	
+	public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+	
+	public synchronized SQLiteDatabase getWritableDatabase(){
+		if(db == null){
+			db = new SQLiteDatabase();
+			onCreate(db);
+		}
+		return db;
+	}
+	
+	public SQLiteDatabase getReadableDatabase(){
+		return getWritableDatabase();
+	}
+	
+	public synchronized void close(){
+		db = null;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.database.sqlite;
+
+/**
+ * JVM stand-in for a compiled statement, see SQLiteDatabase.
+ */
+public class SQLiteStatement {
+	public void bindString(int index, String value){
+	}
+	
+	public void bindLong(int index, long value){
+	}
+	
+	public void bindNull(int index){
+	}
+	
+	public void clearBindings(){
+	}
+	
+	public void execute(){
+	}
+	
+	public long executeInsert(){
+		return -1;
+	}
+	
+	public int executeUpdateDelete(){
+		return 0;
+	}
+	
+	public long simpleQueryForLong(){
+		return 0;
+	}
+	
+	public void close(){
+	}
+}
@@ -0,0 +1,79 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.net;
+
+import java.net.URI;
+
+/**
+ * JVM stand-in for a URI.
+ */
+public class Uri {
+	final String uri;
+	
+	Uri(String uri){
+		this.uri = uri;
+	}
+	
+	public static Uri parse(String uriString){
+		return new Uri(uriString);
+	}
+	
+	public static Uri withAppendedPath(Uri baseUri, String pathSegment){
+		return new Uri(baseUri.uri + (baseUri.uri.endsWith("/") ? "" : "/") + pathSegment);
+	}
+	
+	public String getScheme(){
+		return URI.create(uri).getScheme();
+	}
+	
+	public String getAuthority(){
+		return URI.create(uri).getAuthority();
+	}
+	
+	public String getHost(){
+		return URI.create(uri).getHost();
+	}
+	
+	public String getLastPathSegment(){
+		String path = URI.create(uri).getPath();
+		if(path == null || path.length() == 0){
+			return null;
+		}
+		if(path.endsWith("/")){
+			path = path.substring(0, path.length() - 1);
+		}
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+	
+	@Override
+	public boolean equals(Object o){
+		return o instanceof Uri && ((Uri)o).uri.equals(uri);
+	}
+	
+	@Override
+	public int hashCode(){
+		return uri.hashCode();
+	}
+	
+	@Override
+	public String toString(){
+		return uri;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.os;
+
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * JVM stand-in for a bundle of extras, a plain map.
+ */
+public final class Bundle {
+	final HashMap<String, Object> values;
+	
+	public Bundle(){
+		values = new HashMap<String, Object>();
+	}
+	
+	public Bundle(Bundle b){
+		values = new HashMap<String, Object>(b.values);
+	}
+	
+	public Set<String> keySet(){
+		return values.keySet();
+	}
+	
+	public boolean containsKey(String key){
+		return values.containsKey(key);
+	}
+	
+	public void putInt(String key, int value){
+		values.put(key, value);
+	}
+	
+	public void putLong(String key, long value){
+		values.put(key, value);
+	}
+	
+	public void putBoolean(String key, boolean value){
+		values.put(key, value);
+	}
+	
+	public void putString(String key, String value){
+		values.put(key, value);
+	}
+	
+	public int getInt(String key){
+		return getInt(key, 0);
+	}
+	
+	public int getInt(String key, int defaultValue){
+		Object value = values.get(key);
+		return value instanceof Integer ? (Integer)value : defaultValue;
+	}
+	
+	public long getLong(String key){
+		return getLong(key, 0);
+	}
+	
+	public long getLong(String key, long defaultValue){
+		Object value = values.get(key);
+		return value instanceof Long ? (Long)value : defaultValue;
+	}
+	
+	public boolean getBoolean(String key){
+		return getBoolean(key, false);
+	}
+	
+	public boolean getBoolean(String key, boolean defaultValue){
+		Object value = values.get(key);
+		return value instanceof Boolean ? (Boolean)value : defaultValue;
+	}
+	
+	public String getString(String key){
+		Object value = values.get(key);
+		return value instanceof String ? (String)value : null;
+	}
+	
+	@Override
+	public String toString(){
+		return "Bundle" + values;
+	}
+}
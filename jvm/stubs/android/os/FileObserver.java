@@ -0,0 +1,47 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.os;
+
+/**
+ * JVM stand-in for a file observer. It never reports anything.
+ */
+public abstract class FileObserver {
+	public static final int MODIFY = 0x00000002;
+	public static final int CLOSE_WRITE = 0x00000008;
+	public static final int MOVED_TO = 0x00000080;
+	public static final int CREATE = 0x00000100;
+	public static final int DELETE = 0x00000200;
+	public static final int DELETE_SELF = 0x00000400;
+	public static final int MOVE_SELF = 0x00000800;
+	
+	public FileObserver(String path){
+	}
+	
+	public FileObserver(String path, int mask){
+	}
+	
+	public abstract void onEvent(int event, String path);
+	
+	public void startWatching(){
+	}
+	
+	public void stopWatching(){
+	}
+}
@@ -0,0 +1,47 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.os;
+
+/**
+ * JVM stand-in for a handler. There is no message loop, posted work runs straight away on the
+ * posting thread and delayed work is dropped.
+ */
+public class Handler {
+	public Handler(){
+	}
+	
+	public Handler(Looper looper){
+	}
+	
+	public final boolean post(Runnable r){
+		r.run();
+		return true;
+	}
+	
+	public final boolean postDelayed(Runnable r, long delayMillis){
+		return true;
+	}
+	
+	public final void removeCallbacks(Runnable r){
+	}
+	
+	public final void removeCallbacksAndMessages(Object token){
+	}
+}
@@ -0,0 +1,365 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JVM stand-in for the Android streaming JSON reader, with the same pull API. Numbers and literals
+ * are read as text and converted on demand; it is strict, there is no lenient mode.
+ */
+public final class JsonReader implements Closeable {
+	//What the reader expects next in each open scope.
+	static final int EMPTY_DOCUMENT = 0;
+	static final int NONEMPTY_DOCUMENT = 1;
+	static final int EMPTY_ARRAY = 2;
+	static final int NONEMPTY_ARRAY = 3;
+	static final int EMPTY_OBJECT = 4;
+	static final int DANGLING_NAME = 5;
+	static final int NONEMPTY_OBJECT = 6;
+	
+	final Reader in;
+	final char[] buf = new char[1024];
+	int pos, limit;
+	int[] stack = new int[32];
+	int depth = 1;
+	//The token peek() found and the text that goes with it, until it is consumed.
+	JsonToken token;
+	String value;
+	
+	public JsonReader(Reader in){
+		this.in = in;
+		stack[0] = EMPTY_DOCUMENT;
+	}
+	
+	public void beginArray() throws IOException{
+		expect(JsonToken.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+	
+	public void endArray() throws IOException{
+		expect(JsonToken.END_ARRAY);
+		depth--;
+	}
+	
+	public void beginObject() throws IOException{
+		expect(JsonToken.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+	
+	public void endObject() throws IOException{
+		expect(JsonToken.END_OBJECT);
+		depth--;
+	}
+	
+	public boolean hasNext() throws IOException{
+		JsonToken t = peek();
+		return t != JsonToken.END_OBJECT && t != JsonToken.END_ARRAY && t != JsonToken.END_DOCUMENT;
+	}
+	
+	public String nextName() throws IOException{
+		expect(JsonToken.NAME);
+		return value;
+	}
+	
+	public String nextString() throws IOException{
+		JsonToken t = peek();
+		if(t != JsonToken.STRING && t != JsonToken.NUMBER){
+			throw new IllegalStateException("Expected a string but was " + t);
+		}
+		token = null;
+		return value;
+	}
+	
+	public boolean nextBoolean() throws IOException{
+		expect(JsonToken.BOOLEAN);
+		return value.equals("true");
+	}
+	
+	public void nextNull() throws IOException{
+		expect(JsonToken.NULL);
+	}
+	
+	public double nextDouble() throws IOException{
+		return Double.parseDouble(nextNumber());
+	}
+	
+	public long nextLong() throws IOException{
+		String s = nextNumber();
+		try{
+			return Long.parseLong(s);
+		}catch(NumberFormatException e){
+			double d = Double.parseDouble(s);
+			if(d != (long)d){
+				throw new NumberFormatException(s);
+			}
+			return (long)d;
+		}
+	}
+	
+	public int nextInt() throws IOException{
+		long l = nextLong();
+		if(l != (int)l){
+			throw new NumberFormatException(value);
+		}
+		return (int)l;
+	}
+	
+	/**
+	 * Skips the next value, along with everything nested in it.
+	 */
+	public void skipValue() throws IOException{
+		int count = 0;
+		do{
+			switch(peek()){
+			case BEGIN_ARRAY:
+				beginArray();
+				count++;
+				break;
+			case BEGIN_OBJECT:
+				beginObject();
+				count++;
+				break;
+			case END_ARRAY:
+				endArray();
+				count--;
+				break;
+			case END_OBJECT:
+				endObject();
+				count--;
+				break;
+			case END_DOCUMENT:
+				throw new IllegalStateException("No value to skip");
+			default:
+				token = null;
+			}
+		}while(count != 0);
+	}
+	
+	public JsonToken peek() throws IOException{
+		if(token != null){
+			return token;
+		}
+		int c;
+		switch(stack[depth - 1]){
+		case EMPTY_DOCUMENT:
+			stack[depth - 1] = NONEMPTY_DOCUMENT;
+			return readValue();
+		case NONEMPTY_DOCUMENT:
+			if(nextNonWhitespace() != -1){
+				throw syntaxError("Expected the end of the document");
+			}
+			return token = JsonToken.END_DOCUMENT;
+		case EMPTY_ARRAY:
+			stack[depth - 1] = NONEMPTY_ARRAY;
+			c = nextNonWhitespace();
+			if(c == ']'){
+				return token = JsonToken.END_ARRAY;
+			}else if(c != -1){
+				pos--;
+			}
+			return readValue();
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if(c == ']'){
+				return token = JsonToken.END_ARRAY;
+			}else if(c != ','){
+				throw syntaxError("Expected ',' or ']'");
+			}
+			return readValue();
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if(c == '}'){
+				return token = JsonToken.END_OBJECT;
+			}
+			if(stack[depth - 1] == NONEMPTY_OBJECT){
+				if(c != ','){
+					throw syntaxError("Expected ',' or '}'");
+				}
+				c = nextNonWhitespace();
+			}
+			if(c != '"'){
+				throw syntaxError("Expected a name");
+			}
+			value = readString();
+			stack[depth - 1] = DANGLING_NAME;
+			return token = JsonToken.NAME;
+		case DANGLING_NAME:
+			if(nextNonWhitespace() != ':'){
+				throw syntaxError("Expected ':'");
+			}
+			stack[depth - 1] = NONEMPTY_OBJECT;
+			return readValue();
+		default:
+			throw new IllegalStateException("Reader closed");
+		}
+	}
+	
+	public void close() throws IOException{
+		stack[0] = -1;
+		depth = 1;
+		token = null;
+		in.close();
+	}
+	
+	void expect(JsonToken expected) throws IOException{
+		JsonToken t = peek();
+		if(t != expected){
+			throw new IllegalStateException("Expected " + expected + " but was " + t);
+		}
+		token = null;
+	}
+	
+	String nextNumber() throws IOException{
+		JsonToken t = peek();
+		if(t != JsonToken.NUMBER && t != JsonToken.STRING){
+			throw new IllegalStateException("Expected a number but was " + t);
+		}
+		token = null;
+		return value;
+	}
+	
+	void push(int scope){
+		if(depth == stack.length){
+			int[] bigger = new int[depth * 2];
+			System.arraycopy(stack, 0, bigger, 0, depth);
+			stack = bigger;
+		}
+		stack[depth++] = scope;
+	}
+	
+	JsonToken readValue() throws IOException{
+		int c = nextNonWhitespace();
+		switch(c){
+		case -1:
+			throw syntaxError("Unexpected end of input");
+		case '{':
+			return token = JsonToken.BEGIN_OBJECT;
+		case '[':
+			return token = JsonToken.BEGIN_ARRAY;
+		case '"':
+			value = readString();
+			return token = JsonToken.STRING;
+		default:
+			pos--;
+			value = readLiteral();
+			if(value.length() == 0){
+				throw syntaxError("Expected a value");
+			}else if(value.equals("null")){
+				return token = JsonToken.NULL;
+			}else if(value.equals("true") || value.equals("false")){
+				return token = JsonToken.BOOLEAN;
+			}
+			return token = JsonToken.NUMBER;
+		}
+	}
+	
+	/**
+	 * Reads the rest of a string whose opening quote has been read.
+	 */
+	String readString() throws IOException{
+		StringBuilder s = new StringBuilder();
+		while(true){
+			int c = read();
+			if(c == -1){
+				throw syntaxError("Unterminated string");
+			}else if(c == '"'){
+				return s.toString();
+			}else if(c == '\\'){
+				c = read();
+				switch(c){
+				case 'b': s.append('\b'); break;
+				case 'f': s.append('\f'); break;
+				case 'n': s.append('\n'); break;
+				case 'r': s.append('\r'); break;
+				case 't': s.append('\t'); break;
+				case 'u':
+					int code = 0;
+					for(int i = 0; i < 4; i++){
+						int digit = Character.digit(read(), 16);
+						if(digit < 0){
+							throw syntaxError("Bad \\u escape");
+						}
+						code = code * 16 + digit;
+					}
+					s.append((char)code);
+					break;
+				case -1:
+					throw syntaxError("Unterminated escape");
+				default:
+					s.append((char)c);
+				}
+			}else{
+				s.append((char)c);
+			}
+		}
+	}
+	
+	/**
+	 * Reads an unquoted value: a number, true, false or null.
+	 */
+	String readLiteral() throws IOException{
+		StringBuilder s = new StringBuilder();
+		while(true){
+			int c = read();
+			switch(c){
+			case -1:
+				return s.toString();
+			case ',': case ':': case ']': case '}': case ' ': case '\t': case '\n': case '\r':
+				pos--;
+				return s.toString();
+			default:
+				s.append((char)c);
+			}
+		}
+	}
+	
+	int nextNonWhitespace() throws IOException{
+		while(true){
+			int c = read();
+			if(c != ' ' && c != '\t' && c != '\n' && c != '\r'){
+				return c;
+			}
+		}
+	}
+	
+	/**
+	 * @return The next character, or -1 at the end of the input. A character that was read can be
+	 *         pushed back with pos--, as the buffer is only refilled once it is used up.
+	 */
+	int read() throws IOException{
+		if(pos == limit){
+			int n = in.read(buf, 0, buf.length);
+			if(n <= 0){
+				return -1;
+			}
+			pos = 0;
+			limit = n;
+		}
+		return buf[pos++];
+	}
+	
+	IOException syntaxError(String message){
+		return new IOException(message + " near character " + pos);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package android.util;
+
+/**
+ * JVM stand-in for the Android logger. Quiet unless the youtubefeed.log system property is set,
+ * in which case everything goes to stderr.
+ */
+public final class Log {
+	static final boolean ENABLED = Boolean.getBoolean("youtubefeed.log");
+	
+	public static int v(String tag, String msg){
+		return println("V", tag, msg);
+	}
+	
+	public static int d(String tag, String msg){
+		return println("D", tag, msg);
+	}
+	
+	public static int i(String tag, String msg){
+		return println("I", tag, msg);
+	}
+	
+	public static int w(String tag, String msg){
+		return println("W", tag, msg);
+	}
+	
+	public static int e(String tag, String msg){
+		return println("E", tag, msg);
+	}
+	
+	public static int e(String tag, String msg, Throwable tr){
+		return println("E", tag, msg + ": " + tr);
+	}
+	
+	static int println(String level, String tag, String msg){
+		if(!ENABLED){
+			return 0;
+		}
+		String line = level + "/" + tag + ": " + msg;
+		System.err.println(line);
+		return line.length();
+	}
+}
@@ -0,0 +1,177 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package android.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * JVM stand-in for the Android XML helpers. The pull parser is the JDK's StAX reader behind the
+ * XmlPull interface.
+ */
+public class Xml {
+	static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+	static{
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	}
+	
+	public static XmlPullParser newPullParser(){
+		return new StaxPullParser();
+	}
+	
+	static class StaxPullParser implements XmlPullParser {
+		XMLStreamReader in;
+		int event = START_DOCUMENT;
+		int depth;
+		boolean namespaces;
+		
+		public void setFeature(String name, boolean state){
+			if(FEATURE_PROCESS_NAMESPACES.equals(name)){
+				namespaces = state;
+			}
+		}
+		
+		public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException{
+			try{
+				start(inputEncoding == null ? FACTORY.createXMLStreamReader(inputStream) : FACTORY.createXMLStreamReader(inputStream, inputEncoding));
+			}catch(XMLStreamException e){
+				throw new XmlPullParserException(e.getMessage(), e);
+			}
+		}
+		
+		public void setInput(Reader reader) throws XmlPullParserException{
+			try{
+				start(FACTORY.createXMLStreamReader(reader));
+			}catch(XMLStreamException e){
+				throw new XmlPullParserException(e.getMessage(), e);
+			}
+		}
+		
+		void start(XMLStreamReader reader){
+			in = reader;
+			event = START_DOCUMENT;
+			depth = 0;
+		}
+		
+		public int getEventType(){
+			return event;
+		}
+		
+		public int next() throws XmlPullParserException, IOException{
+			if(event == END_TAG){
+				depth--;
+			}
+			try{
+				while(true){
+					switch(in.next()){
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						return event = START_TAG;
+					case XMLStreamConstants.END_ELEMENT:
+						return event = END_TAG;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						return event = TEXT;
+					case XMLStreamConstants.END_DOCUMENT:
+						return event = END_DOCUMENT;
+					default:
+						//comments, processing instructions and the like aren't reported
+					}
+				}
+			}catch(XMLStreamException e){
+				throw new XmlPullParserException(e.getMessage(), e);
+			}
+		}
+		
+		public String nextText() throws XmlPullParserException, IOException{
+			if(event != START_TAG){
+				throw new XmlPullParserException("nextText() needs to be called on a start tag");
+			}
+			String text = "";
+			if(next() == TEXT){
+				text = in.getText();
+				next();
+			}
+			if(event != END_TAG){
+				throw new XmlPullParserException("nextText() found an element inside <" + getName() + ">");
+			}
+			return text;
+		}
+		
+		public int getDepth(){
+			return depth;
+		}
+		
+		public String getName(){
+			if(event != START_TAG && event != END_TAG){
+				return null;
+			}
+			return namespaces ? in.getLocalName() : prefixed(in.getPrefix(), in.getLocalName());
+		}
+		
+		public String getNamespace(){
+			if(!namespaces || (event != START_TAG && event != END_TAG)){
+				return "";
+			}
+			String ns = in.getNamespaceURI();
+			return ns == null ? "" : ns;
+		}
+		
+		public String getText(){
+			return event == TEXT ? in.getText() : null;
+		}
+		
+		public int getAttributeCount(){
+			return event == START_TAG ? in.getAttributeCount() : -1;
+		}
+		
+		public String getAttributeName(int index){
+			return namespaces ? in.getAttributeLocalName(index) : prefixed(in.getAttributePrefix(index), in.getAttributeLocalName(index));
+		}
+		
+		public String getAttributeValue(int index){
+			return in.getAttributeValue(index);
+		}
+		
+		public String getAttributeValue(String namespace, String name){
+			for(int i = 0; i < in.getAttributeCount(); i++){
+				if(name.equals(getAttributeName(i)) && (namespace == null || namespace.equals(in.getAttributeNamespace(i)))){
+					return in.getAttributeValue(i);
+				}
+			}
+			return null;
+		}
+		
+		static String prefixed(String prefix, String localName){
+			return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+		}
+	}
+}
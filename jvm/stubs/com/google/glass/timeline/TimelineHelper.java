@@ -0,0 +1,73 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.google.glass.timeline;
+
+import java.util.List;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.google.glass.util.SettingsSecure;
+import com.google.googlex.glass.common.proto.TimelineItem;
+
+/**
+ * JVM stand-in for the timeline helper. Cards are built for real, but there is no timeline to
+ * write them to: writes succeed and lookups find nothing.
+ */
+public class TimelineHelper {
+	/**
+	 * A read-modify-write of a card, see atomicUpdateTimelineItemAsync.
+	 */
+	public interface Update {
+		TimelineItem onExecute();
+	}
+	
+	public TimelineItem.Builder createTimelineItemBuilder(Context context, SettingsSecure settings){
+		return TimelineItem.newBuilder();
+	}
+	
+	public static ContentValues toContentValues(TimelineItem item){
+		ContentValues values = new ContentValues();
+		values.put("_id", item.getId());
+		values.put("bundle_id", item.getBundleId());
+		values.put("text", item.getText());
+		values.put("html", item.getHtml());
+		return values;
+	}
+	
+	public TimelineItem queryTimelineItem(ContentResolver resolver, String id){
+		return null;
+	}
+	
+	public void bulkInsertTimelineItem(Context context, List<TimelineItem> items){
+	}
+	
+	public TimelineItem updateTimelineItem(Context context, TimelineItem item, Object location, boolean notify, boolean sync){
+		return item;
+	}
+	
+	/**
+	 * Runs the update straight away on the calling thread.
+	 */
+	public static void atomicUpdateTimelineItemAsync(Update update){
+		update.onExecute();
+	}
+}
@@ -0,0 +1,84 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.google.googlex.glass.common.proto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM stand-in for a card menu item.
+ */
+public final class MenuItem {
+	public enum Action {
+		CUSTOM, DELETE, VIEW_WEB_SITE
+	}
+	
+	final Action action;
+	final String id;
+	final List<MenuValue> values;
+	
+	MenuItem(Builder b){
+		action = b.action;
+		id = b.id;
+		values = Collections.unmodifiableList(new ArrayList<MenuValue>(b.values));
+	}
+	
+	public Action getAction(){
+		return action;
+	}
+	
+	public String getId(){
+		return id;
+	}
+	
+	public List<MenuValue> getValueList(){
+		return values;
+	}
+	
+	public static Builder newBuilder(){
+		return new Builder();
+	}
+	
+	public static final class Builder {
+		Action action;
+		String id;
+		final ArrayList<MenuValue> values = new ArrayList<MenuValue>();
+		
+		public Builder setAction(Action a){
+			action = a;
+			return this;
+		}
+		
+		public Builder setId(String s){
+			id = s;
+			return this;
+		}
+		
+		public Builder addValue(MenuValue v){
+			values.add(v);
+			return this;
+		}
+		
+		public MenuItem build(){
+			return new MenuItem(this);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.google.googlex.glass.common.proto;
+
+/**
+ * JVM stand-in for a card menu item's label.
+ */
+public final class MenuValue {
+	final String displayName;
+	
+	MenuValue(Builder b){
+		displayName = b.displayName;
+	}
+	
+	public String getDisplayName(){
+		return displayName;
+	}
+	
+	public static Builder newBuilder(){
+		return new Builder();
+	}
+	
+	public static final class Builder {
+		String displayName;
+		
+		public Builder setDisplayName(String name){
+			displayName = name;
+			return this;
+		}
+		
+		public MenuValue build(){
+			return new MenuValue(this);
+		}
+	}
+}
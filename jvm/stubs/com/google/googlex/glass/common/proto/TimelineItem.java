@@ -0,0 +1,230 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.google.googlex.glass.common.proto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM stand-in for a timeline card, holding the fields the app sets.
+ */
+public final class TimelineItem {
+	final String id, bundleId, title, text, html, sendToPhoneUrl;
+	final boolean isBundleCover, isPinned, isDeleted;
+	final long pinTime, displayTime, modifiedTime;
+	final NotificationConfig notification;
+	final List<MenuItem> menuItems;
+	
+	TimelineItem(Builder b){
+		id = b.id;
+		bundleId = b.bundleId;
+		title = b.title;
+		text = b.text;
+		html = b.html;
+		sendToPhoneUrl = b.sendToPhoneUrl;
+		isBundleCover = b.isBundleCover;
+		isPinned = b.isPinned;
+		isDeleted = b.isDeleted;
+		pinTime = b.pinTime;
+		displayTime = b.displayTime;
+		modifiedTime = b.modifiedTime;
+		notification = b.notification;
+		menuItems = Collections.unmodifiableList(new ArrayList<MenuItem>(b.menuItems));
+	}
+	
+	public String getId(){
+		return id;
+	}
+	
+	public String getBundleId(){
+		return bundleId;
+	}
+	
+	public String getTitle(){
+		return title;
+	}
+	
+	public String getText(){
+		return text;
+	}
+	
+	public String getHtml(){
+		return html;
+	}
+	
+	public String getSendToPhoneUrl(){
+		return sendToPhoneUrl;
+	}
+	
+	public boolean getIsBundleCover(){
+		return isBundleCover;
+	}
+	
+	public boolean getIsPinned(){
+		return isPinned;
+	}
+	
+	public boolean getIsDeleted(){
+		return isDeleted;
+	}
+	
+	public long getPinTime(){
+		return pinTime;
+	}
+	
+	public long getDisplayTime(){
+		return displayTime;
+	}
+	
+	public long getModifiedTime(){
+		return modifiedTime;
+	}
+	
+	public NotificationConfig getNotification(){
+		return notification;
+	}
+	
+	public List<MenuItem> getMenuItemList(){
+		return menuItems;
+	}
+	
+	public static Builder newBuilder(){
+		return new Builder();
+	}
+	
+	public static Builder newBuilder(TimelineItem prototype){
+		Builder b = new Builder();
+		b.id = prototype.id;
+		b.bundleId = prototype.bundleId;
+		b.title = prototype.title;
+		b.text = prototype.text;
+		b.html = prototype.html;
+		b.sendToPhoneUrl = prototype.sendToPhoneUrl;
+		b.isBundleCover = prototype.isBundleCover;
+		b.isPinned = prototype.isPinned;
+		b.isDeleted = prototype.isDeleted;
+		b.pinTime = prototype.pinTime;
+		b.displayTime = prototype.displayTime;
+		b.modifiedTime = prototype.modifiedTime;
+		b.notification = prototype.notification;
+		b.menuItems.addAll(prototype.menuItems);
+		return b;
+	}
+	
+	public static final class Builder {
+		String id, bundleId, title, text, html, sendToPhoneUrl;
+		boolean isBundleCover, isPinned, isDeleted;
+		long pinTime, displayTime, modifiedTime;
+		NotificationConfig notification;
+		final ArrayList<MenuItem> menuItems = new ArrayList<MenuItem>();
+		
+		public String getId(){
+			return id;
+		}
+		
+		public Builder setId(String s){
+			id = s;
+			return this;
+		}
+		
+		public Builder setBundleId(String s){
+			bundleId = s;
+			return this;
+		}
+		
+		public Builder setTitle(String s){
+			title = s;
+			return this;
+		}
+		
+		public String getText(){
+			return text;
+		}
+		
+		public Builder setText(String s){
+			text = s;
+			return this;
+		}
+		
+		public String getHtml(){
+			return html;
+		}
+		
+		public Builder setHtml(String s){
+			html = s;
+			return this;
+		}
+		
+		public Builder setSendToPhoneUrl(String s){
+			sendToPhoneUrl = s;
+			return this;
+		}
+		
+		public Builder setIsBundleCover(boolean b){
+			isBundleCover = b;
+			return this;
+		}
+		
+		public Builder setIsPinned(boolean b){
+			isPinned = b;
+			return this;
+		}
+		
+		public Builder setIsDeleted(boolean b){
+			isDeleted = b;
+			return this;
+		}
+		
+		public Builder setPinTime(long t){
+			pinTime = t;
+			return this;
+		}
+		
+		public Builder setDisplayTime(long t){
+			displayTime = t;
+			return this;
+		}
+		
+		public Builder setModifiedTime(long t){
+			modifiedTime = t;
+			return this;
+		}
+		
+		public Builder setNotification(NotificationConfig.Builder n){
+			notification = n.build();
+			return this;
+		}
+		
+		public Builder addMenuItem(MenuItem m){
+			menuItems.add(m);
+			return this;
+		}
+		
+		public Builder clearMenuItem(){
+			menuItems.clear();
+			return this;
+		}
+		
+		public TimelineItem build(){
+			return new TimelineItem(this);
+		}
+	}
+}
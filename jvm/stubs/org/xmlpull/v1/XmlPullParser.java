@@ -0,0 +1,52 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.xmlpull.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * The part of the XmlPull API the feed readers use.
+ */
+public interface XmlPullParser {
+	int START_DOCUMENT = 0;
+	int END_DOCUMENT = 1;
+	int START_TAG = 2;
+	int END_TAG = 3;
+	int TEXT = 4;
+	
+	String FEATURE_PROCESS_NAMESPACES = "http://xmlpull.org/v1/doc/features.html#process-namespaces";
+	
+	void setFeature(String name, boolean state) throws XmlPullParserException;
+	void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException;
+	void setInput(Reader in) throws XmlPullParserException;
+	int getEventType() throws XmlPullParserException;
+	int next() throws XmlPullParserException, IOException;
+	String nextText() throws XmlPullParserException, IOException;
+	int getDepth();
+	String getName();
+	String getNamespace();
+	String getText();
+	int getAttributeCount();
+	String getAttributeName(int index);
+	String getAttributeValue(int index);
+	String getAttributeValue(String namespace, String name);
+}
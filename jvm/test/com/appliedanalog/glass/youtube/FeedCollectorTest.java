@@ -0,0 +1,107 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs overlapping feeds through the service's FeedCollector with the default configuration,
+ * which sends the whole feed and merges feeds into one bundle per sync.
+ * @author betker
+ */
+public class FeedCollectorTest {
+	static final String FEED_A = "http://feeds.test/a";
+	static final String FEED_B = "http://feeds.test/b";
+	
+	File root;
+	HeadlessService service;
+	
+	@Before
+	public void makeService() throws IOException{
+		root = HeadlessService.tempDir("collector");
+		service = new HeadlessService(root);
+		service.useConfiguration(new FeedConfig(null, 0, 0));
+	}
+	
+	@After
+	public void removeService(){
+		for(String key : new String[]{ FEED_A, FEED_B, YoutubeFeedService.ALL_FEEDS }){
+			SeenVideoIndex.release(key);
+		}
+		HeadlessService.deleteDir(root);
+	}
+	
+	@Test
+	public void sharedVideoGoesOutOnce() throws IOException{
+		//Both feeds carry "shared", the first delivers it.
+		deliver(collect(FEED_A, "shared", "a1"), FEED_A);
+		
+		YoutubeFeedService.FeedCollector b = collect(FEED_B, "b1", "shared");
+		assertEquals(1, b.newVideos);
+		assertEquals(1, b.duplicates);
+		assertEquals("[b1]", ids(b));
+		deliver(b, FEED_B);
+		
+		//The feed that delivered it still sends it along with the rest of its feed.
+		YoutubeFeedService.FeedCollector a = collect(FEED_A, "a2", "shared", "a1");
+		assertEquals(1, a.newVideos);
+		assertEquals("[a2, shared, a1]", ids(a));
+	}
+	
+	YoutubeFeedService.FeedCollector collect(String feedUrl, String... entries) throws IOException{
+		YoutubeFeedService.FeedCollector collector = service.new FeedCollector(
+				SeenVideoIndex.forFeed(service.getSeenIndexDir(), feedUrl), service.getDeliveredIndex(), null);
+		for(String id : entries){
+			collector.onEntry(new VideoInfo(id, id, "60"));
+		}
+		return collector;
+	}
+	
+	/**
+	 * Marks what the collector read and picked the way commitDelivered does, without the store.
+	 */
+	void deliver(YoutubeFeedService.FeedCollector collector, String feedUrl) throws IOException{
+		long now = System.currentTimeMillis();
+		SeenVideoIndex seen = SeenVideoIndex.forFeed(service.getSeenIndexDir(), feedUrl);
+		for(String id : collector.readIds){
+			seen.markSeen(id, now);
+		}
+		SeenVideoIndex delivered = service.getDeliveredIndex();
+		for(VideoInfo vid : collector.vids){
+			delivered.markSeen(vid.id, now);
+		}
+	}
+	
+	static String ids(YoutubeFeedService.FeedCollector collector){
+		ArrayList<String> ids = new ArrayList<String>();
+		for(VideoInfo vid : collector.vids){
+			ids.add(vid.id);
+		}
+		return ids.toString();
+	}
+}
@@ -0,0 +1,206 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs FeedFetcher against a local HTTP stub that behaves like the feed servers do with
+ * validators: it hands out an ETag and Last-Modified, and answers a request carrying
+ * either of them with a 304 and no body.
+ * @author betker
+ */
+public class FeedFetcherTest {
+	static final String ETAG = "\"feed-v1\"";
+	static final String LAST_MODIFIED = "Tue, 15 Oct 2013 10:00:00 GMT";
+	static final byte[] FEED = "<feed><entry><id>one</id></entry></feed>".getBytes();
+	
+	HttpServer server;
+	String feedUrl;
+	MemoryPreferences prefs;
+	
+	//What the stub saw and did, one entry per request.
+	final ArrayList<String> ifNoneMatch = new ArrayList<String>();
+	final ArrayList<String> ifModifiedSince = new ArrayList<String>();
+	int bodiesServed = 0;
+	//How the stub answers.
+	int status = 200;
+	boolean gzip = false;
+	byte[] body = FEED;
+	
+	@Before
+	public void startServer() throws IOException{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/feed", new HttpHandler(){
+			public void handle(HttpExchange ex) throws IOException{
+				String etag = ex.getRequestHeaders().getFirst("If-None-Match");
+				String since = ex.getRequestHeaders().getFirst("If-Modified-Since");
+				synchronized(FeedFetcherTest.this){
+					ifNoneMatch.add(etag);
+					ifModifiedSince.add(since);
+				}
+				if(ETAG.equals(etag) || LAST_MODIFIED.equals(since)){
+					ex.sendResponseHeaders(304, -1);
+					ex.close();
+					return;
+				}
+				byte[] out = body;
+				ex.getResponseHeaders().set("Content-Type", "application/atom+xml; charset=UTF-8");
+				ex.getResponseHeaders().set("ETag", ETAG);
+				ex.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+				if(gzip){
+					ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+					GZIPOutputStream z = new GZIPOutputStream(zipped);
+					z.write(out);
+					z.close();
+					out = zipped.toByteArray();
+					ex.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				ex.sendResponseHeaders(status, out.length);
+				OutputStream os = ex.getResponseBody();
+				os.write(out);
+				os.close();
+				synchronized(FeedFetcherTest.this){
+					bodiesServed++;
+				}
+			}
+		});
+		server.start();
+		feedUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/feed";
+		prefs = new MemoryPreferences();
+	}
+	
+	@After
+	public void stopServer(){
+		server.stop(0);
+	}
+	
+	FeedFetcher fetcher(){
+		return new FeedFetcher(prefs, 5000, 64 * 1024);
+	}
+	
+	static byte[] readAll(InputStream in) throws IOException{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int read;
+		while((read = in.read(buf)) != -1){
+			out.write(buf, 0, read);
+		}
+		return out.toByteArray();
+	}
+	
+	@Test
+	public void notModifiedFeedIsNeverHandedToTheParser() throws IOException{
+		FeedFetcher.Response first = fetcher().fetch(feedUrl);
+		assertNotNull(first);
+		assertArrayEquals(FEED, readAll(first.getStream()));
+		first.close();
+		first.commitValidators();
+		
+		//The poll carries the validators, and the 304 comes back as null - there is no stream to parse.
+		FeedFetcher.Response second = fetcher().fetch(feedUrl);
+		assertNull(second);
+		assertEquals(2, ifNoneMatch.size());
+		assertEquals(ETAG, ifNoneMatch.get(1));
+		assertEquals(LAST_MODIFIED, ifModifiedSince.get(1));
+		assertEquals(1, bodiesServed);
+	}
+	
+	@Test
+	public void firstFetchIsUnconditional() throws IOException{
+		FeedFetcher.Response response = fetcher().fetch(feedUrl);
+		assertNotNull(response);
+		response.close();
+		assertNull(ifNoneMatch.get(0));
+		assertNull(ifModifiedSince.get(0));
+	}
+	
+	@Test
+	public void validatorsAreOnlySavedOnceCommitted() throws IOException{
+		//A parse that fails never commits, so the next poll must fetch the whole feed again.
+		FeedFetcher.Response failed = fetcher().fetch(feedUrl);
+		failed.close();
+		FeedFetcher.Response retry = fetcher().fetch(feedUrl);
+		assertNotNull(retry);
+		assertNull(ifNoneMatch.get(1));
+		retry.close();
+		assertEquals(2, bodiesServed);
+	}
+	
+	@Test
+	public void validatorsAreKeptPerFeed() throws IOException{
+		FeedFetcher.Response response = fetcher().fetch(feedUrl);
+		response.close();
+		response.commitValidators();
+		assertNotNull(fetcher().fetch(feedUrl + "?other"));
+		assertNull(ifNoneMatch.get(1));
+	}
+	
+	@Test
+	public void gzipResponsesAreDecoded() throws IOException{
+		gzip = true;
+		body = new byte[8 * 1024]; //compresses well
+		FeedFetcher.Response response = fetcher().fetch(feedUrl);
+		assertArrayEquals(body, readAll(response.getStream()));
+		assertEquals(body.length, response.getBytes());
+		assertTrue(response.getWireBytes() < body.length);
+		response.close();
+	}
+	
+	@Test
+	public void oversizedResponsesFail() throws IOException{
+		body = new byte[128 * 1024];
+		FeedFetcher.Response response = fetcher().fetch(feedUrl);
+		try{
+			readAll(response.getStream());
+			fail("Read past the size cap");
+		}catch(IOException e){
+			//expected
+		}finally{
+			response.close();
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void errorStatusFails() throws IOException{
+		status = 500;
+		fetcher().fetch(feedUrl);
+	}
+}
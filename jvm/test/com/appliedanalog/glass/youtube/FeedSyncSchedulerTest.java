@@ -0,0 +1,316 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Drives FeedSyncScheduler the way overlapping alarms and boots do, with many syncs of the same
+ * feeds requested at once.
+ * @author betker
+ */
+public class FeedSyncSchedulerTest {
+	static final int REQUESTS = 500;
+	static final int CALLERS = 50;
+	static final int FEEDS = 8;
+	
+	static List<String> feeds(int count){
+		ArrayList<String> urls = new ArrayList<String>();
+		for(int i = 0; i < count; i++){
+			urls.add("http://host" + (i % 2) + ".example.com/feed/" + i);
+		}
+		return urls;
+	}
+	
+	/**
+	 * Collects completions, so a test can wait for every started sync to finish. Like the service, it
+	 * releases the feeds once it has their results and syncs again whatever was asked for meanwhile.
+	 */
+	static class Completions implements FeedSyncScheduler.CompletionHandler<String>{
+		final FeedSyncScheduler<String> scheduler;
+		final FeedSyncScheduler.FeedSyncer<String> syncer;
+		final AtomicInteger calls = new AtomicInteger(), resyncs = new AtomicInteger();
+		final List<List<String>> results = Collections.synchronizedList(new ArrayList<List<String>>());
+		
+		Completions(FeedSyncScheduler<String> scheduler, FeedSyncScheduler.FeedSyncer<String> syncer){
+			this.scheduler = scheduler;
+			this.syncer = syncer;
+		}
+		
+		public void onSyncComplete(List<String> finished, List<String> feedUrls){
+			results.add(finished);
+			List<String> again = scheduler.release(feedUrls);
+			if(!again.isEmpty() && scheduler.syncAll(again, syncer, this)){
+				resyncs.incrementAndGet();
+			}
+			synchronized(this){
+				calls.incrementAndGet();
+				notifyAll();
+			}
+		}
+		
+		/**
+		 * Waits for the given number of syncs, plus any resyncs they started, to complete.
+		 */
+		synchronized boolean await(int count, long millis) throws InterruptedException{
+			long end = System.currentTimeMillis() + millis;
+			while(calls.get() < count + resyncs.get() && System.currentTimeMillis() < end){
+				wait(Math.max(1, end - System.currentTimeMillis()));
+			}
+			return calls.get() >= count + resyncs.get();
+		}
+	}
+	
+	@Test
+	public void hundredsOfOverlappingSyncs() throws Exception{
+		final FeedSyncScheduler<String> scheduler = new FeedSyncScheduler<String>();
+		final List<String> urls = feeds(FEEDS);
+		//A logical clock, so requests and fetches can be ordered.
+		final AtomicLong clock = new AtomicLong();
+		final ConcurrentHashMap<String, AtomicLong> lastRequest = new ConcurrentHashMap<String, AtomicLong>();
+		final ConcurrentHashMap<String, AtomicLong> lastFetch = new ConcurrentHashMap<String, AtomicLong>();
+		final ConcurrentHashMap<String, AtomicInteger> running = new ConcurrentHashMap<String, AtomicInteger>();
+		final ConcurrentHashMap<String, AtomicInteger> perHost = new ConcurrentHashMap<String, AtomicInteger>();
+		for(String url : urls){
+			lastRequest.put(url, new AtomicLong());
+			lastFetch.put(url, new AtomicLong());
+			running.put(url, new AtomicInteger());
+			perHost.putIfAbsent(host(url), new AtomicInteger());
+		}
+		final AtomicInteger overlaps = new AtomicInteger(), overHost = new AtomicInteger(), fetches = new AtomicInteger();
+		
+		final FeedSyncScheduler.FeedSyncer<String> syncer = new FeedSyncScheduler.FeedSyncer<String>(){
+			public String syncFeed(String feedUrl) throws Exception{
+				fetches.incrementAndGet();
+				raise(lastFetch.get(feedUrl), clock.incrementAndGet());
+				if(running.get(feedUrl).incrementAndGet() > 1){
+					overlaps.incrementAndGet();
+				}
+				AtomicInteger host = perHost.get(host(feedUrl));
+				if(host.incrementAndGet() > FeedSyncScheduler.MAX_PER_HOST){
+					overHost.incrementAndGet();
+				}
+				try{
+					Thread.sleep(2);
+				}finally{
+					host.decrementAndGet();
+					running.get(feedUrl).decrementAndGet();
+				}
+				return feedUrl;
+			}
+		};
+		final Completions completions = new Completions(scheduler, syncer);
+		final AtomicInteger started = new AtomicInteger(), folded = new AtomicInteger();
+		final CountDownLatch go = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(CALLERS);
+		for(int c = 0; c < CALLERS; c++){
+			final int caller = c;
+			new Thread(){
+				public void run(){
+					try{
+						go.await();
+						for(int i = 0; i < REQUESTS / CALLERS; i++){
+							//Every alarm asks for a different mix of the feeds.
+							List<String> asked = urls.subList((caller + i) % FEEDS, FEEDS);
+							long now = clock.incrementAndGet();
+							for(String url : asked){
+								raise(lastRequest.get(url), now);
+							}
+							if(scheduler.syncAll(asked, syncer, completions)){
+								started.incrementAndGet();
+							}else{
+								folded.incrementAndGet();
+							}
+						}
+					}catch(InterruptedException e){
+						//falls through to done
+					}finally{
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		go.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals(REQUESTS, started.get() + folded.get());
+		assertTrue("Not every started sync completed", completions.await(started.get(), 30000));
+		
+		assertEquals("The same feed was fetched twice at once", 0, overlaps.get());
+		assertEquals("Too many fetches to one host at once", 0, overHost.get());
+		//Coalescing must not lose a request: every feed was fetched again after it was last asked for.
+		for(String url : urls){
+			assertTrue("Request for " + url + " was dropped", lastFetch.get(url).get() > lastRequest.get(url).get());
+		}
+		//And it should actually coalesce, far fewer fetches than feeds asked for.
+		assertTrue("Only " + folded.get() + " requests were folded", fetches.get() < REQUESTS * FEEDS / 2);
+		
+		//Nothing is left in flight, a new sync starts straight away.
+		assertTrue(scheduler.syncAll(urls, syncer, completions));
+		assertTrue(completions.await(started.get() + 1, 30000));
+	}
+	
+	@Test
+	public void requestsForARunningFeedAreFoldedIn() throws Exception{
+		FeedSyncScheduler<String> scheduler = new FeedSyncScheduler<String>();
+		final CountDownLatch fetching = new CountDownLatch(1), release = new CountDownLatch(1);
+		final AtomicInteger fetches = new AtomicInteger();
+		FeedSyncScheduler.FeedSyncer<String> syncer = new FeedSyncScheduler.FeedSyncer<String>(){
+			public String syncFeed(String feedUrl) throws Exception{
+				fetches.incrementAndGet();
+				fetching.countDown();
+				release.await();
+				return feedUrl;
+			}
+		};
+		Completions completions = new Completions(scheduler, syncer);
+		List<String> feed = feeds(1);
+		assertTrue(scheduler.syncAll(feed, syncer, completions));
+		assertTrue(fetching.await(5, TimeUnit.SECONDS));
+		for(int i = 0; i < 100; i++){
+			assertFalse(scheduler.syncAll(feed, syncer, completions));
+		}
+		release.countDown();
+		assertTrue(completions.await(1, 5000));
+		//However many requests came in, the feed is fetched once more and reported once.
+		assertEquals(2, fetches.get());
+		Thread.sleep(50);
+		assertEquals(1, completions.calls.get());
+		assertEquals(0, completions.resyncs.get());
+		assertEquals(1, completions.results.get(0).size());
+	}
+	
+	@Test
+	public void failedFeedsDoNotHoldUpTheRest() throws Exception{
+		FeedSyncScheduler<String> scheduler = new FeedSyncScheduler<String>();
+		final List<String> urls = feeds(4);
+		FeedSyncScheduler.FeedSyncer<String> syncer = new FeedSyncScheduler.FeedSyncer<String>(){
+			public String syncFeed(String feedUrl) throws Exception{
+				if(feedUrl.equals(urls.get(1))){
+					throw new java.io.IOException("unreachable");
+				}
+				//Not modified, nothing to deliver.
+				return feedUrl.equals(urls.get(2)) ? null : feedUrl;
+			}
+		};
+		Completions completions = new Completions(scheduler, syncer);
+		assertTrue(scheduler.syncAll(urls, syncer, completions));
+		assertTrue(completions.await(1, 5000));
+		List<String> results = completions.results.get(0);
+		assertEquals(2, results.size());
+		assertTrue(results.contains(urls.get(0)));
+		assertTrue(results.contains(urls.get(3)));
+	}
+	
+	@Test
+	public void feedsStayInFlightUntilDelivered() throws Exception{
+		final FeedSyncScheduler<List<String>> scheduler = new FeedSyncScheduler<List<String>>();
+		final List<String> urls = feeds(2);
+		final String fast = urls.get(0), slow = urls.get(1);
+		//What a feed holds, and what has been committed as seen. Like the seen index, only delivery commits.
+		final ConcurrentHashMap<String, List<String>> videos = new ConcurrentHashMap<String, List<String>>();
+		videos.put(fast, Arrays.asList("fast1", "fast2"));
+		videos.put(slow, Arrays.asList("slow1"));
+		final Set<String> seen = Collections.synchronizedSet(new HashSet<String>());
+		final ConcurrentHashMap<String, AtomicInteger> delivered = new ConcurrentHashMap<String, AtomicInteger>();
+		final CountDownLatch fastFetched = new CountDownLatch(1), slowFetching = new CountDownLatch(1), unblock = new CountDownLatch(1);
+		final AtomicInteger fastFetches = new AtomicInteger();
+		
+		final FeedSyncScheduler.FeedSyncer<List<String>> syncer = new FeedSyncScheduler.FeedSyncer<List<String>>(){
+			public List<String> syncFeed(String feedUrl) throws Exception{
+				if(feedUrl.equals(slow)){
+					slowFetching.countDown();
+					unblock.await();
+				}
+				ArrayList<String> fresh = new ArrayList<String>();
+				for(String id : videos.get(feedUrl)){
+					if(!seen.contains(id)){
+						fresh.add(id);
+					}
+				}
+				if(feedUrl.equals(fast)){
+					fastFetches.incrementAndGet();
+					fastFetched.countDown();
+				}
+				return fresh.isEmpty() ? null : fresh;
+			}
+		};
+		final AtomicInteger calls = new AtomicInteger(), resyncs = new AtomicInteger();
+		FeedSyncScheduler.CompletionHandler<List<String>> deliver = new FeedSyncScheduler.CompletionHandler<List<String>>(){
+			public void onSyncComplete(List<List<String>> results, List<String> feedUrls){
+				for(List<String> result : results){
+					for(String id : result){
+						delivered.putIfAbsent(id, new AtomicInteger());
+						delivered.get(id).incrementAndGet();
+						seen.add(id);
+					}
+				}
+				List<String> again = scheduler.release(feedUrls);
+				if(!again.isEmpty() && scheduler.syncAll(again, syncer, this)){
+					resyncs.incrementAndGet();
+				}
+				calls.incrementAndGet();
+			}
+		};
+		
+		assertTrue(scheduler.syncAll(urls, syncer, deliver));
+		assertTrue(fastFetched.await(5, TimeUnit.SECONDS));
+		assertTrue(slowFetching.await(5, TimeUnit.SECONDS));
+		//The fast feed is fetched but not delivered, a second sync must not fetch it against the uncommitted seen set.
+		assertFalse(scheduler.syncAll(Arrays.asList(fast), syncer, deliver));
+		unblock.countDown();
+		long end = System.currentTimeMillis() + 5000;
+		while(calls.get() < 1 + resyncs.get() && System.currentTimeMillis() < end){
+			Thread.sleep(5);
+		}
+		assertEquals(1 + resyncs.get(), calls.get());
+		
+		//The request wasn't lost: depending on timing the feed was fetched again before delivery (replacing the
+		//first result) or after it, finding nothing new.
+		assertEquals(2, fastFetches.get());
+		for(String id : new String[]{ "fast1", "fast2", "slow1" }){
+			assertEquals(id + " was delivered more than once", 1, delivered.get(id).get());
+		}
+	}
+	
+	static String host(String url){
+		return url.substring(7, url.indexOf('/', 7));
+	}
+	
+	static void raise(AtomicLong value, long to){
+		long current;
+		while((current = value.get()) < to && !value.compareAndSet(current, to)){
+		}
+	}
+}
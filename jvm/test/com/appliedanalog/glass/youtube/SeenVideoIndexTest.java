@@ -0,0 +1,157 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Eviction and resizing of the seen video index.
+ * @author betker
+ */
+public class SeenVideoIndexTest {
+	static final long DAY = 24L * 60 * 60 * 1000;
+	//As the service sizes its index of every delivered video.
+	static final String ALL_FEEDS = "*";
+	static final int FEED_PAGE_ENTRIES = 50;
+	static final long DEFAULT_FILE_SIZE = SeenVideoIndex.HEADER_SIZE + (long)SeenVideoIndex.CAPACITY * SeenVideoIndex.SLOT_SIZE;
+	
+	File dir;
+	
+	@Before
+	public void makeDir() throws IOException{
+		dir = File.createTempFile("seen", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+	
+	@After
+	public void removeDir(){
+		for(String key : new String[]{ "feed", ALL_FEEDS }){
+			SeenVideoIndex.release(key);
+		}
+		for(File f : dir.listFiles()){
+			f.delete();
+		}
+		dir.delete();
+	}
+	
+	@Test
+	public void quietFeedKeepsItsIndex() throws IOException{
+		long start = System.currentTimeMillis() - 200 * DAY;
+		SeenVideoIndex index = SeenVideoIndex.forFeed(dir, "feed");
+		index.markSeen("old", start);
+		index.markSeen("new", start + 30 * DAY);
+		//Nothing but 304s since, which don't touch the index.
+		SeenVideoIndex.release("feed");
+		
+		index = SeenVideoIndex.forFeed(dir, "feed");
+		assertTrue(index.contains("new"));
+		assertTrue(index.contains("old"));
+	}
+	
+	@Test
+	public void entriesAgeFromTheLastRead() throws IOException{
+		long now = System.currentTimeMillis();
+		SeenVideoIndex index = SeenVideoIndex.forFeed(dir, "feed");
+		for(int i = 0; i < SeenVideoIndex.KEEP_NEWEST; i++){
+			index.markSeen("recent" + i, now - 20 * DAY);
+		}
+		index.markSeen("gone", now - 90 * DAY);
+		index.markSeen("kept", now - 40 * DAY);
+		index.markSeen("read", now - 5 * DAY); //the last time the feed changed
+		SeenVideoIndex.release("feed");
+		
+		index = SeenVideoIndex.forFeed(dir, "feed");
+		assertFalse(index.contains("gone"));
+		assertTrue(index.contains("kept"));
+	}
+	
+	@Test
+	public void recentEntriesSurviveAge() throws IOException{
+		//A feed that only changes at the top: the entries below where reads stop are never marked again.
+		long now = System.currentTimeMillis();
+		SeenVideoIndex index = SeenVideoIndex.forFeed(dir, "feed");
+		for(int i = 0; i < 25; i++){
+			index.markSeen("deep" + i, now - 300 * DAY);
+		}
+		index.markSeen("top", now);
+		SeenVideoIndex.release("feed");
+		
+		index = SeenVideoIndex.forFeed(dir, "feed");
+		assertTrue(index.contains("deep0"));
+		assertTrue(index.contains("top"));
+	}
+	
+	@Test
+	public void resizingKeepsEntries() throws IOException{
+		SeenVideoIndex index = SeenVideoIndex.forFeed(dir, ALL_FEEDS);
+		for(int i = 0; i < 200; i++){
+			index.markSeen("video" + i, 1000 + i);
+		}
+		int capacity = SeenVideoIndex.capacityFor(100 * FEED_PAGE_ENTRIES);
+		index = SeenVideoIndex.forFeed(dir, ALL_FEEDS, capacity);
+		assertEquals(capacity, index.capacity);
+		for(int i = 0; i < 200; i++){
+			assertTrue(index.contains("video" + i));
+		}
+		//And it holds a page of every feed without compacting.
+		for(int i = 0; i < 100 * FEED_PAGE_ENTRIES; i++){
+			index.markSeen("more" + i, 5000 + i);
+		}
+		assertTrue(index.contains("video0"));
+		assertTrue(index.contains("more0"));
+	}
+	
+	@Test
+	public void resizingLeavesHoldersAlone() throws IOException{
+		int large = SeenVideoIndex.capacityFor(100 * FEED_PAGE_ENTRIES);
+		SeenVideoIndex held = SeenVideoIndex.forFeed(dir, ALL_FEEDS, large);
+		for(int i = 0; i < 200; i++){
+			held.markSeen("video" + i, 1000 + i);
+		}
+		//An open index is resized in place, whoever holds it sees the new table.
+		assertSame(held, SeenVideoIndex.forFeed(dir, ALL_FEEDS, SeenVideoIndex.CAPACITY));
+		assertEquals(SeenVideoIndex.CAPACITY, held.capacity);
+		assertTrue(held.contains("video199"));
+		
+		//A released index is still mapped, reopening it smaller mustn't shrink the file under it.
+		SeenVideoIndex released = SeenVideoIndex.forFeed(dir, "feed", large);
+		for(int i = 0; i < 200; i++){
+			released.markSeen("video" + i, 1000 + i);
+		}
+		SeenVideoIndex.release("feed");
+		SeenVideoIndex reopened = SeenVideoIndex.forFeed(dir, "feed");
+		for(int i = 0; i < 200; i++){
+			assertTrue(released.contains("video" + i));
+		}
+		released.markSeen("late", 3000);
+		assertTrue(reopened.contains("video199"));
+		assertEquals(DEFAULT_FILE_SIZE, reopened.file.length());
+	}
+}
@@ -0,0 +1,113 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Trims a thumbnail cache that is over its cap, on storage where file times say nothing about use.
+ * @author betker
+ */
+public class ThumbnailCacheTest {
+	static final long THUMB_BYTES = ThumbnailCache.MAX_CACHE_BYTES / 3;
+	
+	File root;
+	HeadlessService service;
+	File dir;
+	
+	@Before
+	public void makeService() throws IOException{
+		root = HeadlessService.tempDir("thumbs");
+		service = new HeadlessService(root);
+		dir = new File(service.getExternalCacheDir(), "thumbs");
+		dir.mkdirs();
+	}
+	
+	@After
+	public void removeService(){
+		HeadlessService.deleteDir(root);
+	}
+	
+	@Test
+	public void trimFollowsUseNotFileTimes() throws IOException{
+		long now = System.currentTimeMillis();
+		//Oldest file first, as a restart would find them.
+		thumb("a", now - 3000);
+		thumb("b", now - 2000);
+		thumb("c", now - 1000);
+		ThumbnailCache cache = new ThumbnailCache(service, dir);
+		cache.pool.shutdown();
+		
+		//"a" is handed out again, its file time isn't touched.
+		cache.urlFor("a");
+		thumb("d", now - 4000);
+		cache.touch("d"); //just downloaded
+		cache.trim(new ArrayList<String>());
+		
+		assertTrue(cache.isCached("a"));
+		assertFalse(cache.isCached("b"));
+		assertTrue(cache.isCached("c")); //one eviction brings it back under the cap
+		assertTrue(cache.isCached("d"));
+	}
+	
+	@Test
+	public void trimSweepsStaleParts() throws IOException{
+		File stale = part("a.123", System.currentTimeMillis() - 2 * ThumbnailCache.STALE_PART);
+		File live = part("a.456", System.currentTimeMillis());
+		ThumbnailCache cache = new ThumbnailCache(service, dir);
+		cache.pool.shutdown();
+		cache.trim(new ArrayList<String>());
+		
+		assertFalse(stale.exists());
+		assertTrue(live.exists());
+	}
+	
+	void thumb(String videoId, long modified) throws IOException{
+		File f = new File(dir, videoId + ".jpg");
+		sized(f, THUMB_BYTES);
+		f.setLastModified(modified);
+	}
+	
+	File part(String name, long modified) throws IOException{
+		File f = new File(dir, name + ".part");
+		sized(f, 1024);
+		f.setLastModified(modified);
+		return f;
+	}
+	
+	static void sized(File f, long length) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try{
+			raf.setLength(length);
+		}finally{
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.appliedanalog.glass.youtube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.ContentProviderOperation;
+
+/**
+ * Diffs a reused bundle the way a sync does with the default configuration, which sends the whole
+ * feed, around cards that retention has taken down.
+ * @author betker
+ */
+public class TimelineBundleTrackerTest {
+	static final String FEED = "http://feeds.test/a";
+	
+	File root;
+	HeadlessService service;
+	CardContext ctx;
+	
+	@Before
+	public void makeService() throws IOException{
+		root = HeadlessService.tempDir("bundles");
+		service = new HeadlessService(root);
+		service.useConfiguration(new FeedConfig(null, 0, 0));
+		ctx = new CardContext(service.getContentResolver());
+	}
+	
+	@After
+	public void removeService(){
+		HeadlessService.deleteDir(root);
+	}
+	
+	@Test
+	public void retiredVideosStayOff() throws IOException{
+		TimelineBundleTracker tracker = diff(null, "v2", "v1");
+		assertEquals(Arrays.asList("v1", "v2"), new ArrayList<String>(tracker.cards.keySet()));
+		
+		//Retention takes the older card down.
+		HashSet<String> expired = new HashSet<String>();
+		expired.add(tracker.cards.get("v1").cardId);
+		tracker.retire(expired);
+		tracker.save();
+		
+		ArrayList<String> deleted = new ArrayList<String>();
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		ArrayList<VideoInfo> vids = videos("v3", "v2", "v1");
+		tracker = TimelineBundleTracker.load(service.getBundleStateDir(), FEED);
+		service.diffBundle(vids, null, tracker, ctx, false, ops, deleted);
+		assertEquals("[v3, v2]", ids(vids));
+		assertEquals(1, ops.size()); //just the new card
+		assertFalse(tracker.cards.containsKey("v1"));
+		assertTrue(tracker.retired.contains("v1"));
+		tracker.save();
+		
+		//Once the feed drops them, the card goes and so does the retired video.
+		String v2Card = tracker.cards.get("v2").cardId;
+		deleted.clear();
+		tracker = diff(deleted, "v4", "v3");
+		assertEquals(Arrays.asList(v2Card), deleted);
+		assertTrue(tracker.retired.isEmpty());
+	}
+	
+	TimelineBundleTracker diff(ArrayList<String> deleted, String... ids) throws IOException{
+		TimelineBundleTracker tracker = TimelineBundleTracker.load(service.getBundleStateDir(), FEED);
+		service.diffBundle(videos(ids), null, tracker, ctx, false, new ArrayList<ContentProviderOperation>(),
+						   deleted == null ? new ArrayList<String>() : deleted);
+		tracker.save();
+		return tracker;
+	}
+	
+	static ArrayList<VideoInfo> videos(String... ids){
+		ArrayList<VideoInfo> vids = new ArrayList<VideoInfo>();
+		for(String id : ids){
+			vids.add(new VideoInfo(id, id, "60"));
+		}
+		return vids;
+	}
+	
+	static String ids(ArrayList<VideoInfo> vids){
+		ArrayList<String> ids = new ArrayList<String>();
+		for(VideoInfo vid : vids){
+			ids.add(vid.id);
+		}
+		return ids.toString();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Works out how often each feed should be polled from how it has behaved. Feeds that come back
+ * unchanged or fail have their interval backed off exponentially, while feeds with new videos are
+ * polled at roughly half their observed publishing cadence, learned from the entry publish dates.
+ * Intervals always stay within the configured bounds.
+ * <p>
+ * All of the feeds share a single wakeup: the alarm is set for the earliest due feed, rounded up to
+ * a BATCH_WINDOW boundary, and every feed due within the window is synced on that wakeup.
+ * @author betker
+ */
+public class AdaptivePollScheduler {
+	static final String TAG = "AdaptivePollScheduler";
+	
+	//Shared pref prefixes, the feed URL is appended to these.
+	static final String INTERVAL_PREFIX = "PollInterval:";
+	static final String NEXT_DUE_PREFIX = "PollNextDue:";
+	static final String CADENCE_PREFIX = "PollCadence:";
+	
+	static final long BATCH_WINDOW = 5 * 60 * 1000;
+	static final float IDLE_BACKOFF = 1.5f;
+	static final float FAILURE_BACKOFF = 2f;
+	static final float CADENCE_WEIGHT = 0.3f; //how much a new cadence sample moves the running estimate
+	static final int CADENCE_SAMPLES = 10; //how many of the newest entries to estimate cadence from
+	
+	final SharedPreferences prefs;
+	final long baseInterval, minInterval, maxInterval;
+	
+	public AdaptivePollScheduler(SharedPreferences prefs, long base, long min, long max){
+		this.prefs = prefs;
+		minInterval = min;
+		maxInterval = Math.max(min, max);
+		baseInterval = clamp(base);
+	}
+	
+	long clamp(long interval){
+		return Math.max(minInterval, Math.min(maxInterval, interval));
+	}
+	
+	public long getInterval(String feedUrl){
+		return clamp(prefs.getLong(INTERVAL_PREFIX + feedUrl, baseInterval));
+	}
+	
+	/**
+	 * @return The wall clock time the feed is next due, feeds that have never been synced are due immediately.
+	 */
+	public long getNextDue(String feedUrl){
+		return prefs.getLong(NEXT_DUE_PREFIX + feedUrl, 0);
+	}
+	
+	/**
+	 * @return The feeds that are due to be synced on a wakeup at the given time.
+	 */
+	public ArrayList<String> dueFeeds(List<String> feedUrls, long now){
+		ArrayList<String> due = new ArrayList<String>();
+		for(String url : feedUrls){
+			if(getNextDue(url) <= now + BATCH_WINDOW){
+				due.add(url);
+			}
+		}
+		return due;
+	}
+	
+	/**
+	 * @return When the next wakeup should be, rounded up to the batch window so close-together feeds share it.
+	 */
+	public long nextWakeup(List<String> feedUrls, long now){
+		long earliest = Long.MAX_VALUE;
+		for(String url : feedUrls){
+			earliest = Math.min(earliest, getNextDue(url));
+		}
+		earliest = Math.max(earliest, now);
+		return ((earliest + BATCH_WINDOW - 1) / BATCH_WINDOW) * BATCH_WINDOW;
+	}
+	
+	/**
+	 * Pulls in the next due time of any feed that is scheduled further out than the current bounds
+	 * allow, for when the bounds have just been lowered.
+	 */
+	public void applyBounds(List<String> feedUrls, long now){
+		SharedPreferences.Editor ed = prefs.edit();
+		for(String url : feedUrls){
+			long interval = getInterval(url);
+			if(getNextDue(url) > now + interval){
+				ed.putLong(INTERVAL_PREFIX + url, interval);
+				ed.putLong(NEXT_DUE_PREFIX + url, now + interval);
+			}
+		}
+		ed.commit();
+	}
+	
+	/**
+	 * Adjusts a feed's interval after a sync.
+	 * @param result The sync result, or null if the feed came back not modified.
+	 */
+	public void recordSync(String feedUrl, FeedResult result, long now){
+		long interval = getInterval(feedUrl);
+		float cadence = prefs.getFloat(CADENCE_PREFIX + feedUrl, 0);
+		if(result == null || result.vids.isEmpty()){
+			interval = (long)(interval * IDLE_BACKOFF);
+		}else{
+			long sample = estimateCadence(result.readPublished);
+			if(sample > 0){
+				cadence = cadence == 0 ? sample : cadence + CADENCE_WEIGHT * (sample - cadence);
+			}
+			//Poll at about twice the publish rate, so a new video waits half a cadence on average.
+			interval = cadence > 0 ? (long)(cadence / 2) : interval / 2;
+		}
+		save(feedUrl, clamp(interval), cadence, now);
+	}
+	
+	public void recordFailure(String feedUrl, long now){
+		long interval = (long)(getInterval(feedUrl) * FAILURE_BACKOFF);
+		save(feedUrl, clamp(interval), prefs.getFloat(CADENCE_PREFIX + feedUrl, 0), now);
+	}
+	
+	void save(String feedUrl, long interval, float cadence, long now){
+		Log.v(TAG, "Next poll of " + feedUrl + " in " + (interval / 1000 / 60) + " minutes.");
+		SharedPreferences.Editor ed = prefs.edit();
+		ed.putLong(INTERVAL_PREFIX + feedUrl, interval);
+		ed.putLong(NEXT_DUE_PREFIX + feedUrl, now + interval);
+		ed.putFloat(CADENCE_PREFIX + feedUrl, cadence);
+		ed.commit();
+	}
+	
+	/**
+	 * @return The mean gap between the newest publish times, or 0 if there aren't enough dated entries.
+	 */
+	static long estimateCadence(List<Long> published){
+		ArrayList<Long> times = new ArrayList<Long>();
+		for(Long t : published){
+			if(t > 0){
+				times.add(t);
+			}
+		}
+		if(times.size() < 2){
+			return 0;
+		}
+		Collections.sort(times, Collections.reverseOrder());
+		int n = Math.min(times.size(), CADENCE_SAMPLES);
+		return (times.get(0) - times.get(n - 1)) / (n - 1);
+	}
+}
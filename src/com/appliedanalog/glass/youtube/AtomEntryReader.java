@@ -0,0 +1,131 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.util.Xml;
+
+/**
+ * Streams the entries out of a YouTube Atom feed one at a time with a pull parser. Unlike
+ * building a ROME SyndFeed, only the entry currently being read is held in memory, and the
+ * handler can stop the read as soon as it has seen enough of the feed.
+ * @author betker
+ */
+public class AtomEntryReader implements FeedSource {
+	static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+	
+	//Reused for every entry, see EntryFieldExtractor.
+	final EntryFieldExtractor.Fields fields = new EntryFieldExtractor.Fields();
+	//Created on the first read. A reader is not thread safe, use one per thread.
+	XmlPullParser parser;
+
+	/**
+	 * Reads entries from the given stream until the feed ends or the handler asks to stop. The encoding
+	 * is taken from the content type's charset if it has one, otherwise from the XML declaration.
+	 * @return The number of entries handed to the handler.
+	 */
+	public int read(InputStream in, String contentType, EntryHandler handler) throws IOException, XmlPullParserException{
+		//The parser is kept for the next read, setInput() resets it.
+		if(parser == null){
+			parser = Xml.newPullParser();
+			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		}
+		parser.setInput(in, FeedFetcher.charset(contentType));
+
+		int count = 0;
+		int event = parser.getEventType();
+		while(event != XmlPullParser.END_DOCUMENT){
+			if(event == XmlPullParser.START_TAG && "entry".equals(parser.getName()) && ATOM_NS.equals(parser.getNamespace())){
+				VideoInfo vid = readEntry(parser);
+				count++;
+				if(!handler.onEntry(vid)){
+					break;
+				}
+			}
+			event = parser.next();
+		}
+		return count;
+	}
+
+	/**
+	 * Reads a single entry. The parser must be sitting on the entry's start tag and is left on its end tag.
+	 */
+	VideoInfo readEntry(XmlPullParser parser) throws IOException, XmlPullParserException{
+		final int entryDepth = parser.getDepth();
+		String link = null, title = "", author = null;
+		long published = 0;
+		boolean haveDescription = false;
+		fields.reset();
+
+		int event = parser.next();
+		while(!(event == XmlPullParser.END_TAG && parser.getDepth() == entryDepth)){
+			//Only direct atom children of the entry are interesting, media:group and friends are skipped over.
+			if(event == XmlPullParser.START_TAG && parser.getDepth() == entryDepth + 1 && ATOM_NS.equals(parser.getNamespace())){
+				String name = parser.getName();
+				if("link".equals(name)){
+					String rel = parser.getAttributeValue(null, "rel");
+					if(link == null && (rel == null || "alternate".equals(rel))){
+						link = parser.getAttributeValue(null, "href");
+					}
+				}else if("title".equals(name)){
+					title = parser.nextText();
+				}else if("published".equals(name)){
+					published = VideoInfo.parseAtomDate(parser.nextText());
+				}else if("author".equals(name)){
+					author = readAuthorName(parser);
+				}else if("content".equals(name)){
+					String content = parser.nextText();
+					if(!haveDescription){
+						haveDescription = EntryFieldExtractor.scanDescription(content, fields);
+					}
+				}
+			}
+			event = parser.next();
+		}
+		VideoInfo vid = new VideoInfo(EntryFieldExtractor.videoId(link), title, fields.duration == null ? "" : fields.duration, published);
+		vid.views = fields.views;
+		if(author != null){
+			vid.author = author;
+		}else if(fields.author != null){
+			vid.author = fields.author;
+		}
+		return vid;
+	}
+	
+	/**
+	 * Reads the name out of an author element. The parser must be on the author start tag and is left on its end tag.
+	 */
+	String readAuthorName(XmlPullParser parser) throws IOException, XmlPullParserException{
+		final int authorDepth = parser.getDepth();
+		String name = null;
+		int event = parser.next();
+		while(!(event == XmlPullParser.END_TAG && parser.getDepth() == authorDepth)){
+			if(event == XmlPullParser.START_TAG && "name".equals(parser.getName()) && name == null){
+				name = parser.nextText();
+			}
+			event = parser.next();
+		}
+		return name;
+	}
+}
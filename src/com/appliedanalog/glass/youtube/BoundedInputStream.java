@@ -0,0 +1,87 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it, and fails the read once too many bytes have come through or
+ * the stream has been open for too long. This keeps an oversized or endlessly trickling response
+ * from tying up a sync.
+ * @author betker
+ */
+public class BoundedInputStream extends FilterInputStream {
+	final long maxBytes;
+	final long deadline;
+	long count = 0;
+	
+	/**
+	 * @param maxBytes How many bytes may be read in total.
+	 * @param maxMillis How long, from now, the stream may be read for.
+	 */
+	public BoundedInputStream(InputStream in, long maxBytes, long maxMillis){
+		super(in);
+		this.maxBytes = maxBytes;
+		deadline = System.currentTimeMillis() + maxMillis;
+	}
+	
+	public long getCount(){
+		return count;
+	}
+	
+	void check(long read) throws IOException{
+		if(read > 0){
+			count += read;
+		}
+		if(count > maxBytes){
+			throw new IOException("Response is larger than " + maxBytes + " bytes");
+		}
+		if(System.currentTimeMillis() > deadline){
+			throw new IOException("Response took too long to download");
+		}
+	}
+	
+	@Override
+	public int read() throws IOException{
+		int b = super.read();
+		check(b == -1 ? 0 : 1);
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] buf, int off, int len) throws IOException{
+		int read = super.read(buf, off, len);
+		check(read);
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException{
+		long skipped = super.skip(n);
+		check(skipped);
+		return skipped;
+	}
+	
+	@Override
+	public boolean markSupported(){
+		return false;
+	}
+}
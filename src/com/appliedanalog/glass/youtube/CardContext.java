@@ -0,0 +1,52 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.UUID;
+
+import android.content.ContentResolver;
+
+import com.google.glass.timeline.TimelineHelper;
+import com.google.glass.util.SettingsSecure;
+import com.google.googlex.glass.common.proto.MenuItem;
+import com.google.googlex.glass.common.proto.MenuValue;
+
+/**
+ * Everything that is the same for every card built in one push: the timeline helper, the settings,
+ * the menu items (which are immutable, so one instance can be added to any number of cards) and a
+ * scratch buffer for rendering card HTML. Not thread safe, make one per push.
+ * @author betker
+ */
+public class CardContext {
+	final TimelineHelper tlHelper;
+	final SettingsSecure settings;
+	final MenuItem viewVideoMenu;
+	final MenuItem deleteMenu;
+	final StringBuilder html = new StringBuilder(512);
+	
+	public CardContext(ContentResolver cr){
+		//For some reason an TimelineHelper instance is required to call some methods.
+		tlHelper = new TimelineHelper();
+		settings = new SettingsSecure(cr);
+		//Menu item ids only have to be unique within a card.
+		viewVideoMenu = MenuItem.newBuilder().setAction(MenuItem.Action.VIEW_WEB_SITE).setId(UUID.randomUUID().toString())
+								.addValue(MenuValue.newBuilder().setDisplayName("View Video").build()).build();
+		deleteMenu = MenuItem.newBuilder().setAction(MenuItem.Action.DELETE).setId(UUID.randomUUID().toString()).build();
+	}
+}
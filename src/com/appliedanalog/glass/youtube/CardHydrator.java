@@ -0,0 +1,109 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.Collections;
+import java.util.List;
+
+import android.content.ContentResolver;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.glass.timeline.TimelineHelper;
+import com.google.googlex.glass.common.proto.TimelineItem;
+
+/**
+ * Fills in stub cards after they have been inserted. In lazy card mode only the bundle cover and
+ * the newest few cards of a bundle are built in full, the rest go onto the timeline as stubs
+ * carrying just the title, link and menus. This walks through the stubs at background priority,
+ * spaced out so it stays out of the way, pulling each thumbnail down and then swapping in the full
+ * card with an atomic timeline update.
+ * @author betker
+ */
+public class CardHydrator {
+	static final String TAG = "CardHydrator";
+	
+	//How many of the newest cards of a bundle are built in full up front.
+	static final int EAGER_CARDS = 3;
+	//Pause between stubs.
+	static final long IDLE_SPACING = 1500;
+	
+	/**
+	 * A stub card waiting to be filled in.
+	 */
+	public static class Job{
+		final String cardId;
+		final VideoInfo vid;
+		
+		public Job(String card, VideoInfo video){
+			cardId = card; vid = video;
+		}
+	}
+	
+	final YoutubeFeedService service;
+	
+	public CardHydrator(YoutubeFeedService svc){
+		service = svc;
+	}
+	
+	/**
+	 * Hydrates the stubs one at a time on a background thread.
+	 * @param onDone Run on the background thread once every stub has been handled.
+	 */
+	public void hydrateInIdle(final List<Job> jobs, final Runnable onDone){
+		(new Thread("Card Hydrator."){
+			public void run(){
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try{
+					CardContext ctx = new CardContext(service.getContentResolver());
+					for(Job job : jobs){
+						if(service.cacheThumbnails){
+							ThumbnailCache.getInstance(service).prefetch(Collections.singletonList(job.vid.id));
+						}
+						hydrate(job, ctx);
+						Thread.sleep(IDLE_SPACING);
+					}
+					Log.v(TAG, "Hydrated " + jobs.size() + " stub cards.");
+				}catch(InterruptedException e){
+					Log.v(TAG, "Hydration interrupted, the remaining cards stay as stubs.");
+				}finally{
+					onDone.run();
+				}
+			}
+		}).start();
+	}
+	
+	void hydrate(final Job job, CardContext ctx){
+		final String text = YoutubeFeedService.videoCardText(job.vid);
+		final String html = service.videoCardHtml(job.vid, text, ctx);
+		final TimelineHelper tlHelper = ctx.tlHelper;
+		final ContentResolver cr = service.getContentResolver();
+		TimelineHelper.atomicUpdateTimelineItemAsync(new TimelineHelper.Update(){
+			public TimelineItem onExecute(){
+				TimelineItem stub = tlHelper.queryTimelineItem(cr, job.cardId);
+				if(stub == null){
+					//Deleted before we got to it.
+					return null;
+				}
+				//Returning the item doesn't store it, it has to be written like the home card is.
+				return tlHelper.updateTimelineItem(service, TimelineItem.newBuilder(stub).setText(text).setHtml(html).build(), null, true, false);
+			}
+		});
+	}
+}
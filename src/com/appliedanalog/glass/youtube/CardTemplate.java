@@ -0,0 +1,124 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+
+/**
+ * A card HTML template that is parsed once into literal segments and value slots, so rendering a
+ * card is a walk over the segments into a reused StringBuilder. Slots are written as {name} and
+ * their values are HTML escaped, or as {!name} for values that are already markup. Values are passed
+ * to render() in the order the slots first appear in the template.
+ * @author betker
+ */
+public class CardTemplate {
+	final String[] literals; //literals[i] comes before slot i, the last one closes the template
+	final int[] slots; //value index for each slot
+	final boolean[] escape;
+	final int slotCount;
+	final int literalLength;
+	
+	public CardTemplate(String template){
+		ArrayList<String> lits = new ArrayList<String>();
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<Integer> slotList = new ArrayList<Integer>();
+		ArrayList<Boolean> escapeList = new ArrayList<Boolean>();
+		int pos = 0, length = 0;
+		while(true){
+			int open = template.indexOf('{', pos);
+			int close = open == -1 ? -1 : template.indexOf('}', open);
+			if(close == -1){
+				break;
+			}
+			lits.add(template.substring(pos, open));
+			length += open - pos;
+			boolean raw = template.charAt(open + 1) == '!';
+			String name = template.substring(raw ? open + 2 : open + 1, close);
+			int index = names.indexOf(name);
+			if(index == -1){
+				index = names.size();
+				names.add(name);
+			}
+			slotList.add(index);
+			escapeList.add(!raw);
+			pos = close + 1;
+		}
+		lits.add(template.substring(pos));
+		length += template.length() - pos;
+		
+		literals = lits.toArray(new String[lits.size()]);
+		slots = new int[slotList.size()];
+		escape = new boolean[slotList.size()];
+		for(int i = 0; i < slots.length; i++){
+			slots[i] = slotList.get(i);
+			escape[i] = escapeList.get(i);
+		}
+		slotCount = names.size();
+		literalLength = length;
+	}
+	
+	/**
+	 * Renders the template into out, which is cleared first.
+	 * @return out, for chaining.
+	 */
+	public StringBuilder render(StringBuilder out, String... values){
+		if(values.length != slotCount){
+			throw new IllegalArgumentException("Template takes " + slotCount + " values, got " + values.length);
+		}
+		out.setLength(0);
+		out.ensureCapacity(literalLength + 64);
+		for(int i = 0; i < slots.length; i++){
+			out.append(literals[i]);
+			if(escape[i]){
+				escapeHtml(values[slots[i]], out);
+			}else{
+				out.append(values[slots[i]]);
+			}
+		}
+		out.append(literals[slots.length]);
+		return out;
+	}
+	
+	/**
+	 * Renders the template into a new string.
+	 */
+	public String render(String... values){
+		return render(new StringBuilder(), values).toString();
+	}
+	
+	/**
+	 * Appends text to out with the characters that mean something in HTML escaped.
+	 */
+	static void escapeHtml(String text, StringBuilder out){
+		if(text == null){
+			return;
+		}
+		for(int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			switch(c){
+			case '<': out.append("&lt;"); break;
+			case '>': out.append("&gt;"); break;
+			case '&': out.append("&amp;"); break;
+			case '"': out.append("&quot;"); break;
+			case '\'': out.append("&#39;"); break;
+			default: out.append(c);
+			}
+		}
+	}
+}
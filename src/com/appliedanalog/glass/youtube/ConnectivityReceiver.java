@@ -0,0 +1,56 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+/**
+ * Retries any journaled work (see SyncJournal) as soon as the device is back online, rather than
+ * waiting out the retry backoff.
+ * @author betker
+ */
+public class ConnectivityReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+    	if(intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)){
+    		return;
+    	}
+    	NetworkInfo net = ((ConnectivityManager)context.getSystemService(Context.CONNECTIVITY_SERVICE)).getActiveNetworkInfo();
+    	if(net == null || !net.isConnected()){
+    		return;
+    	}
+    	//Don't wake the service up for nothing, this fires on every network change.
+    	if(!SyncJournal.mightHavePending(new File(context.getFilesDir(), SyncJournal.FILE_NAME))){
+    		return;
+    	}
+    	if(!StateStore.get(context).getBoolean(YoutubeFeedService.SERVICE_ENABLED, true)){
+    		return;
+    	}
+        Intent retryIntent = new Intent(context, YoutubeFeedService.class);
+        retryIntent.putExtra(YoutubeFeedService.FEED_SERVICE_OP, YoutubeFeedService.OP_RETRY);
+        retryIntent.putExtra(YoutubeFeedService.RETRY_ALL, true);
+        context.startService(retryIntent);
+    }
+}
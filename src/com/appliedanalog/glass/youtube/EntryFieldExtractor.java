@@ -0,0 +1,166 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+/**
+ * Pulls the interesting fields out of a feed entry by scanning its text in place. The HTML
+ * description youtube packs into each entry is walked once, front to back, and the only Strings
+ * created are the final field values - no intermediate substrings of the (large) description.
+ * <p>
+ * The description looks something like this, with each field as the first run of text after its label:
+ * <pre>
+ * &lt;span ...&gt;From:&lt;/span&gt;&lt;a href="..."&gt;author&lt;/a&gt; ... &lt;span ...&gt;Views:&lt;/span&gt;1,234 ...
+ * &lt;span ...&gt;Time:&lt;/span&gt;&lt;span ...&gt;39:52&lt;/span&gt;
+ * </pre>
+ * @author betker
+ */
+public class EntryFieldExtractor {
+	static final String WATCH = "watch?v=";
+	static final String TIME = "Time:</span>";
+	static final String VIEWS = "Views:</span>";
+	static final String FROM = "From:</span>";
+	static final int MAX_DURATION_LENGTH = 12; //a final sanity check on what we pull out as the duration
+	
+	/**
+	 * The description fields of an entry. Meant to be reused from entry to entry.
+	 */
+	public static class Fields{
+		String duration, author;
+		long views;
+		
+		public Fields(){
+			reset();
+		}
+		
+		public void reset(){
+			duration = null; author = null; views = -1;
+		}
+		
+		boolean complete(){
+			return duration != null && author != null && views != -1;
+		}
+	}
+	
+	/**
+	 * Pulls the video id out of an entry link. The link will be something like
+	 * youtube.com/watch?v=<id>&feature=blahblahblah, we just want the id.
+	 */
+	public static String videoId(String link){
+		if(link == null){
+			return "";
+		}
+		int start = link.indexOf(WATCH);
+		if(start == -1){
+			return "";
+		}
+		start += WATCH.length();
+		int end = link.indexOf('&', start);
+		return link.substring(start, end == -1 ? link.length() : end);
+	}
+	
+	/**
+	 * Scans a description block for its fields, filling in any that are still missing from out.
+	 * @return true if the text contained any of the field labels, i.e. it was the description block.
+	 */
+	public static boolean scanDescription(String html, Fields out){
+		boolean found = false;
+		final int len = html.length();
+		for(int i = html.indexOf(':'); i != -1 && !out.complete(); i = html.indexOf(':', i + 1)){
+			//Every label is 4 or 5 characters followed by ':</span>', check which (if any) ends here.
+			if(out.duration == null && labelAt(html, i, TIME)){
+				found = true;
+				int start = valueStart(html, afterLabel(i, TIME), len);
+				int end = valueEnd(html, start, len);
+				//An unreadable duration is recorded as empty so we don't go looking for it again.
+				out.duration = end - start > MAX_DURATION_LENGTH ? "" : html.substring(start, end);
+				i = end;
+			}else if(out.views == -1 && labelAt(html, i, VIEWS)){
+				found = true;
+				int start = valueStart(html, afterLabel(i, VIEWS), len);
+				long views = 0;
+				int c = start;
+				for(; c < len && html.charAt(c) != '<'; c++){
+					char ch = html.charAt(c);
+					if(ch >= '0' && ch <= '9'){
+						views = views * 10 + (ch - '0');
+					}
+				}
+				out.views = views;
+				i = c;
+			}else if(out.author == null && labelAt(html, i, FROM)){
+				found = true;
+				int start = valueStart(html, afterLabel(i, FROM), len);
+				int end = valueEnd(html, start, len);
+				out.author = html.substring(start, end);
+				i = end;
+			}
+			if(i >= len){
+				break;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * @return true if the label (ending in ':</span>') has its colon at colon.
+	 */
+	static boolean labelAt(String html, int colon, String label){
+		int colonInLabel = label.indexOf(':');
+		return colon >= colonInLabel && html.regionMatches(colon - colonInLabel, label, 0, label.length());
+	}
+	
+	static int afterLabel(int colon, String label){
+		return colon - label.indexOf(':') + label.length();
+	}
+	
+	/**
+	 * @return The index of the first text character at or after from, skipping over any tags and whitespace.
+	 */
+	static int valueStart(String html, int from, int len){
+		int i = from;
+		while(i < len){
+			char ch = html.charAt(i);
+			if(ch == '<'){
+				while(i < len && html.charAt(i) != '>'){
+					i++;
+				}
+				i++;
+			}else if(Character.isWhitespace(ch)){
+				i++;
+			}else{
+				break;
+			}
+		}
+		return Math.min(i, len);
+	}
+	
+	/**
+	 * @return The end of the run of text starting at start, trailing whitespace excluded.
+	 */
+	static int valueEnd(String html, int start, int len){
+		int end = start;
+		while(end < len && html.charAt(end) != '<'){
+			end++;
+		}
+		while(end > start && Character.isWhitespace(html.charAt(end - 1))){
+			end--;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.FileObserver;
+import android.util.Log;
+
+/**
+ * An immutable snapshot of the configuration file. The file is parsed once and the snapshot is
+ * cached along with the file's modification time and size, so loading the configuration on every
+ * service start costs a stat rather than a read and parse. A FileObserver on the file's directory
+ * also drops the snapshot as soon as the file is written and tells the service, so changes such as
+ * a new query interval take effect straight away rather than on the next alarm.
+ * @author betker
+ */
+public class FeedConfig {
+	static final String TAG = "FeedConfig";
+	
+	//This is just constant because I have no good way of making it configurable in glass.
+	public static final String CONFIGURATION_FILE = "/sdcard/.youtubefeedconfig";
+	static final String DEFAULT_FEED = "http://gdata.youtube.com/feeds/api/standardfeeds/top_rated";
+	//Feed formats, a feed line can start with one of these and a colon to say how the feed is read.
+	static final String FORMAT_ATOM = "atom"; //streaming Atom reader
+	static final String FORMAT_ROME = "rome"; //ROME, for RSS and anything the streaming reader can't handle
+	static final String FORMAT_JSON = "json"; //streaming JSON reader
+	
+	final List<String> feedUrls;
+	final Map<String, String> feedFormats; //only feeds with a format given are in here
+	final int updateInterval;
+	final boolean adaptivePolling;
+	final int minUpdateInterval, maxUpdateInterval;
+	final boolean sendAllVideos;
+	final boolean reuseBundles;
+	final boolean cacheThumbnails;
+	final int fetchTimeout;
+	final long maxFeedSize;
+	final boolean streamingParser;
+	final boolean lazyCards;
+	final VideoFilter filter;
+	final boolean persistentWorker;
+	final int retainBundles;
+	final long retainAge;
+	final boolean mergeFeeds;
+	
+	//What the snapshot was parsed from.
+	final long fileModified, fileSize;
+	
+	static FeedConfig cached;
+	static FileObserver observer;
+	
+	/**
+	 * Parses the configuration from reader, or takes the defaults if reader is null.
+	 */
+	FeedConfig(BufferedReader reader, long modified, long size) throws IOException{
+		//Defaults
+		ArrayList<String> feeds = new ArrayList<String>();
+		HashMap<String, String> formats = new HashMap<String, String>();
+		int interval = 10 * 60 * 1000; //every 10 minutes
+		boolean adaptive = true;
+		int minInterval = 15 * 60 * 1000;
+		int maxInterval = 12 * 60 * 60 * 1000;
+		boolean sendAll = true;
+		boolean reuse = false;
+		boolean thumbs = true;
+		int timeout = 60 * 1000;
+		long maxSize = 2 * 1024 * 1024;
+		boolean streaming = true;
+		boolean lazy = false;
+		ArrayList<String> includeKeywords = new ArrayList<String>(), excludeKeywords = new ArrayList<String>();
+		ArrayList<String> includeAuthors = new ArrayList<String>(), excludeAuthors = new ArrayList<String>();
+		int minDuration = -1, maxDuration = -1;
+		boolean worker = false;
+		int bundles = 20;
+		long age = 14L * 24 * 60 * 60 * 1000;
+		boolean merge = true;
+		
+		String line;
+		while(reader != null && (line = reader.readLine()) != null){
+			int eq = line.indexOf('=');
+			if(line.startsWith("#") || eq == -1){
+				continue; //its a comment
+			}
+			String key = line.substring(0, eq);
+			String value = line.substring(eq + 1).trim();
+			try{
+				if(key.equals("youtubeFeed")){
+					String format = formatOf(value);
+					if(format != null){
+						value = value.substring(format.length() + 1).trim();
+						formats.put(value, format);
+					}
+					if(value.length() > 0 && !feeds.contains(value)){
+						feeds.add(value);
+					}
+				}else if(key.equals("queryInterval")){
+					interval = Integer.parseInt(value) * 60 * 1000;
+				}else if(key.equals("adaptivePolling")){
+					adaptive = Boolean.parseBoolean(value);
+				}else if(key.equals("minQueryInterval")){
+					minInterval = Integer.parseInt(value) * 60 * 1000;
+				}else if(key.equals("maxQueryInterval")){
+					maxInterval = Integer.parseInt(value) * 60 * 1000;
+				}else if(key.equals("sendAllVideos")){
+					sendAll = Boolean.parseBoolean(value);
+				}else if(key.equals("reuseBundles")){
+					reuse = Boolean.parseBoolean(value);
+				}else if(key.equals("cacheThumbnails")){
+					thumbs = Boolean.parseBoolean(value);
+				}else if(key.equals("fetchTimeout")){
+					timeout = Integer.parseInt(value) * 1000;
+				}else if(key.equals("maxFeedSize")){
+					maxSize = Long.parseLong(value) * 1024;
+				}else if(key.equals("streamingParser")){
+					streaming = Boolean.parseBoolean(value);
+				}else if(key.equals("lazyCards")){
+					lazy = Boolean.parseBoolean(value);
+				}else if(key.equals("includeKeyword")){
+					includeKeywords.add(value);
+				}else if(key.equals("excludeKeyword")){
+					excludeKeywords.add(value);
+				}else if(key.equals("includeAuthor")){
+					includeAuthors.add(value);
+				}else if(key.equals("excludeAuthor")){
+					excludeAuthors.add(value);
+				}else if(key.equals("minDuration")){
+					minDuration = Integer.parseInt(value);
+				}else if(key.equals("maxDuration")){
+					maxDuration = Integer.parseInt(value);
+				}else if(key.equals("persistentWorker")){
+					worker = Boolean.parseBoolean(value);
+				}else if(key.equals("retainBundles")){
+					bundles = Integer.parseInt(value);
+				}else if(key.equals("retainDays")){
+					age = Long.parseLong(value) * 24 * 60 * 60 * 1000;
+				}else if(key.equals("mergeFeeds")){
+					merge = Boolean.parseBoolean(value);
+				}
+			}catch(NumberFormatException ex){
+				Log.v(TAG, "Improper configuration formatting on this line: `" + line + "` - " + ex.getMessage());
+			}
+		}
+		if(feeds.isEmpty()){
+			feeds.add(DEFAULT_FEED);
+		}
+		
+		feedUrls = Collections.unmodifiableList(feeds);
+		feedFormats = Collections.unmodifiableMap(formats);
+		updateInterval = interval;
+		adaptivePolling = adaptive;
+		minUpdateInterval = minInterval;
+		maxUpdateInterval = maxInterval;
+		sendAllVideos = sendAll;
+		reuseBundles = reuse;
+		cacheThumbnails = thumbs;
+		fetchTimeout = timeout;
+		maxFeedSize = maxSize;
+		streamingParser = streaming;
+		lazyCards = lazy;
+		persistentWorker = worker;
+		retainBundles = bundles;
+		retainAge = age;
+		mergeFeeds = merge;
+		filter = new VideoFilter(includeKeywords, excludeKeywords, includeAuthors, excludeAuthors, minDuration, maxDuration);
+		fileModified = modified;
+		fileSize = size;
+	}
+	
+	/**
+	 * @return The format a feed line starts with, or null if it is just a URL.
+	 */
+	static String formatOf(String feedLine){
+		for(String format : new String[]{ FORMAT_ATOM, FORMAT_ROME, FORMAT_JSON }){
+			if(feedLine.startsWith(format + ":")){
+				return format;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return The current configuration. Only reads the file if it has changed since it was last parsed.
+	 */
+	public static synchronized FeedConfig get(){
+		File file = new File(CONFIGURATION_FILE);
+		long modified = file.lastModified(), size = file.length();
+		if(cached != null && cached.fileModified == modified && cached.fileSize == size){
+			return cached;
+		}
+		cached = parse(file, modified, size);
+		return cached;
+	}
+	
+	static FeedConfig parse(File file, long modified, long size){
+		try{
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			try{
+				FeedConfig config = new FeedConfig(reader, modified, size);
+				Log.v(TAG, "Successfully parsed configuration file. youtubeFeed='" + config.feedUrls + "', queryInterval='" + config.updateInterval + "'");
+				return config;
+			}finally{
+				reader.close();
+			}
+		}catch(IOException e){
+			Log.v(TAG, "Error loading configuration file: " + e.getMessage());
+			try{
+				return new FeedConfig(null, modified, size);
+			}catch(IOException never){
+				throw new RuntimeException(never);
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the two configurations would poll on a different schedule.
+	 */
+	boolean scheduleDiffers(FeedConfig other){
+		return updateInterval != other.updateInterval || adaptivePolling != other.adaptivePolling ||
+			   minUpdateInterval != other.minUpdateInterval || maxUpdateInterval != other.maxUpdateInterval ||
+			   !feedUrls.equals(other.feedUrls);
+	}
+	
+	/**
+	 * Starts watching the configuration file, if that isn't already happening. When it changes the
+	 * cached snapshot is dropped and the service is started with the given intent to apply it.
+	 */
+	public static synchronized void watch(final Context context, final Intent onChange){
+		if(observer != null){
+			return;
+		}
+		final File file = new File(CONFIGURATION_FILE);
+		//Watch the directory, editors often replace the file rather than writing to it.
+		observer = new FileObserver(file.getParent(), FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE){
+			public void onEvent(int event, String path){
+				if(!file.getName().equals(path)){
+					return;
+				}
+				Log.v(TAG, "Configuration file changed.");
+				synchronized(FeedConfig.class){
+					cached = null;
+				}
+				context.startService(onChange);
+			}
+		};
+		observer.startWatching();
+	}
+}
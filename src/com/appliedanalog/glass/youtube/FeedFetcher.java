@@ -0,0 +1,270 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Fetches feed documents over HTTP using conditional GETs. The ETag and Last-Modified
+ * validators returned by the server are remembered per feed URL, so a poll against an
+ * unchanged feed comes back as a 304 and never reaches the XML parser.
+ * <p>
+ * Responses are requested gzip or deflate compressed and decoded as they are streamed into
+ * the parser. Every fetch has connect and read timeouts, an overall time limit and a cap on
+ * the decoded size. Connections are handed back to HttpURLConnection's keep-alive pool rather
+ * than torn down, so syncing several feeds from the same host reuses the connection.
+ * @author betker
+ */
+public class FeedFetcher {
+	static final String TAG = "FeedFetcher";
+
+	//Shared pref prefixes, the feed URL is appended to these.
+	static final String ETAG_PREFIX = "FeedETag:";
+	static final String LAST_MODIFIED_PREFIX = "FeedLastModified:";
+	
+	static final int CONNECT_TIMEOUT = 15 * 1000;
+	//How much of an abandoned response will be read off so its connection can go back to the pool.
+	static final int DRAIN_LIMIT = 16 * 1024;
+	
+	SharedPreferences prefs;
+	int timeout = 60 * 1000; //the read timeout and the time limit for the whole download
+	long maxBytes = 2 * 1024 * 1024;
+	
+	//How long each phase of the last fetch took, for SyncMetrics. Connecting includes the DNS lookup.
+	long connectMillis, ttfbMillis;
+
+	public FeedFetcher(SharedPreferences prefs, int timeoutMillis, long maxResponseBytes){
+		this.prefs = prefs;
+		timeout = timeoutMillis;
+		maxBytes = maxResponseBytes;
+	}
+
+	/**
+	 * An open feed response. The validators it carries are only saved once the caller has
+	 * finished with the document, so a failed parse does not turn the next poll into a 304.
+	 */
+	public class Response{
+		final String feedUrl;
+		final HttpURLConnection connection;
+		final InputStream raw; //straight off the connection
+		final BoundedInputStream wire; //counts compressed bytes
+		final BoundedInputStream stream; //decoded, what the parser reads
+		final String contentType;
+		final String etag, lastModified;
+
+		Response(String url, HttpURLConnection conn) throws IOException{
+			feedUrl = url;
+			connection = conn;
+			contentType = conn.getContentType();
+			etag = conn.getHeaderField("ETag");
+			lastModified = conn.getHeaderField("Last-Modified");
+			raw = conn.getInputStream();
+			wire = new BoundedInputStream(raw, maxBytes, timeout);
+			
+			String encoding = conn.getContentEncoding();
+			InputStream decoded = wire;
+			if("gzip".equalsIgnoreCase(encoding)){
+				decoded = new GZIPInputStream(wire);
+			}else if("deflate".equalsIgnoreCase(encoding)){
+				//Plenty of servers send raw deflate rather than the zlib wrapped data the spec asks for, so check.
+				InputStream buffered = new BufferedInputStream(wire);
+				decoded = new InflaterInputStream(buffered, new Inflater(!looksLikeZlib(buffered)));
+			}
+			stream = new BoundedInputStream(decoded, maxBytes, timeout);
+		}
+		
+		/**
+		 * @return How many bytes came over the wire (before decompression) so far.
+		 */
+		public long getWireBytes(){
+			return wire.getCount();
+		}
+		
+		/**
+		 * @return How many decoded bytes have been read so far.
+		 */
+		public long getBytes(){
+			return stream.getCount();
+		}
+
+		public InputStream getStream(){
+			return stream;
+		}
+
+		public String getContentType(){
+			return contentType;
+		}
+
+		/**
+		 * Stores the validators from this response so the next fetch of the same feed can be conditional.
+		 */
+		public void commitValidators(){
+			FeedFetcher.commitValidators(prefs, feedUrl, etag, lastModified);
+		}
+
+		/**
+		 * Closes the response. If the body was read to the end (or nearly), the connection goes back to the
+		 * keep-alive pool, otherwise it is dropped rather than downloading the rest of an abandoned feed.
+		 */
+		public void close(){
+			if(drain(raw)){
+				try{
+					raw.close();
+				}catch(IOException e){
+					Log.v(TAG, "Error closing feed stream: " + e.getMessage());
+				}
+			}else{
+				connection.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Opens the feed at the given URL.
+	 * @return An open response, or null if the server reported the feed has not been modified
+	 *         since the validators were last committed.
+	 */
+	public Response fetch(String feedUrl) throws IOException{
+		HttpURLConnection conn = (HttpURLConnection)new URL(feedUrl).openConnection();
+		conn.setConnectTimeout(CONNECT_TIMEOUT);
+		conn.setReadTimeout(timeout);
+		//Asking for an encoding ourselves turns off HttpURLConnection's transparent gzip, we decode in Response.
+		conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		conn.setRequestProperty("Connection", "keep-alive");
+		String etag = prefs.getString(ETAG_PREFIX + feedUrl, null);
+		String lastModified = prefs.getString(LAST_MODIFIED_PREFIX + feedUrl, null);
+		if(etag != null){
+			conn.setRequestProperty("If-None-Match", etag);
+		}
+		if(lastModified != null){
+			conn.setRequestProperty("If-Modified-Since", lastModified);
+		}
+
+		long start = System.nanoTime();
+		conn.connect();
+		connectMillis = (System.nanoTime() - start) / 1000000;
+		start = System.nanoTime();
+		int code = conn.getResponseCode();
+		ttfbMillis = (System.nanoTime() - start) / 1000000;
+		if(code == HttpURLConnection.HTTP_NOT_MODIFIED){
+			Log.v(TAG, "Feed not modified since last fetch: " + feedUrl);
+			release(conn, conn.getInputStream());
+			return null;
+		}
+		if(code != HttpURLConnection.HTTP_OK){
+			release(conn, conn.getErrorStream());
+			throw new IOException("Unexpected HTTP response " + code + " fetching " + feedUrl);
+		}
+		return new Response(feedUrl, conn);
+	}
+	
+	/**
+	 * Stores validators for a feed, for when the response they came with is long gone (see SyncJournal).
+	 */
+	static void commitValidators(SharedPreferences prefs, String feedUrl, String etag, String lastModified){
+		SharedPreferences.Editor ed = prefs.edit();
+		if(etag != null){
+			ed.putString(ETAG_PREFIX + feedUrl, etag);
+		}else{
+			ed.remove(ETAG_PREFIX + feedUrl);
+		}
+		if(lastModified != null){
+			ed.putString(LAST_MODIFIED_PREFIX + feedUrl, lastModified);
+		}else{
+			ed.remove(LAST_MODIFIED_PREFIX + feedUrl);
+		}
+		ed.commit();
+	}
+	
+	/**
+	 * Pulls the charset parameter out of a content type, e.g. UTF-8 from "application/json; charset=UTF-8".
+	 * @return The charset, or null if there isn't one.
+	 */
+	static String charset(String contentType){
+		if(contentType == null){
+			return null;
+		}
+		for(String param : contentType.split(";")){
+			param = param.trim();
+			if(param.regionMatches(true, 0, "charset=", 0, 8)){
+				String value = param.substring(8).trim();
+				if(value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")){
+					value = value.substring(1, value.length() - 1);
+				}
+				return value.length() > 0 ? value : null;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Finishes with a response whose body we don't want, keeping the connection alive if we can.
+	 */
+	static void release(HttpURLConnection conn, InputStream body){
+		if(body == null){
+			return;
+		}
+		if(drain(body)){
+			try{
+				body.close();
+			}catch(IOException e){
+				//nothing more to do
+			}
+		}else{
+			conn.disconnect();
+		}
+	}
+	
+	/**
+	 * Reads off whatever is left of a body, up to DRAIN_LIMIT bytes.
+	 * @return true if the end of the body was reached.
+	 */
+	static boolean drain(InputStream in){
+		try{
+			byte[] buf = new byte[1024];
+			int total = 0, read;
+			while(total < DRAIN_LIMIT && (read = in.read(buf)) != -1){
+				total += read;
+			}
+			return total < DRAIN_LIMIT;
+		}catch(IOException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * Peeks at the first two bytes of a deflate body to see whether they are a zlib header.
+	 */
+	static boolean looksLikeZlib(InputStream in) throws IOException{
+		in.mark(2);
+		int cmf = in.read(), flg = in.read();
+		in.reset();
+		return cmf != -1 && flg != -1 && (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+	}
+}
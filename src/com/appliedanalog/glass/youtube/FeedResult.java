@@ -0,0 +1,45 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+
+/**
+ * The outcome of syncing one feed: the videos to deliver and the fetch they came from. Nothing
+ * about the sync is saved until the videos have made it onto the timeline.
+ * @author betker
+ */
+public class FeedResult {
+	final String feedUrl;
+	final FeedFetcher.Response response;
+	final ArrayList<VideoInfo> vids;
+	//Every video id read from the feed, delivered or not.
+	final ArrayList<String> readIds;
+	//Publish times of the same videos, 0 where unknown.
+	final ArrayList<Long> readPublished;
+	//The journal batch the push was written ahead in, and the bundle the videos go into. Both are assigned
+	//when the push is journaled. Merged bundles hold the videos of several results, see YoutubeFeedService.pushCards().
+	String batchId, bundleId;
+	//The card each video went out in, parallel to vids. Filled in by the push.
+	final ArrayList<String> cardIds = new ArrayList<String>();
+
+	public FeedResult(String url, FeedFetcher.Response resp, ArrayList<VideoInfo> videos, ArrayList<String> ids, ArrayList<Long> published){
+		feedUrl = url; response = resp; vids = videos; readIds = ids; readPublished = published;
+	}
+}
@@ -0,0 +1,44 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.io.InputStream;
+
+/**
+ * Turns a feed document into a stream of VideoInfo, one entry at a time. There is one of these per
+ * feed format, see YoutubeFeedService.getFeedSource() for how one is picked for a feed.
+ * @author betker
+ */
+public interface FeedSource {
+	/**
+	 * Receives each entry as it is read off the stream.
+	 */
+	public interface EntryHandler{
+		/**
+		 * @return false to stop reading the feed.
+		 */
+		boolean onEntry(VideoInfo vid);
+	}
+	
+	/**
+	 * Reads entries from the given stream until the feed ends or the handler asks to stop.
+	 * @param contentType The content type the feed was served with, or null if it isn't known.
+	 * @return The number of entries handed to the handler.
+	 */
+	int read(InputStream in, String contentType, EntryHandler handler) throws Exception;
+}
@@ -0,0 +1,203 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * Fetches a set of feeds concurrently on a small, bounded pool of threads. No more than
+ * MAX_PER_HOST fetches go to the same host at once, and there is never more than one fetch of
+ * the same feed in flight. Requests to sync a feed that is already being synced are folded into
+ * the running sync, which fetches the feed once more when it finishes instead of racing it.
+ * Once every feed in a sync has finished, the results are handed over together so they can be
+ * written to the timeline in one go.
+ * <p>
+ * A feed stays in flight until the caller has delivered (or journaled) its result and called
+ * release(), so another sync can't fetch it against a seen index that hasn't been committed yet.
+ * @author betker
+ */
+public class FeedSyncScheduler<R> {
+	static final String TAG = "FeedSyncScheduler";
+	
+	static final int MAX_THREADS = 4;
+	static final int MAX_PER_HOST = 2;
+	static final long IDLE_THREAD_TIMEOUT = 30; //seconds
+	
+	/**
+	 * Does the actual work of syncing a single feed. Runs on a pool thread.
+	 */
+	public interface FeedSyncer<R>{
+		/**
+		 * @return The result of the sync, or null if there is nothing to deliver.
+		 */
+		R syncFeed(String feedUrl) throws Exception;
+	}
+	
+	/**
+	 * Called once all of the feeds in a sync have finished, on the thread that finished last.
+	 */
+	public interface CompletionHandler<R>{
+		/**
+		 * @param feedUrls The feeds this sync ran. They must be passed to release() once the results are
+		 *                 delivered or journaled, whether or not that worked.
+		 */
+		void onSyncComplete(List<R> results, List<String> feedUrls);
+	}
+	
+	final ThreadPoolExecutor executor;
+	final HashMap<String, Semaphore> hostPermits = new HashMap<String, Semaphore>();
+	//Feeds currently being synced (fetched or waiting on delivery), and those that were asked for again while
+	//they were. Both guarded by inFlight.
+	final HashSet<String> inFlight = new HashSet<String>();
+	final HashSet<String> rerun = new HashSet<String>();
+	
+	public FeedSyncScheduler(){
+		executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+										  new LinkedBlockingQueue<Runnable>(), new ThreadFactory(){
+			final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r){
+				return new Thread(r, "FeedParsing Thread " + count.incrementAndGet());
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * @param warm Keep the pool threads (and anything they cache) alive between syncs, rather than letting them time out.
+	 */
+	public void setKeepThreadsWarm(boolean warm){
+		executor.allowCoreThreadTimeOut(!warm);
+	}
+	
+	/**
+	 * Starts syncing every feed in the list. Feeds that are already being synced are folded into
+	 * the sync that is running them.
+	 * @return false if every feed was already in flight, in which case the handler will not be called.
+	 */
+	public boolean syncAll(List<String> feedUrls, final FeedSyncer<R> syncer, final CompletionHandler<R> handler){
+		final ArrayList<String> toSync = new ArrayList<String>();
+		synchronized(inFlight){
+			for(String url : feedUrls){
+				if(inFlight.add(url)){
+					toSync.add(url);
+				}else{
+					Log.v(TAG, "Feed is already being synced, folding into the running sync: " + url);
+					rerun.add(url);
+				}
+			}
+		}
+		if(toSync.isEmpty()){
+			return false;
+		}
+		
+		//Keyed by feed so that a rerun of a feed replaces the result of the run it was folded into.
+		final LinkedHashMap<String, R> results = new LinkedHashMap<String, R>();
+		final AtomicInteger remaining = new AtomicInteger(toSync.size());
+		for(final String url : toSync){
+			executor.execute(new Runnable(){
+				public void run(){
+					Semaphore permits = permitsFor(url);
+					try{
+						permits.acquire();
+						try{
+							R result = syncer.syncFeed(url);
+							if(result != null){
+								synchronized(results){
+									results.put(url, result);
+								}
+							}
+						}finally{
+							permits.release();
+						}
+					}catch(Exception e){
+						Log.v(TAG, "Failed to sync feed " + url + ": " + e.getMessage());
+						e.printStackTrace();
+					}
+					
+					boolean again;
+					synchronized(inFlight){
+						again = rerun.remove(url);
+					}
+					if(again){
+						//Somebody asked for this feed while it was being fetched, go around once more.
+						Log.v(TAG, "Re-syncing coalesced feed: " + url);
+						executor.execute(this);
+						return;
+					}
+					if(remaining.decrementAndGet() == 0){
+						ArrayList<R> finished;
+						synchronized(results){
+							finished = new ArrayList<R>(results.values());
+						}
+						handler.onSyncComplete(finished, toSync);
+					}
+				}
+			});
+		}
+		return true;
+	}
+	
+	/**
+	 * Ends the sync of the given feeds, once their results have been delivered or journaled.
+	 * @return The feeds that were asked for again after they were fetched. They haven't been synced
+	 *         since, so the caller should sync them now.
+	 */
+	public List<String> release(List<String> feedUrls){
+		ArrayList<String> again = new ArrayList<String>();
+		synchronized(inFlight){
+			for(String url : feedUrls){
+				inFlight.remove(url);
+				if(rerun.remove(url)){
+					again.add(url);
+				}
+			}
+		}
+		return again;
+	}
+	
+	Semaphore permitsFor(String feedUrl){
+		String host;
+		try{
+			host = new URL(feedUrl).getHost();
+		}catch(Exception e){
+			host = feedUrl;
+		}
+		synchronized(hostPermits){
+			Semaphore permits = hostPermits.get(host);
+			if(permits == null){
+				permits = new Semaphore(MAX_PER_HOST);
+				hostPermits.put(host, permits);
+			}
+			return permits;
+		}
+	}
+}
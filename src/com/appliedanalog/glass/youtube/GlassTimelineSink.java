@@ -0,0 +1,51 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ContentProviderOperation;
+
+import com.google.glass.timeline.TimelineHelper;
+import com.google.glass.timeline.TimelineProvider;
+import com.google.googlex.glass.common.proto.TimelineItem;
+
+/**
+ * Writes cards to the Glass timeline.
+ * @author betker
+ */
+public class GlassTimelineSink implements TimelineSink {
+	final YoutubeFeedService service;
+	
+	public GlassTimelineSink(YoutubeFeedService svc){
+		service = svc;
+	}
+	
+	public void insert(List<TimelineItem> cards){
+		new TimelineHelper().bulkInsertTimelineItem(service, cards);
+	}
+	
+	public void apply(ArrayList<ContentProviderOperation> ops) throws Exception{
+		service.getContentResolver().applyBatch(TimelineProvider.TIMELINE_URI.getAuthority(), ops);
+	}
+	
+	public void hydrate(List<CardHydrator.Job> stubs, Runnable onDone){
+		new CardHydrator(service).hydrateInIdle(stubs, onDone);
+	}
+}
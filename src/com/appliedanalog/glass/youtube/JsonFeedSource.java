@@ -0,0 +1,215 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+/**
+ * Streams video entries out of a JSON feed token by token, so like AtomEntryReader only the entry
+ * being read is held in memory and the read can stop early. Two shapes are understood:
+ * <ul>
+ * <li>YouTube Data API (v3) list responses, an "items" array whose entries keep their fields in
+ *     "snippet", "contentDetails" and "statistics" objects. Durations are ISO 8601 (PT4M13S).</li>
+ * <li>A flat list for a local proxy, either a bare array or a "videos" or "entries" array of
+ *     objects with id, title, author, duration, views and published fields.</li>
+ * </ul>
+ * Unknown fields are skipped without being parsed.
+ * @author betker
+ */
+public class JsonFeedSource implements FeedSource {
+	
+	/**
+	 * The fields of the entry being read.
+	 */
+	static class Entry{
+		String id, videoId, title, duration, author, published;
+		long views;
+		
+		void reset(){
+			id = null; videoId = null; title = null; duration = null; author = null; published = null;
+			views = -1;
+		}
+	}
+	
+	//Reused for every entry. A source is not thread safe, use one per thread.
+	final Entry entry = new Entry();
+	
+	public int read(InputStream in, String contentType, EntryHandler handler) throws IOException{
+		String charset = FeedFetcher.charset(contentType);
+		JsonReader reader = new JsonReader(new InputStreamReader(in, charset == null ? "UTF-8" : charset));
+		//The caller owns the stream, the reader is not closed.
+		if(reader.peek() == JsonToken.BEGIN_ARRAY){
+			return readEntries(reader, handler, 0);
+		}
+		int count = 0;
+		reader.beginObject();
+		while(reader.hasNext()){
+			String name = reader.nextName();
+			if((name.equals("items") || name.equals("videos") || name.equals("entries")) && reader.peek() == JsonToken.BEGIN_ARRAY){
+				int read = readEntries(reader, handler, count);
+				if(read < 0){
+					return -read;
+				}
+				count = read;
+			}else{
+				reader.skipValue();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Reads an array of entries.
+	 * @param count How many entries have been read so far.
+	 * @return The new count, or its negation if the handler asked to stop.
+	 */
+	int readEntries(JsonReader reader, EntryHandler handler, int count) throws IOException{
+		reader.beginArray();
+		while(reader.hasNext()){
+			if(reader.peek() != JsonToken.BEGIN_OBJECT){
+				reader.skipValue();
+				continue;
+			}
+			entry.reset();
+			readFields(reader, entry);
+			count++;
+			if(!handler.onEntry(toVideo(entry))){
+				return -count;
+			}
+		}
+		reader.endArray();
+		return count;
+	}
+	
+	/**
+	 * Reads the fields of an object into entry, descending into the objects the Data API nests them in.
+	 */
+	void readFields(JsonReader reader, Entry entry) throws IOException{
+		reader.beginObject();
+		while(reader.hasNext()){
+			String name = reader.nextName();
+			JsonToken token = reader.peek();
+			if(token == JsonToken.NULL){
+				reader.nextNull();
+			}else if(token == JsonToken.BEGIN_OBJECT){
+				//Search results have an object for the id, playlist items keep the video in resourceId.
+				if(name.equals("id") || name.equals("snippet") || name.equals("contentDetails")
+						|| name.equals("statistics") || name.equals("resourceId")){
+					readFields(reader, entry);
+				}else{
+					reader.skipValue();
+				}
+			}else if(token == JsonToken.BEGIN_ARRAY){
+				reader.skipValue();
+			}else if(name.equals("id")){
+				entry.id = reader.nextString();
+			}else if(name.equals("videoId")){
+				entry.videoId = reader.nextString();
+			}else if(name.equals("title")){
+				entry.title = reader.nextString();
+			}else if(name.equals("author") || name.equals("channelTitle")){
+				entry.author = reader.nextString();
+			}else if(name.equals("duration")){
+				entry.duration = token == JsonToken.NUMBER ? formatDuration(reader.nextInt()) : reader.nextString();
+			}else if(name.equals("views") || name.equals("viewCount")){
+				//The Data API sends counts as strings.
+				try{
+					entry.views = Long.parseLong(reader.nextString());
+				}catch(NumberFormatException e){
+					entry.views = -1;
+				}
+			}else if(name.equals("published") || name.equals("publishedAt")){
+				entry.published = reader.nextString();
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+	
+	static VideoInfo toVideo(Entry entry){
+		//A playlist item's own id is not the video's, videoId wins when there is one.
+		String id = entry.videoId != null ? entry.videoId : entry.id;
+		String duration = entry.duration == null ? "" : entry.duration;
+		if(duration.startsWith("P")){
+			int seconds = isoDurationSeconds(duration);
+			duration = seconds < 0 ? "" : formatDuration(seconds);
+		}
+		long published = 0;
+		if(entry.published != null){
+			//Either an RFC 3339 timestamp or ms since the epoch.
+			try{
+				published = Long.parseLong(entry.published);
+			}catch(NumberFormatException e){
+				published = VideoInfo.parseAtomDate(entry.published);
+			}
+		}
+		VideoInfo vid = new VideoInfo(id == null ? "" : id, entry.title == null ? "" : entry.title, duration, published);
+		vid.views = entry.views;
+		if(entry.author != null){
+			vid.author = entry.author;
+		}
+		return vid;
+	}
+	
+	/**
+	 * Reads an ISO 8601 duration such as PT1H2M3S or P1DT4M.
+	 * @return The duration in seconds, or -1 if it can't be read.
+	 */
+	static int isoDurationSeconds(String duration){
+		int total = 0, part = 0;
+		boolean digits = false, time = false;
+		for(int i = 1; i < duration.length(); i++){
+			char c = duration.charAt(i);
+			if(c >= '0' && c <= '9'){
+				part = part * 10 + (c - '0');
+				digits = true;
+			}else if(c == 'T' && !digits){
+				time = true;
+			}else if(digits && (c == 'D' || c == 'H' || c == 'M' || c == 'S')){
+				if(c == 'D'){
+					total += part * 24 * 60 * 60;
+				}else if(!time){
+					return -1; //months or years, not a video length
+				}else{
+					total += c == 'H' ? part * 60 * 60 : c == 'M' ? part * 60 : part;
+				}
+				part = 0;
+				digits = false;
+			}else{
+				return -1;
+			}
+		}
+		return digits ? -1 : total;
+	}
+	
+	/**
+	 * @return The duration the way the Atom feeds show it, such as 4:05 or 1:02:33.
+	 */
+	static String formatDuration(int seconds){
+		if(seconds >= 60 * 60){
+			return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+		}
+		return String.format("%d:%02d", seconds / 60, seconds % 60);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ContentProviderOperation;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Keeps the cards this app has put on the timeline from piling up. Using what the video store knows
+ * about delivered cards, it removes whole bundles beyond the newest maxBundles, and any card older
+ * than maxAge. Deletes go to the timeline provider in batches, and the store and any bundle
+ * trackers are updated to match. The store itself forgets videos that have had no card for
+ * STORE_HISTORY.
+ * @author betker
+ */
+public class RetentionManager {
+	static final String TAG = "RetentionManager";
+	
+	static final int OPS_PER_BATCH = 100;
+	//Shared pref holding when the limits were last enforced, they are checked at most every RUN_INTERVAL.
+	static final String LAST_RUN = "RetentionLastRun";
+	static final long RUN_INTERVAL = 60 * 60 * 1000;
+	//How long the store keeps a video once it was last delivered, unless it still has a card on the timeline.
+	static final long STORE_HISTORY = 30L * 24 * 60 * 60 * 1000;
+	
+	final VideoStore store;
+	final TimelineSink timeline;
+	final File bundleStateDir;
+	final int maxBundles; //0 for no limit
+	final long maxAge; //0 for no limit
+	
+	public RetentionManager(VideoStore store, TimelineSink timeline, File bundleStateDir, int maxBundles, long maxAge){
+		this.store = store;
+		this.timeline = timeline;
+		this.bundleStateDir = bundleStateDir;
+		this.maxBundles = maxBundles;
+		this.maxAge = maxAge;
+	}
+	
+	/**
+	 * @return true if the limits have not been enforced in the last RUN_INTERVAL.
+	 */
+	static boolean isDue(SharedPreferences prefs, long now){
+		long last = prefs.getLong(LAST_RUN, 0);
+		return now - last >= RUN_INTERVAL || now < last;
+	}
+	
+	static void markRun(SharedPreferences prefs, long now){
+		prefs.edit().putLong(LAST_RUN, now).commit();
+	}
+	
+	/**
+	 * Deletes whatever is past the limits, then prunes the store.
+	 * @return The number of cards deleted.
+	 */
+	public int enforce(long now) throws Exception{
+		long cutoff = maxAge > 0 ? now - maxAge : Long.MIN_VALUE;
+		
+		//Whole bundles: the ones past the cap, and the ones with nothing newer than the cutoff.
+		HashSet<String> expiredBundles = new HashSet<String>();
+		ArrayList<String> cardIds = new ArrayList<String>();
+		HashMap<String, List<String>> cardsByFeed = new HashMap<String, List<String>>();
+		List<VideoStore.StoredBundle> bundles = store.bundlesOnTimeline();
+		for(int i = 0; i < bundles.size(); i++){
+			VideoStore.StoredBundle bundle = bundles.get(i);
+			if((maxBundles > 0 && i >= maxBundles) || bundle.newestDelivery < cutoff){
+				expiredBundles.add(bundle.bundleId);
+				cardIds.add(YoutubeFeedService.cardId(bundle.bundleId, "home"));
+				for(VideoStore.StoredVideo vid : store.cardsInBundle(bundle.bundleId)){
+					add(vid, cardIds, cardsByFeed);
+				}
+			}
+		}
+		//Old cards in the bundles that are staying.
+		if(maxAge > 0){
+			for(VideoStore.StoredVideo vid : store.cardsDeliveredBefore(cutoff)){
+				if(!expiredBundles.contains(vid.bundleId)){
+					add(vid, cardIds, cardsByFeed);
+				}
+			}
+		}
+		if(cardIds.isEmpty()){
+			pruneStore(now);
+			return 0;
+		}
+		
+		Log.v(TAG, "Removing " + cardIds.size() + " cards, " + expiredBundles.size() + " whole bundles.");
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for(String cardId : cardIds){
+			ops.add(ContentProviderOperation.newDelete(YoutubeFeedService.cardUri(cardId)).build());
+			if(ops.size() == OPS_PER_BATCH){
+				timeline.apply(ops);
+				ops.clear();
+			}
+		}
+		if(!ops.isEmpty()){
+			timeline.apply(ops);
+		}
+		
+		store.clearCards(cardIds);
+		updateTrackers(cardsByFeed, expiredBundles);
+		pruneStore(now);
+		return cardIds.size();
+	}
+	
+	void pruneStore(long now){
+		int forgotten = store.deleteDeliveredBefore(now - STORE_HISTORY);
+		if(forgotten > 0){
+			Log.v(TAG, "Forgot " + forgotten + " videos that have been off the timeline for a while.");
+		}
+	}
+	
+	static void add(VideoStore.StoredVideo vid, List<String> cardIds, Map<String, List<String>> cardsByFeed){
+		cardIds.add(vid.cardId);
+		List<String> feedCards = cardsByFeed.get(vid.feedUrl);
+		if(feedCards == null){
+			feedCards = new ArrayList<String>();
+			cardsByFeed.put(vid.feedUrl, feedCards);
+		}
+		feedCards.add(vid.cardId);
+	}
+	
+	/**
+	 * In bundle reuse mode, the feeds' trackers must forget the deleted cards, or they would be diffed
+	 * against cards that are no longer there. Their videos are retired so the next sync doesn't put them back.
+	 */
+	void updateTrackers(Map<String, List<String>> cardsByFeed, HashSet<String> expiredBundles){
+		for(String feedUrl : cardsByFeed.keySet()){
+			TimelineBundleTracker tracker = TimelineBundleTracker.load(bundleStateDir, feedUrl);
+			if(!tracker.hasBundle()){
+				continue;
+			}
+			try{
+				if(expiredBundles.contains(tracker.bundleId)){
+					tracker.clear();
+				}else{
+					tracker.retire(new HashSet<String>(cardsByFeed.get(feedUrl)));
+				}
+				tracker.save();
+			}catch(IOException e){
+				Log.v(TAG, "Unable to update bundle state for " + feedUrl + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import android.util.Log;
+
+import com.sun.syndication.feed.synd.SyndContent;
+import com.sun.syndication.feed.synd.SyndEntry;
+import com.sun.syndication.feed.synd.SyndFeed;
+import com.sun.syndication.io.SyndFeedInput;
+import com.sun.syndication.io.XmlReader;
+
+/**
+ * Runs the feed through ROME. This builds the entire document in memory, it is kept around for feeds
+ * that the streaming reader can't handle, such as RSS.
+ * @author betker
+ */
+public class RomeFeedSource implements FeedSource {
+	static final String TAG = "RomeFeedSource";
+	
+	public int read(InputStream in, String contentType, EntryHandler handler) throws Exception{
+		SyndFeedInput input = new SyndFeedInput();
+		SyndFeed feed = input.build(new XmlReader(in, contentType));
+		Log.v(TAG, "Feed contains " + feed.getEntries().size() + " items.");
+		
+		int count = 0;
+		EntryFieldExtractor.Fields fields = new EntryFieldExtractor.Fields();
+		Iterator entries = feed.getEntries().iterator();
+		while(entries.hasNext()){
+			SyndEntry entry = (SyndEntry)entries.next();
+			long published = entry.getPublishedDate() == null ? 0 : entry.getPublishedDate().getTime();
+			fields.reset();
+			fetchFieldsFromContents(entry.getContents(), fields);
+			VideoInfo vid = new VideoInfo(EntryFieldExtractor.videoId(entry.getLink()), entry.getTitle(),
+										  fields.duration == null ? "" : fields.duration, published);
+			vid.views = fields.views;
+			if(entry.getAuthor() != null && entry.getAuthor().length() > 0){
+				vid.author = entry.getAuthor();
+			}else if(fields.author != null){
+				vid.author = fields.author;
+			}
+			count++;
+			if(!handler.onEntry(vid)){
+				break;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Scans the contents of a ROME entry for the description block, filling in fields from the first one found.
+	 */
+	void fetchFieldsFromContents(List contents, EntryFieldExtractor.Fields fields){
+		Iterator contiter = contents.iterator();
+		while(contiter.hasNext()){
+			SyndContent content = (SyndContent)contiter.next();
+			if(EntryFieldExtractor.scanDescription(content.getValue(), fields)){
+				return;
+			}
+		}
+	}
+}
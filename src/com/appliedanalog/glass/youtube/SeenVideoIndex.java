@@ -0,0 +1,355 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import android.util.Log;
+
+/**
+ * A persistent set of the videos that have already been seen in a feed. It is an open addressing
+ * hash table of 64-bit video id hashes, memory mapped straight from a small file so a lookup never
+ * touches the disk once the pages are resident. Each slot also records when the video was last
+ * seen, and the oldest entries are evicted once the table fills up or they were last seen MAX_AGE
+ * before the feed was last read. Every entry read is marked, so age is measured from the last time
+ * the feed changed rather than from now, and a feed that answers "not modified" for months keeps
+ * its index.
+ * <p>
+ * File layout: a 16 byte header (magic, capacity, count, reserved) followed by capacity slots of
+ * (long hash, long lastSeen). A hash of 0 marks an empty slot.
+ * @author betker
+ */
+public class SeenVideoIndex {
+	static final String TAG = "SeenVideoIndex";
+	
+	static final int MAGIC = 0x59545349; //"YTSI"
+	static final int HEADER_SIZE = 16;
+	static final int SLOT_SIZE = 16;
+	static final int CAPACITY = 1024; //the default, capacities must be powers of two
+	static final long MAX_AGE = 60L * 24 * 60 * 60 * 1000; //60 days
+	//Age never evicts this many of the most recently seen entries. A read that stops early doesn't mark the
+	//entries further down the feed, they can be old and still in it.
+	static final int KEEP_NEWEST = 100;
+	
+	//Open indexes, one per feed, shared between syncs.
+	static final HashMap<String, SeenVideoIndex> openIndexes = new HashMap<String, SeenVideoIndex>();
+	
+	final File file;
+	//Replaced together when the index is resized.
+	RandomAccessFile raf;
+	MappedByteBuffer map;
+	int capacity;
+	int maxEntries; //keeps probe chains short
+	int compactTo; //how many entries survive an eviction pass
+	int count;
+	
+	/**
+	 * Fetches the index for the given feed, opening or creating it under dir if needed.
+	 */
+	public static SeenVideoIndex forFeed(File dir, String feedUrl) throws IOException{
+		return forFeed(dir, feedUrl, CAPACITY);
+	}
+	
+	/**
+	 * Fetches an index with room for the given number of slots. An index that exists with another capacity is
+	 * resized, keeping its entries. An open index is resized in place, so whoever already holds it carries on
+	 * with the resized table.
+	 */
+	public static SeenVideoIndex forFeed(File dir, String feedUrl, int capacity) throws IOException{
+		synchronized(openIndexes){
+			SeenVideoIndex index = openIndexes.get(feedUrl);
+			if(index != null && index.capacity != capacity){
+				try{
+					index.resize(capacity);
+				}catch(IOException e){
+					Log.v(TAG, "Unable to resize seen video index, keeping its capacity: " + e.getMessage());
+				}
+			}
+			if(index == null){
+				dir.mkdirs();
+				index = new SeenVideoIndex(new File(dir, Long.toHexString(hash(feedUrl)) + ".idx"), capacity);
+				index.evictStale();
+				openIndexes.put(feedUrl, index);
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * @return The capacity an index needs to hold the given number of entries through an eviction pass.
+	 */
+	public static int capacityFor(int entries){
+		int capacity = CAPACITY;
+		while(capacity / 4 < entries){
+			capacity *= 2;
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Closes a feed's index and forgets it, when the feed's state is being thrown away. The file is left alone.
+	 */
+	public static void release(String feedUrl){
+		synchronized(openIndexes){
+			SeenVideoIndex index = openIndexes.remove(feedUrl);
+			if(index != null){
+				try{
+					index.raf.close();
+				}catch(IOException e){
+					Log.v(TAG, "Error closing seen video index: " + e.getMessage());
+				}
+			}
+		}
+	}
+	
+	SeenVideoIndex(File f, int capacity) throws IOException{
+		file = f;
+		this.capacity = capacity;
+		maxEntries = capacity / 2;
+		compactTo = capacity / 4;
+		long size = HEADER_SIZE + (long)capacity * SLOT_SIZE;
+		long[][] carried = null;
+		File target = f;
+		if(f.length() > 0 && f.length() != size){
+			//The file may still be mapped by an index that was released or is being resized, and touching a
+			//mapping past the end of a truncated file is a SIGBUS. So the new table is built next to it and
+			//swapped in, the old mapping keeps the old file.
+			RandomAccessFile old = new RandomAccessFile(f, "r");
+			try{
+				carried = readEntries(old);
+			}finally{
+				old.close();
+			}
+			target = new File(f.getPath() + ".tmp");
+			target.delete();
+		}
+		raf = new RandomAccessFile(target, "rw");
+		boolean fresh = raf.length() != size;
+		if(fresh){
+			raf.setLength(size);
+		}
+		map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		if(fresh || map.getInt(0) != MAGIC || map.getInt(4) != capacity){
+			Log.v(TAG, "Creating new seen video index at " + f);
+			clear();
+			if(carried != null && carried.length > 0){
+				Log.v(TAG, "Carrying " + carried.length + " entries over from an index of another size.");
+				insert(carried, compactTo);
+			}
+		}else{
+			count = map.getInt(8);
+		}
+		if(target != f){
+			map.force();
+			if(!target.renameTo(f)){
+				raf.close();
+				throw new IOException("Unable to replace " + f);
+			}
+		}
+	}
+	
+	/**
+	 * Moves the entries into a table of another capacity, written to a new file that replaces this one.
+	 * If that fails the index is left as it was.
+	 */
+	synchronized void resize(int newCapacity) throws IOException{
+		map.force(); //the new table is read from the file
+		SeenVideoIndex resized = new SeenVideoIndex(file, newCapacity);
+		try{
+			raf.close();
+		}catch(IOException e){
+			Log.v(TAG, "Error closing seen video index: " + e.getMessage());
+		}
+		raf = resized.raf;
+		map = resized.map;
+		capacity = resized.capacity;
+		maxEntries = resized.maxEntries;
+		compactTo = resized.compactTo;
+		count = resized.count;
+	}
+	
+	/**
+	 * Reads the entries out of an index file of any capacity, before it is resized.
+	 * @return The entries as (hash, lastSeen) pairs, none if the file isn't an index.
+	 */
+	static long[][] readEntries(RandomAccessFile raf) throws IOException{
+		ArrayList<long[]> entries = new ArrayList<long[]>();
+		if(raf.length() >= HEADER_SIZE){
+			raf.seek(0);
+			int magic = raf.readInt();
+			int capacity = raf.readInt();
+			if(magic == MAGIC && raf.length() == HEADER_SIZE + (long)capacity * SLOT_SIZE){
+				raf.seek(HEADER_SIZE);
+				for(int slot = 0; slot < capacity; slot++){
+					long h = raf.readLong();
+					long seen = raf.readLong();
+					if(h != 0){
+						entries.add(new long[]{ h, seen });
+					}
+				}
+			}
+		}
+		return entries.toArray(new long[entries.size()][]);
+	}
+	
+	/**
+	 * 64-bit FNV-1a over the characters of the string.
+	 */
+	static long hash(String s){
+		long h = 0xcbf29ce484222325L;
+		for(int i = 0; i < s.length(); i++){
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h == 0 ? 1 : h; //0 is reserved for empty slots
+	}
+	
+	int slotOffset(int slot){
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+	
+	/**
+	 * @return The slot holding the hash, or the empty slot it would go in.
+	 */
+	int findSlot(long h){
+		int slot = (int)(h ^ (h >>> 32)) & (capacity - 1);
+		while(true){
+			long existing = map.getLong(slotOffset(slot));
+			if(existing == 0 || existing == h){
+				return slot;
+			}
+			slot = (slot + 1) & (capacity - 1);
+		}
+	}
+	
+	public synchronized boolean isEmpty(){
+		return count == 0;
+	}
+	
+	public synchronized boolean contains(String videoId){
+		return map.getLong(slotOffset(findSlot(hash(videoId)))) != 0;
+	}
+	
+	/**
+	 * Adds the video to the set, or refreshes its last seen time if it is already there.
+	 */
+	public synchronized void markSeen(String videoId, long now){
+		long h = hash(videoId);
+		int offset = slotOffset(findSlot(h));
+		if(map.getLong(offset) == 0){
+			if(count >= maxEntries){
+				compact(compactTo, Long.MIN_VALUE);
+				offset = slotOffset(findSlot(h));
+			}
+			map.putLong(offset, h);
+			count++;
+			map.putInt(8, count);
+		}
+		map.putLong(offset + 8, now);
+	}
+	
+	/**
+	 * Evicts the entries last seen more than MAX_AGE before the most recently seen one, that is before the
+	 * feed was last read, apart from the KEEP_NEWEST most recent.
+	 */
+	public synchronized void evictStale(){
+		if(count <= KEEP_NEWEST){
+			return;
+		}
+		long[] seen = new long[count];
+		int found = 0;
+		for(int slot = 0; slot < capacity && found < count; slot++){
+			int offset = slotOffset(slot);
+			if(map.getLong(offset) != 0){
+				seen[found++] = map.getLong(offset + 8);
+			}
+		}
+		Arrays.sort(seen, 0, found);
+		long cutoff = Math.min(seen[found - 1] - MAX_AGE, seen[Math.max(0, found - KEEP_NEWEST)]);
+		compact(maxEntries, cutoff);
+	}
+	
+	/**
+	 * Flushes the mapped table out to the file.
+	 */
+	public synchronized void force(){
+		map.force();
+	}
+	
+	void clear(){
+		for(int i = 0; i < HEADER_SIZE + capacity * SLOT_SIZE; i += 8){
+			map.putLong(i, 0);
+		}
+		map.putInt(0, MAGIC);
+		map.putInt(4, capacity);
+		count = 0;
+	}
+	
+	/**
+	 * Rebuilds the table keeping at most keep of the most recently seen entries, and none seen before the cutoff.
+	 * Open addressing can't remove entries in place, so everything that survives is re-inserted.
+	 */
+	void compact(int keep, long cutoff){
+		ArrayList<long[]> entries = new ArrayList<long[]>(count);
+		for(int slot = 0; slot < capacity; slot++){
+			int offset = slotOffset(slot);
+			long h = map.getLong(offset);
+			if(h != 0){
+				long seen = map.getLong(offset + 8);
+				if(seen >= cutoff){
+					entries.add(new long[]{ h, seen });
+				}
+			}
+		}
+		if(entries.size() == count && count <= keep){
+			return; //nothing to evict
+		}
+		Log.v(TAG, "Evicting " + (count - Math.min(keep, entries.size())) + " entries from " + file.getName());
+		clear();
+		insert(entries.toArray(new long[entries.size()][]), keep);
+	}
+	
+	/**
+	 * Fills the (cleared) table with the most recently seen of the given entries, at most keep of them.
+	 */
+	void insert(long[][] entries, int keep){
+		//Newest first.
+		Arrays.sort(entries, new Comparator<long[]>(){
+			public int compare(long[] a, long[] b){
+				return a[1] < b[1] ? 1 : (a[1] == b[1] ? 0 : -1);
+			}
+		});
+		int survivors = Math.min(keep, entries.length);
+		for(int i = 0; i < survivors; i++){
+			int offset = slotOffset(findSlot(entries[i][0]));
+			map.putLong(offset, entries[i][0]);
+			map.putLong(offset + 8, entries[i][1]);
+		}
+		count = survivors;
+		map.putInt(8, count);
+	}
+}
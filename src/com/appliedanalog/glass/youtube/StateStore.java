@@ -0,0 +1,259 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Buffers writes to the service's shared preferences. Edits committed through this land in memory,
+ * where every read sees them straight away, and reach the preferences file when flush() is called:
+ * once at the end of a sync cycle, as a single asynchronous apply(). Each commit() straight to the
+ * preferences would rewrite and sync the whole file, and the service makes several per feed per sync
+ * (validators, poll schedule), some of them on the main thread.
+ * <p>
+ * Nothing in here has to survive a crash. A lost flush costs a full fetch instead of a conditional
+ * one, or a poll at the old interval. The seen indexes and the sync journal are what keep videos
+ * from being delivered twice, and they are written to disk themselves.
+ * @author betker
+ */
+public class StateStore implements SharedPreferences {
+	//Marks a key removed in pending.
+	static final Object REMOVED = new Object();
+	
+	static StateStore instance;
+	
+	final SharedPreferences prefs;
+	//Edits not yet flushed, guarded by this.
+	final HashMap<String, Object> pending = new HashMap<String, Object>();
+	boolean cleared = false;
+	
+	/**
+	 * @return The store for the app's default shared preferences.
+	 */
+	public static synchronized StateStore get(Context context){
+		if(instance == null){
+			instance = new StateStore(PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext()));
+		}
+		return instance;
+	}
+	
+	public StateStore(SharedPreferences backing){
+		prefs = backing;
+	}
+	
+	/**
+	 * Writes the buffered edits to the preferences with one apply(). The file is written in the background.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void flush(){
+		if(pending.isEmpty() && !cleared){
+			return;
+		}
+		SharedPreferences.Editor ed = prefs.edit();
+		if(cleared){
+			ed.clear();
+		}
+		for(Map.Entry<String, Object> edit : pending.entrySet()){
+			String key = edit.getKey();
+			Object value = edit.getValue();
+			if(value == REMOVED){
+				ed.remove(key);
+			}else if(value instanceof String){
+				ed.putString(key, (String)value);
+			}else if(value instanceof Boolean){
+				ed.putBoolean(key, (Boolean)value);
+			}else if(value instanceof Integer){
+				ed.putInt(key, (Integer)value);
+			}else if(value instanceof Long){
+				ed.putLong(key, (Long)value);
+			}else if(value instanceof Float){
+				ed.putFloat(key, (Float)value);
+			}else if(value instanceof Set){
+				ed.putStringSet(key, (Set<String>)value);
+			}
+		}
+		ed.apply();
+		pending.clear();
+		cleared = false;
+	}
+	
+	/**
+	 * @return The buffered value for key, REMOVED, or null if there is no buffered edit.
+	 */
+	synchronized Object pendingValue(String key){
+		Object value = pending.get(key);
+		if(value == null && cleared){
+			return REMOVED;
+		}
+		return value;
+	}
+	
+	public String getString(String key, String def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getString(key, def);
+		}
+		return value instanceof String ? (String)value : def;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public Set<String> getStringSet(String key, Set<String> def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getStringSet(key, def);
+		}
+		return value instanceof Set ? (Set<String>)value : def;
+	}
+	
+	public boolean getBoolean(String key, boolean def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getBoolean(key, def);
+		}
+		return value instanceof Boolean ? (Boolean)value : def;
+	}
+	
+	public int getInt(String key, int def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getInt(key, def);
+		}
+		return value instanceof Integer ? (Integer)value : def;
+	}
+	
+	public long getLong(String key, long def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getLong(key, def);
+		}
+		return value instanceof Long ? (Long)value : def;
+	}
+	
+	public float getFloat(String key, float def){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.getFloat(key, def);
+		}
+		return value instanceof Float ? (Float)value : def;
+	}
+	
+	public boolean contains(String key){
+		Object value = pendingValue(key);
+		if(value == null){
+			return prefs.contains(key);
+		}
+		return value != REMOVED;
+	}
+	
+	public synchronized Map<String, ?> getAll(){
+		HashMap<String, Object> all = new HashMap<String, Object>();
+		if(!cleared){
+			all.putAll(prefs.getAll());
+		}
+		for(Map.Entry<String, Object> edit : pending.entrySet()){
+			if(edit.getValue() == REMOVED){
+				all.remove(edit.getKey());
+			}else{
+				all.put(edit.getKey(), edit.getValue());
+			}
+		}
+		return all;
+	}
+	
+	public Editor edit(){
+		return new BufferedEditor();
+	}
+	
+	public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener){
+		prefs.registerOnSharedPreferenceChangeListener(listener);
+	}
+	
+	public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener){
+		prefs.unregisterOnSharedPreferenceChangeListener(listener);
+	}
+	
+	/**
+	 * Collects edits and hands them to the store on commit() or apply(), which both only touch memory.
+	 */
+	class BufferedEditor implements Editor{
+		final HashMap<String, Object> edits = new HashMap<String, Object>();
+		boolean clear = false;
+		
+		public Editor putString(String key, String value){
+			edits.put(key, value == null ? REMOVED : value);
+			return this;
+		}
+		
+		public Editor putStringSet(String key, Set<String> values){
+			edits.put(key, values == null ? REMOVED : new HashSet<String>(values));
+			return this;
+		}
+		
+		public Editor putBoolean(String key, boolean value){
+			edits.put(key, value);
+			return this;
+		}
+		
+		public Editor putInt(String key, int value){
+			edits.put(key, value);
+			return this;
+		}
+		
+		public Editor putLong(String key, long value){
+			edits.put(key, value);
+			return this;
+		}
+		
+		public Editor putFloat(String key, float value){
+			edits.put(key, value);
+			return this;
+		}
+		
+		public Editor remove(String key){
+			edits.put(key, REMOVED);
+			return this;
+		}
+		
+		public Editor clear(){
+			clear = true;
+			return this;
+		}
+		
+		public boolean commit(){
+			synchronized(StateStore.this){
+				if(clear){
+					pending.clear();
+					cleared = true;
+				}
+				pending.putAll(edits);
+			}
+			return true;
+		}
+		
+		public void apply(){
+			commit();
+		}
+	}
+}
@@ -0,0 +1,404 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import android.util.Log;
+
+/**
+ * A durable queue of sync work that failed and has to be retried: feeds that could not be fetched,
+ * and batches of cards that were read from a feed but could not be written to the timeline.
+ * <p>
+ * Card batches are journaled before they are written (with the validators and seen ids of the fetch
+ * they came from), so a failed or interrupted write can be replayed without fetching the feed again.
+ * The feed's seen index and validators are only committed once its batch is on the timeline. Retries
+ * back off exponentially with jitter, and are also kicked off when connectivity comes back.
+ * <p>
+ * The journal is an append-only tab separated text file that is replayed on load. It is rewritten
+ * with just the live entries once it grows past COMPACT_SIZE, and removed once nothing is pending.
+ * @author betker
+ */
+public class SyncJournal {
+	static final String TAG = "SyncJournal";
+	static final String FILE_NAME = "sync.journal"; //in the app's files directory
+	
+	static final long BASE_RETRY_DELAY = 60 * 1000;
+	static final long MAX_RETRY_DELAY = 60 * 60 * 1000;
+	static final long COMPACT_SIZE = 64 * 1024;
+	
+	/**
+	 * A feed fetch that failed.
+	 */
+	public static class PendingFetch{
+		final String feedUrl;
+		int attempts;
+		long notBefore;
+		
+		PendingFetch(String url){
+			feedUrl = url;
+		}
+	}
+	
+	/**
+	 * A batch of cards from one feed that has not made it onto the timeline yet.
+	 */
+	public static class PendingBatch{
+		final String batchId;
+		//The bundle the cards go into, so a retry rewrites the same cards. Several batches share one when feeds are merged.
+		String bundleId;
+		final String feedUrl;
+		final String etag, lastModified;
+		final ArrayList<VideoInfo> vids = new ArrayList<VideoInfo>();
+		final ArrayList<String> readIds = new ArrayList<String>();
+		int attempts;
+		long notBefore;
+		
+		PendingBatch(String id, String url, String tag, String modified){
+			batchId = id; bundleId = id; feedUrl = url; etag = tag; lastModified = modified;
+		}
+		
+		/**
+		 * Rebuilds the feed result the batch was journaled from. It has no response, the validators live on the batch.
+		 */
+		FeedResult toResult(){
+			ArrayList<Long> published = new ArrayList<Long>();
+			for(int i = 0; i < readIds.size(); i++){
+				published.add(0L);
+			}
+			FeedResult result = new FeedResult(feedUrl, null, vids, readIds, published);
+			result.batchId = batchId;
+			result.bundleId = bundleId;
+			return result;
+		}
+	}
+	
+	static SyncJournal instance;
+	
+	final File file;
+	final LinkedHashMap<String, PendingFetch> fetches = new LinkedHashMap<String, PendingFetch>();
+	final LinkedHashMap<String, PendingBatch> batches = new LinkedHashMap<String, PendingBatch>();
+	final Random random = new Random();
+	
+	SyncJournal(File f){
+		file = f;
+	}
+	
+	/**
+	 * @return The journal stored in the given file, loaded on first use.
+	 */
+	public static synchronized SyncJournal get(File file){
+		if(instance == null || !instance.file.equals(file)){
+			instance = new SyncJournal(file);
+			instance.load();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Cheap check for whether there might be anything to retry, without loading the journal.
+	 */
+	public static boolean mightHavePending(File file){
+		return file.length() > 0;
+	}
+	
+	synchronized void load(){
+		fetches.clear();
+		batches.clear();
+		if(!file.exists()){
+			return;
+		}
+		try{
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try{
+				String line;
+				while((line = reader.readLine()) != null){
+					replay(line.split("\t", -1));
+				}
+			}finally{
+				reader.close();
+			}
+		}catch(IOException e){
+			Log.v(TAG, "Error loading sync journal: " + e.getMessage());
+		}
+		Log.v(TAG, "Loaded sync journal: " + fetches.size() + " pending fetches, " + batches.size() + " pending card batches.");
+	}
+	
+	void replay(String[] parts){
+		try{
+			String type = parts[0];
+			if(type.equals("fetch") && parts.length == 4){
+				PendingFetch fetch = fetches.get(parts[1]);
+				if(fetch == null){
+					fetch = new PendingFetch(parts[1]);
+					fetches.put(fetch.feedUrl, fetch);
+				}
+				fetch.attempts = Integer.parseInt(parts[2]);
+				fetch.notBefore = Long.parseLong(parts[3]);
+			}else if(type.equals("fetched") && parts.length == 2){
+				fetches.remove(parts[1]);
+			}else if(type.equals("batch") && (parts.length == 5 || parts.length == 6)){
+				PendingBatch batch = new PendingBatch(parts[1], parts[2], nullIfEmpty(parts[3]), nullIfEmpty(parts[4]));
+				if(parts.length == 6){ //journals from before merged bundles don't have this
+					batch.bundleId = parts[5];
+				}
+				batches.put(parts[1], batch);
+			}else if(type.equals("video") && parts.length == 6 && batches.containsKey(parts[1])){
+				batches.get(parts[1]).vids.add(new VideoInfo(parts[2], parts[5], parts[4], Long.parseLong(parts[3])));
+			}else if(type.equals("read") && parts.length == 3 && batches.containsKey(parts[1])){
+				batches.get(parts[1]).readIds.add(parts[2]);
+			}else if(type.equals("retry") && parts.length == 4 && batches.containsKey(parts[1])){
+				PendingBatch batch = batches.get(parts[1]);
+				batch.attempts = Integer.parseInt(parts[2]);
+				batch.notBefore = Long.parseLong(parts[3]);
+			}else if(type.equals("delivered") && parts.length == 2){
+				batches.remove(parts[1]);
+			}
+		}catch(NumberFormatException e){
+			//A torn last line from a crash mid-append, skip it.
+			Log.v(TAG, "Skipping bad journal line: " + parts[0]);
+		}
+	}
+	
+	/**
+	 * Records that a feed could not be fetched, and when it should next be tried.
+	 */
+	public synchronized void fetchFailed(String feedUrl, long now){
+		PendingFetch fetch = fetches.get(feedUrl);
+		if(fetch == null){
+			fetch = new PendingFetch(feedUrl);
+			fetches.put(feedUrl, fetch);
+		}
+		fetch.attempts++;
+		fetch.notBefore = now + backoff(fetch.attempts);
+		append("fetch\t" + feedUrl + "\t" + fetch.attempts + "\t" + fetch.notBefore + "\n");
+	}
+	
+	/**
+	 * Records that a feed was fetched, clearing any pending retry for it.
+	 */
+	public synchronized void fetchSucceeded(String feedUrl){
+		if(fetches.remove(feedUrl) != null){
+			append("fetched\t" + feedUrl + "\n");
+		}
+	}
+	
+	/**
+	 * Journals the cards a feed result is about to push, and gives the result its batch id. The result
+	 * keeps its bundle id if it already has one, otherwise the batch id is used. This has to happen
+	 * before the timeline write, so an interrupted write is retried rather than lost.
+	 */
+	public synchronized PendingBatch addBatch(FeedResult result){
+		String id = UUID.randomUUID().toString();
+		PendingBatch batch = new PendingBatch(id, result.feedUrl, result.response == null ? null : result.response.etag,
+											  result.response == null ? null : result.response.lastModified);
+		if(result.bundleId != null){
+			batch.bundleId = result.bundleId;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("batch\t").append(id).append('\t').append(result.feedUrl).append('\t')
+		  .append(clean(batch.etag)).append('\t').append(clean(batch.lastModified)).append('\t').append(batch.bundleId).append('\n');
+		for(VideoInfo vid : result.vids){
+			batch.vids.add(vid);
+			sb.append("video\t").append(id).append('\t').append(vid.id).append('\t').append(vid.published).append('\t')
+			  .append(clean(vid.duration)).append('\t').append(clean(vid.title)).append('\n');
+		}
+		for(String readId : result.readIds){
+			batch.readIds.add(readId);
+			sb.append("read\t").append(id).append('\t').append(readId).append('\n');
+		}
+		append(sb.toString());
+		batches.put(id, batch);
+		result.batchId = id;
+		result.bundleId = batch.bundleId;
+		return batch;
+	}
+	
+	/**
+	 * Records that the pending batches of a bundle could not be written, and when they should next be
+	 * tried. The batches of a merged bundle are retried together, so they all get the same schedule.
+	 */
+	public synchronized void bundleFailed(String bundleId, long now){
+		ArrayList<PendingBatch> bundle = new ArrayList<PendingBatch>();
+		int attempts = 0;
+		for(PendingBatch batch : batches.values()){
+			if(batch.bundleId.equals(bundleId)){
+				bundle.add(batch);
+				attempts = Math.max(attempts, batch.attempts);
+			}
+		}
+		if(bundle.isEmpty()){
+			return;
+		}
+		attempts++;
+		long notBefore = now + backoff(attempts);
+		StringBuilder sb = new StringBuilder();
+		for(PendingBatch batch : bundle){
+			batch.attempts = attempts;
+			batch.notBefore = notBefore;
+			sb.append("retry\t").append(batch.batchId).append('\t').append(attempts).append('\t').append(notBefore).append('\n');
+		}
+		append(sb.toString());
+	}
+	
+	/**
+	 * Records that a batch is on the timeline and its feed state has been committed.
+	 */
+	public synchronized void batchDelivered(String batchId){
+		if(batches.remove(batchId) != null){
+			append("delivered\t" + batchId + "\n");
+		}
+	}
+	
+	/**
+	 * @return true if the feed has cards waiting to be written. Such a feed shouldn't be synced again until
+	 *         they are, since its seen index doesn't know about them yet.
+	 */
+	public synchronized boolean hasPendingBatch(String feedUrl){
+		for(PendingBatch batch : batches.values()){
+			if(batch.feedUrl.equals(feedUrl)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param all Ignore the backoff, e.g. because connectivity just came back.
+	 */
+	public synchronized List<String> dueFetches(long now, boolean all){
+		ArrayList<String> due = new ArrayList<String>();
+		for(PendingFetch fetch : fetches.values()){
+			if(all || fetch.notBefore <= now){
+				due.add(fetch.feedUrl);
+			}
+		}
+		return due;
+	}
+	
+	public synchronized List<PendingBatch> dueBatches(long now, boolean all){
+		ArrayList<PendingBatch> due = new ArrayList<PendingBatch>();
+		for(PendingBatch batch : batches.values()){
+			if(all || batch.notBefore <= now){
+				due.add(batch);
+			}
+		}
+		return due;
+	}
+	
+	public synchronized boolean isEmpty(){
+		return fetches.isEmpty() && batches.isEmpty();
+	}
+	
+	/**
+	 * @return When the earliest pending retry is due, or -1 if nothing is pending.
+	 */
+	public synchronized long nextRetry(){
+		long next = -1;
+		for(PendingFetch fetch : fetches.values()){
+			next = next == -1 ? fetch.notBefore : Math.min(next, fetch.notBefore);
+		}
+		for(PendingBatch batch : batches.values()){
+			next = next == -1 ? batch.notBefore : Math.min(next, batch.notBefore);
+		}
+		return next;
+	}
+	
+	/**
+	 * Exponential backoff, with the delay spread over [0.5, 1.5) of the nominal value so that
+	 * feeds that failed together don't all retry together.
+	 */
+	long backoff(int attempts){
+		long delay = Math.min(MAX_RETRY_DELAY, BASE_RETRY_DELAY << Math.min(attempts - 1, 20));
+		return (long)(delay * (0.5 + random.nextDouble()));
+	}
+	
+	void append(String records){
+		try{
+			if(isEmpty()){
+				//Nothing live is left, so the history can go.
+				file.delete();
+				if(records.startsWith("fetched") || records.startsWith("delivered")){
+					return;
+				}
+			}else if(file.length() > COMPACT_SIZE){
+				compact();
+			}
+			file.getParentFile().mkdirs();
+			FileOutputStream fos = new FileOutputStream(file, true);
+			try{
+				fos.write(records.getBytes("UTF-8"));
+				fos.getFD().sync();
+			}finally{
+				fos.close();
+			}
+		}catch(IOException e){
+			Log.v(TAG, "Unable to write to the sync journal: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Rewrites the journal with only the entries that are still pending.
+	 */
+	void compact() throws IOException{
+		File tmp = new File(file.getPath() + ".tmp");
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+		try{
+			for(PendingFetch fetch : fetches.values()){
+				writer.write("fetch\t" + fetch.feedUrl + "\t" + fetch.attempts + "\t" + fetch.notBefore + "\n");
+			}
+			for(PendingBatch batch : batches.values()){
+				writer.write("batch\t" + batch.batchId + "\t" + batch.feedUrl + "\t" + clean(batch.etag) + "\t" + clean(batch.lastModified)
+							 + "\t" + batch.bundleId + "\n");
+				for(VideoInfo vid : batch.vids){
+					writer.write("video\t" + batch.batchId + "\t" + vid.id + "\t" + vid.published + "\t" + clean(vid.duration) + "\t" + clean(vid.title) + "\n");
+				}
+				for(String readId : batch.readIds){
+					writer.write("read\t" + batch.batchId + "\t" + readId + "\n");
+				}
+				writer.write("retry\t" + batch.batchId + "\t" + batch.attempts + "\t" + batch.notBefore + "\n");
+			}
+		}finally{
+			writer.close();
+		}
+		if(!tmp.renameTo(file)){
+			throw new IOException("Unable to replace " + file);
+		}
+	}
+	
+	static String clean(String s){
+		return TimelineBundleTracker.clean(s);
+	}
+	
+	static String nullIfEmpty(String s){
+		return s.length() == 0 ? null : s;
+	}
+}
@@ -0,0 +1,351 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Records where the time and bytes go in each sync cycle. Each cycle accumulates plain counters
+ * while it runs and, when it finishes, is appended as one fixed size record to a ring buffer file
+ * holding the last RING_SIZE cycles, and folded into process-wide log2 latency histograms. The
+ * whole lot can be dumped to a text file that adb can pull, and the last cycle is summarized on
+ * the home card.
+ * @author betker
+ */
+public class SyncMetrics {
+	static final String TAG = "SyncMetrics";
+	
+	static final int RING_SIZE = 256;
+	static final int HEADER_SIZE = 8; //int magic, int next slot
+	static final int MAGIC = 0x59544d32; //"YTM2"
+	public static final String DUMP_FILE = "/sdcard/youtubefeed-metrics.txt";
+	
+	//Record fields, in the order they are stored. Connect time includes the DNS lookup.
+	static final String[] FIELDS = { "start", "feeds", "notModified", "failed", "entriesSeen", "entriesNew",
+									 "wireBytes", "bytes", "connectMs", "ttfbMs", "readMs", "parseCpuMs",
+									 "timelineWriteMs", "thumbHits", "thumbMisses", "cycleMs", "wakeupToCardMs", "processCpuMs", "worker" };
+	static final int START = 0, FEEDS = 1, NOT_MODIFIED = 2, FAILED = 3, ENTRIES_SEEN = 4, ENTRIES_NEW = 5,
+					 WIRE_BYTES = 6, BYTES = 7, CONNECT_MS = 8, TTFB_MS = 9, READ_MS = 10,
+					 PARSE_CPU_MS = 11, TIMELINE_WRITE_MS = 12, THUMB_HITS = 13, THUMB_MISSES = 14, CYCLE_MS = 15,
+					 WAKEUP_TO_CARD_MS = 16, PROCESS_CPU_MS = 17, WORKER = 18;
+	static final int RECORD_SIZE = FIELDS.length * 8;
+	
+	/**
+	 * A histogram with power of two millisecond buckets: bucket i counts values in [2^(i-1), 2^i).
+	 */
+	public static class Histogram{
+		final String name;
+		final long[] buckets = new long[24];
+		long count, sum, max;
+		
+		Histogram(String n){
+			name = n;
+		}
+		
+		synchronized void add(long value){
+			int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, value));
+			buckets[Math.min(bucket, buckets.length - 1)]++;
+			count++;
+			sum += value;
+			max = Math.max(max, value);
+		}
+		
+		/**
+		 * @return The upper bound of the bucket holding the given percentile.
+		 */
+		synchronized long percentile(double pct){
+			long target = (long)Math.ceil(count * pct), seen = 0;
+			for(int i = 0; i < buckets.length; i++){
+				seen += buckets[i];
+				if(seen >= target && seen > 0){
+					return i == 0 ? 0 : Math.min((1L << i) - 1, max);
+				}
+			}
+			return max;
+		}
+		
+		synchronized String summary(){
+			if(count == 0){
+				return name + ": no samples";
+			}
+			return name + ": n=" + count + " mean=" + (sum / count) + "ms p50<=" + percentile(0.5) + "ms p99<=" +
+				   percentile(0.99) + "ms max=" + max + "ms";
+		}
+	}
+	
+	//Process-wide histograms, these only cover the current process.
+	static final Histogram fetchLatency = new Histogram("fetch (ttfb + read)");
+	static final Histogram parseCpu = new Histogram("parse cpu");
+	static final Histogram timelineWrite = new Histogram("timeline write");
+	static final Histogram cycleLatency = new Histogram("whole cycle");
+	
+	/**
+	 * The counters for a single sync cycle. Feeds are synced concurrently, so everything is guarded by this.
+	 */
+	public static class Cycle{
+		final long[] values = new long[FIELDS.length];
+		final long startNanos = System.nanoTime();
+		final long wakeupMillis;
+		final long startCpu = Process.getElapsedCpuTime();
+		
+		/**
+		 * @param wakeup The wall clock time the alarm that started the cycle was due, so the latency includes
+		 *               starting the process and the service.
+		 * @param worker Whether the cycle ran in persistent worker mode.
+		 */
+		Cycle(long wakeup, boolean worker){
+			wakeupMillis = wakeup;
+			values[START] = System.currentTimeMillis();
+			values[WORKER] = worker ? 1 : 0;
+		}
+		
+		/**
+		 * Records a fetch that came back with a body.
+		 */
+		public void recordFetch(FeedFetcher fetcher, FeedFetcher.Response response, long readMs, long parseCpuMs, int seen, int fresh){
+			synchronized(this){
+				values[FEEDS]++;
+				values[CONNECT_MS] += fetcher.connectMillis;
+				values[TTFB_MS] += fetcher.ttfbMillis;
+				values[READ_MS] += readMs;
+				values[PARSE_CPU_MS] += parseCpuMs;
+				values[WIRE_BYTES] += response.getWireBytes();
+				values[BYTES] += response.getBytes();
+				values[ENTRIES_SEEN] += seen;
+				values[ENTRIES_NEW] += fresh;
+			}
+			fetchLatency.add(fetcher.ttfbMillis + readMs);
+			parseCpu.add(parseCpuMs);
+		}
+		
+		public void recordNotModified(FeedFetcher fetcher){
+			synchronized(this){
+				values[FEEDS]++;
+				values[NOT_MODIFIED]++;
+				values[CONNECT_MS] += fetcher.connectMillis;
+				values[TTFB_MS] += fetcher.ttfbMillis;
+			}
+			fetchLatency.add(fetcher.ttfbMillis);
+		}
+		
+		public synchronized void recordFailure(){
+			values[FEEDS]++;
+			values[FAILED]++;
+		}
+		
+		public void recordTimelineWrite(long ms){
+			synchronized(this){
+				values[TIMELINE_WRITE_MS] += ms;
+				if(values[WAKEUP_TO_CARD_MS] == 0){
+					values[WAKEUP_TO_CARD_MS] = System.currentTimeMillis() - wakeupMillis;
+				}
+			}
+			timelineWrite.add(ms);
+		}
+		
+		public synchronized void recordThumbnails(int hits, int misses){
+			values[THUMB_HITS] += hits;
+			values[THUMB_MISSES] += misses;
+		}
+		
+		synchronized long[] finish(){
+			values[CYCLE_MS] = (System.nanoTime() - startNanos) / 1000000;
+			//Process wide, so it includes anything else the process did meanwhile.
+			values[PROCESS_CPU_MS] = Process.getElapsedCpuTime() - startCpu;
+			cycleLatency.add(values[CYCLE_MS]);
+			return values.clone();
+		}
+	}
+	
+	final File file;
+	
+	public SyncMetrics(File ringFile){
+		file = ringFile;
+	}
+	
+	public Cycle startCycle(long wakeupMillis, boolean worker){
+		return new Cycle(wakeupMillis, worker);
+	}
+	
+	/**
+	 * Finishes the cycle and appends it to the ring buffer file.
+	 */
+	public synchronized void finishCycle(Cycle cycle){
+		long[] values = cycle.finish();
+		Log.v(TAG, format(values));
+		try{
+			RandomAccessFile raf = open();
+			try{
+				int next = raf.readInt() == MAGIC ? raf.readInt() : 0;
+				raf.seek(HEADER_SIZE + (long)next * RECORD_SIZE);
+				for(long v : values){
+					raf.writeLong(v);
+				}
+				raf.seek(0);
+				raf.writeInt(MAGIC);
+				raf.writeInt((next + 1) % RING_SIZE);
+			}finally{
+				raf.close();
+			}
+		}catch(IOException e){
+			Log.v(TAG, "Unable to record sync metrics: " + e.getMessage());
+		}
+	}
+	
+	RandomAccessFile open() throws IOException{
+		file.getParentFile().mkdirs();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		long size = HEADER_SIZE + (long)RING_SIZE * RECORD_SIZE;
+		if(raf.length() != size){
+			raf.setLength(0);
+			raf.setLength(size);
+		}
+		return raf;
+	}
+	
+	/**
+	 * @return The recorded cycles, oldest first.
+	 */
+	public synchronized long[][] readCycles(){
+		if(!file.exists()){
+			return new long[0][];
+		}
+		try{
+			RandomAccessFile raf = open();
+			try{
+				if(raf.readInt() != MAGIC){
+					return new long[0][];
+				}
+				int next = raf.readInt();
+				java.util.ArrayList<long[]> cycles = new java.util.ArrayList<long[]>();
+				for(int i = 0; i < RING_SIZE; i++){
+					int slot = (next + i) % RING_SIZE;
+					raf.seek(HEADER_SIZE + (long)slot * RECORD_SIZE);
+					long[] values = new long[FIELDS.length];
+					for(int f = 0; f < values.length; f++){
+						values[f] = raf.readLong();
+					}
+					if(values[START] != 0){
+						cycles.add(values);
+					}
+				}
+				return cycles.toArray(new long[cycles.size()][]);
+			}finally{
+				raf.close();
+			}
+		}catch(IOException e){
+			Log.v(TAG, "Unable to read sync metrics: " + e.getMessage());
+			return new long[0][];
+		}
+	}
+	
+	/**
+	 * @return The most recent cycle, or null if none have been recorded.
+	 */
+	public long[] lastCycle(){
+		long[][] cycles = readCycles();
+		return cycles.length == 0 ? null : cycles[cycles.length - 1];
+	}
+	
+	/**
+	 * Writes the histograms and every recorded cycle (as CSV) to DUMP_FILE.
+	 */
+	public void dump(){
+		try{
+			FileWriter out = new FileWriter(DUMP_FILE);
+			try{
+				out.write("# Histograms since process start\n");
+				for(Histogram h : new Histogram[]{ fetchLatency, parseCpu, timelineWrite, cycleLatency }){
+					out.write("# " + h.summary() + "\n");
+				}
+				long[][] cycles = readCycles();
+				out.write("# Start/stop service vs persistent worker, over the recorded cycles\n");
+				for(int worker = 0; worker <= 1; worker++){
+					out.write("# " + compare(cycles, worker) + "\n");
+				}
+				StringBuilder header = new StringBuilder();
+				for(int f = 0; f < FIELDS.length; f++){
+					header.append(f == 0 ? "" : ",").append(FIELDS[f]);
+				}
+				out.write(header.append('\n').toString());
+				for(long[] values : cycles){
+					StringBuilder line = new StringBuilder();
+					for(int f = 0; f < values.length; f++){
+						line.append(f == 0 ? "" : ",").append(values[f]);
+					}
+					out.write(line.append('\n').toString());
+				}
+			}finally{
+				out.close();
+			}
+			Log.v(TAG, "Dumped sync metrics to " + DUMP_FILE);
+		}catch(IOException e){
+			Log.v(TAG, "Unable to dump sync metrics: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Averages wakeup to card latency (over the cycles that wrote cards) and process cpu time for one mode.
+	 */
+	static String compare(long[][] cycles, int worker){
+		long n = 0, cpu = 0, withCards = 0, latency = 0;
+		for(long[] values : cycles){
+			if(values[WORKER] != worker){
+				continue;
+			}
+			n++;
+			cpu += values[PROCESS_CPU_MS];
+			if(values[WAKEUP_TO_CARD_MS] > 0){
+				withCards++;
+				latency += values[WAKEUP_TO_CARD_MS];
+			}
+		}
+		String mode = worker == 1 ? "persistent worker" : "start/stop";
+		if(n == 0){
+			return mode + ": no cycles";
+		}
+		return mode + ": cycles=" + n + " mean cpu=" + (cpu / n) + "ms mean wakeup to card=" +
+			   (withCards == 0 ? "n/a" : (latency / withCards) + "ms") + " (" + withCards + " cycles with cards)";
+	}
+	
+	static String format(long[] values){
+		StringBuilder sb = new StringBuilder("Sync cycle:");
+		for(int f = 0; f < FIELDS.length; f++){
+			sb.append(' ').append(FIELDS[f]).append('=').append(values[f]);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * A one line, human readable summary of a cycle for the home card.
+	 */
+	static String summarize(long[] values){
+		String when = new SimpleDateFormat("h:mm a").format(new Date(values[START]));
+		return "Last sync " + when + ": " + values[ENTRIES_NEW] + " new of " + values[ENTRIES_SEEN] + ", " +
+			   (values[WIRE_BYTES] / 1024) + " KB, " + values[CYCLE_MS] + " ms";
+	}
+}
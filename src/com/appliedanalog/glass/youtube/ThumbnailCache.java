@@ -0,0 +1,306 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * A size capped on-disk LRU cache of video thumbnails. Thumbnails are prefetched on a small pool of
+ * threads while a sync is being delivered, so cards can point at a local copy of the image instead
+ * of having the timeline pull it over the network every time the card is shown.
+ * <p>
+ * The timeline is drawn by another process, so the cache lives in the app's external cache directory,
+ * which it can read, rather than the private one. Without external storage nothing is cached and cards
+ * use the remote URLs.
+ * <p>
+ * Recency is tracked in memory, in the order thumbnails were last downloaded or handed out. File times
+ * only seed that order when the cache is opened, setting them fails on some storage. Downloads write to
+ * a uniquely named .part file, so two fetches of the same thumbnail don't interleave, and .part files
+ * left behind by downloads that never finished are swept when the cache is trimmed.
+ * <p>
+ * Cards have no fallback once they point at a local copy, so the thumbnail of a video that still has a
+ * card on the timeline (as the VideoStore knows it) is never trimmed, even if that puts the cache over
+ * its cap.
+ * @author betker
+ */
+public class ThumbnailCache {
+	static final String TAG = "ThumbnailCache";
+	
+	static final int PREFETCH_THREADS = 3;
+	static final long MAX_CACHE_BYTES = 8 * 1024 * 1024;
+	static final long PREFETCH_TIMEOUT = 30; //seconds
+	static final int CONNECT_TIMEOUT = 10 * 1000;
+	static final int READ_TIMEOUT = 15 * 1000;
+	//A .part file that hasn't been written to for this long belongs to a download that is gone.
+	static final long STALE_PART = 10 * 60 * 1000;
+	
+	static ThumbnailCache instance;
+	
+	final Context context;
+	final File dir; //null if there is no external storage
+	final ExecutorService pool;
+	//Video ids of the cached thumbnails, least recently used first.
+	final LinkedHashMap<String, Boolean> recency = new LinkedHashMap<String, Boolean>(64, 0.75f, true);
+	
+	public static synchronized ThumbnailCache getInstance(Context context){
+		if(instance == null){
+			//Older versions cached where the timeline couldn't read, those copies are no use.
+			deleteDir(new File(context.getCacheDir(), "thumbs"));
+			File external = context.getExternalCacheDir();
+			instance = new ThumbnailCache(context.getApplicationContext(), external == null ? null : new File(external, "thumbs"));
+		}
+		return instance;
+	}
+	
+	ThumbnailCache(Context context, File cacheDir){
+		this.context = context;
+		dir = cacheDir;
+		if(dir == null){
+			Log.v(TAG, "No external storage, thumbnails won't be cached.");
+		}else{
+			dir.mkdirs();
+			try{
+				//Keep the thumbnails out of the gallery.
+				new File(dir, ".nomedia").createNewFile();
+			}catch(IOException e){
+				Log.v(TAG, "Unable to create .nomedia: " + e.getMessage());
+			}
+			loadRecency();
+		}
+		pool = Executors.newFixedThreadPool(PREFETCH_THREADS);
+	}
+	
+	/**
+	 * Orders the thumbnails already on disk by their file times, the best there is after a restart.
+	 */
+	void loadRecency(){
+		File[] files = dir.listFiles();
+		if(files == null){
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>(){
+			public int compare(File a, File b){
+				long diff = a.lastModified() - b.lastModified();
+				return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+			}
+		});
+		for(File f : files){
+			String name = f.getName();
+			if(name.endsWith(".jpg")){
+				touch(name.substring(0, name.length() - 4));
+			}
+		}
+	}
+	
+	void touch(String videoId){
+		synchronized(recency){
+			recency.put(videoId, Boolean.TRUE);
+		}
+	}
+	
+	static void deleteDir(File d){
+		File[] files = d.listFiles();
+		if(files != null){
+			for(File f : files){
+				f.delete();
+			}
+		}
+		d.delete();
+	}
+	
+	static String remoteUrl(String videoId){
+		return "http://img.youtube.com/vi/" + videoId + "/hqdefault.jpg";
+	}
+	
+	File fileFor(String videoId){
+		return new File(dir, videoId + ".jpg");
+	}
+	
+	public boolean isCached(String videoId){
+		return dir != null && fileFor(videoId).exists();
+	}
+	
+	/**
+	 * @return A file:// URL for the thumbnail if it is cached, otherwise its remote URL.
+	 */
+	public String urlFor(String videoId){
+		if(dir == null){
+			return remoteUrl(videoId);
+		}
+		File f = fileFor(videoId);
+		if(f.exists()){
+			touch(videoId);
+			return "file://" + f.getAbsolutePath();
+		}
+		return remoteUrl(videoId);
+	}
+	
+	/**
+	 * Downloads every thumbnail in the list that isn't already cached, several at a time, then trims
+	 * the cache back under its size cap. Blocks until the downloads finish or PREFETCH_TIMEOUT passes,
+	 * whichever is first - anything not fetched by then just falls back to its remote URL.
+	 * @return The number of thumbnails that were already cached.
+	 */
+	public int prefetch(List<String> videoIds){
+		if(dir == null){
+			return 0;
+		}
+		ArrayList<Callable<Boolean>> jobs = new ArrayList<Callable<Boolean>>();
+		int hits = 0;
+		for(final String id : videoIds){
+			if(fileFor(id).exists()){
+				hits++;
+				continue;
+			}
+			jobs.add(new Callable<Boolean>(){
+				public Boolean call(){
+					return download(id);
+				}
+			});
+		}
+		Log.v(TAG, "Prefetching " + jobs.size() + " thumbnails, " + hits + " already cached.");
+		if(!jobs.isEmpty()){
+			try{
+				pool.invokeAll(jobs, PREFETCH_TIMEOUT, TimeUnit.SECONDS);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			//The cards about to be written aren't in the store yet.
+			trim(videoIds);
+		}
+		return hits;
+	}
+	
+	boolean download(String videoId){
+		File target = fileFor(videoId);
+		File tmp = null;
+		HttpURLConnection conn = null;
+		try{
+			conn = (HttpURLConnection)new URL(remoteUrl(videoId)).openConnection();
+			conn.setConnectTimeout(CONNECT_TIMEOUT);
+			conn.setReadTimeout(READ_TIMEOUT);
+			if(conn.getResponseCode() != HttpURLConnection.HTTP_OK){
+				Log.v(TAG, "Thumbnail fetch for " + videoId + " returned " + conn.getResponseCode());
+				return false;
+			}
+			//The hydrator and a sync's prefetch can fetch the same thumbnail at once, each gets its own file.
+			tmp = File.createTempFile(videoId + ".", ".part", dir);
+			InputStream in = conn.getInputStream();
+			OutputStream out = new FileOutputStream(tmp);
+			try{
+				byte[] buf = new byte[8192];
+				int read;
+				while((read = in.read(buf)) != -1){
+					out.write(buf, 0, read);
+				}
+			}finally{
+				out.close();
+				in.close();
+			}
+			if(!tmp.renameTo(target)){
+				tmp.delete();
+				return false;
+			}
+			touch(videoId);
+			return true;
+		}catch(IOException e){
+			Log.v(TAG, "Error fetching thumbnail for " + videoId + ": " + e.getMessage());
+			if(tmp != null){
+				tmp.delete();
+			}
+			return false;
+		}finally{
+			if(conn != null){
+				conn.disconnect();
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the least recently used thumbnails until the cache is under MAX_CACHE_BYTES, sparing those
+	 * of videos that have cards on the timeline. Stale .part files go first.
+	 * @param pending Videos whose cards are being written now.
+	 */
+	synchronized void trim(List<String> pending){
+		File[] files = dir.listFiles();
+		if(files == null){
+			return;
+		}
+		long total = 0;
+		long stale = System.currentTimeMillis() - STALE_PART;
+		for(File f : files){
+			if(f.getName().endsWith(".part") && f.lastModified() < stale && f.delete()){
+				continue;
+			}
+			total += f.length();
+		}
+		if(total <= MAX_CACHE_BYTES){
+			return;
+		}
+		HashSet<String> inUse;
+		try{
+			inUse = VideoStore.getInstance(context).videosOnTimeline();
+		}catch(RuntimeException e){
+			//Without knowing which are in use, none can go.
+			Log.v(TAG, "Unable to read the cards on the timeline, not trimming: " + e.getMessage());
+			return;
+		}
+		inUse.addAll(pending);
+		ArrayList<String> oldestFirst;
+		synchronized(recency){
+			oldestFirst = new ArrayList<String>(recency.keySet());
+		}
+		for(int i = 0; i < oldestFirst.size() && total > MAX_CACHE_BYTES; i++){
+			String videoId = oldestFirst.get(i);
+			File f = fileFor(videoId);
+			if(inUse.contains(videoId)){
+				continue;
+			}
+			long length = f.length();
+			if(!f.exists() || f.delete()){
+				total -= length;
+				synchronized(recency){
+					recency.remove(videoId);
+				}
+			}
+		}
+		if(total > MAX_CACHE_BYTES){
+			Log.v(TAG, "Thumbnails of cards on the timeline keep the cache at " + (total / 1024) + " KB.");
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import android.util.Log;
+
+/**
+ * Remembers the timeline bundle that was last pushed for a feed: its bundle id, the id of the
+ * home card inside it and the card id of every video in it. With this, a sync can diff the feed
+ * against what is already on the timeline and only touch the cards that changed, rather than
+ * inserting a whole new bundle every time.
+ * <p>
+ * Videos whose cards retention took off the timeline are kept as retired until they drop out of the
+ * feed, so sending the whole feed again doesn't put them back.
+ * <p>
+ * Stored as a small tab separated text file per feed.
+ * @author betker
+ */
+public class TimelineBundleTracker {
+	static final String TAG = "TimelineBundleTracker";
+	
+	/**
+	 * What was last written to the timeline for a single video.
+	 */
+	public static class CardRecord{
+		final String cardId;
+		final String title, duration;
+		
+		public CardRecord(String card, String tit, String dur){
+			cardId = card; title = clean(tit); duration = clean(dur);
+		}
+		
+		/**
+		 * @return true if the card needs rewriting to show the given video.
+		 */
+		boolean differsFrom(VideoInfo vid){
+			return !title.equals(clean(vid.title)) || !duration.equals(clean(vid.duration));
+		}
+	}
+	
+	final File file;
+	String bundleId, homeCardId;
+	//Keyed by video id, in the order the cards were added.
+	final LinkedHashMap<String, CardRecord> cards = new LinkedHashMap<String, CardRecord>();
+	//Video ids whose cards were removed by retention rather than by the feed.
+	final HashSet<String> retired = new HashSet<String>();
+	
+	TimelineBundleTracker(File f){
+		file = f;
+	}
+	
+	/**
+	 * Loads the tracked bundle for a feed. If nothing has been tracked yet, the tracker comes back without a bundle id.
+	 */
+	public static TimelineBundleTracker load(File dir, String feedUrl){
+		TimelineBundleTracker tracker = new TimelineBundleTracker(new File(dir, Long.toHexString(SeenVideoIndex.hash(feedUrl)) + ".bundle"));
+		if(!tracker.file.exists()){
+			return tracker;
+		}
+		try{
+			BufferedReader reader = new BufferedReader(new FileReader(tracker.file));
+			try{
+				String line;
+				while((line = reader.readLine()) != null){
+					String[] parts = line.split("\t", -1);
+					if(parts[0].equals("bundle") && parts.length == 3){
+						tracker.bundleId = parts[1];
+						tracker.homeCardId = parts[2];
+					}else if(parts[0].equals("card") && parts.length == 5){
+						tracker.cards.put(parts[1], new CardRecord(parts[2], parts[4], parts[3]));
+					}else if(parts[0].equals("retired") && parts.length == 2){
+						tracker.retired.add(parts[1]);
+					}
+				}
+			}finally{
+				reader.close();
+			}
+		}catch(IOException e){
+			//Losing this just means the next push starts a new bundle.
+			Log.v(TAG, "Error loading bundle state for " + feedUrl + ": " + e.getMessage());
+			tracker.bundleId = null;
+			tracker.homeCardId = null;
+			tracker.cards.clear();
+			tracker.retired.clear();
+		}
+		return tracker;
+	}
+	
+	public boolean hasBundle(){
+		return bundleId != null;
+	}
+	
+	/**
+	 * Forgets the cards with the given ids, retiring their videos.
+	 */
+	public void retire(HashSet<String> cardIds){
+		Iterator<String> videoIds = cards.keySet().iterator();
+		while(videoIds.hasNext()){
+			String videoId = videoIds.next();
+			if(cardIds.contains(cards.get(videoId).cardId)){
+				retired.add(videoId);
+				videoIds.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Forgets the bundle, the next push starts a new one. Its videos are retired.
+	 */
+	public void clear(){
+		bundleId = null;
+		homeCardId = null;
+		retired.addAll(cards.keySet());
+		cards.clear();
+	}
+	
+	/**
+	 * Writes the state out to a temporary file and swaps it in, so a crash never leaves a half written file.
+	 */
+	public void save() throws IOException{
+		file.getParentFile().mkdirs();
+		File tmp = new File(file.getPath() + ".tmp");
+		BufferedWriter writer = new BufferedWriter(new FileWriter(tmp));
+		try{
+			if(bundleId != null){
+				writer.write("bundle\t" + bundleId + "\t" + homeCardId + "\n");
+			}
+			for(String videoId : cards.keySet()){
+				CardRecord rec = cards.get(videoId);
+				writer.write("card\t" + videoId + "\t" + rec.cardId + "\t" + rec.duration + "\t" + rec.title + "\n");
+			}
+			for(String videoId : retired){
+				writer.write("retired\t" + videoId + "\n");
+			}
+		}finally{
+			writer.close();
+		}
+		if(!tmp.renameTo(file)){
+			throw new IOException("Unable to replace " + file);
+		}
+	}
+	
+	/**
+	 * Strips the characters the file format uses as separators.
+	 */
+	static String clean(String s){
+		return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+}
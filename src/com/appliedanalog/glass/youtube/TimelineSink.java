@@ -0,0 +1,48 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ContentProviderOperation;
+
+import com.google.googlex.glass.common.proto.TimelineItem;
+
+/**
+ * Where the service writes its feed cards. On Glass this is the timeline provider, see
+ * GlassTimelineSink. SyncSimulator swaps in one that only counts what would have been written.
+ * @author betker
+ */
+public interface TimelineSink {
+	/**
+	 * Inserts new cards.
+	 */
+	void insert(List<TimelineItem> cards) throws Exception;
+	
+	/**
+	 * Applies a batch of timeline provider operations in one go.
+	 */
+	void apply(ArrayList<ContentProviderOperation> ops) throws Exception;
+	
+	/**
+	 * Fills in stub cards that have been inserted, in the background.
+	 * @param onDone Run once every stub has been dealt with.
+	 */
+	void hydrate(List<CardHydrator.Job> stubs, Runnable onDone);
+}
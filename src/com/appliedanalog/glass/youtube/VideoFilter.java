@@ -0,0 +1,226 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides which videos make it onto the timeline. Videos can be filtered on keywords in the title
+ * (include and exclude), on the channel that posted them and on their duration.
+ * <p>
+ * All of the keywords are compiled into one Aho-Corasick automaton, so a title is matched against
+ * every rule in a single case-insensitive pass over its characters. ASCII characters go through a
+ * lookup table; others are looked up in a map, which boxes them.
+ * The filter is built once per configuration snapshot and runs as each entry is read off the feed,
+ * so rejected videos never get a card or a thumbnail download. Nothing remembers a rejection: when
+ * the whole feed is sent, every entry that is read is filtered again on each sync.
+ * @author betker
+ */
+public class VideoFilter {
+	static final int INCLUDE = 1, EXCLUDE = 2;
+	
+	//A filter that lets everything through.
+	static final VideoFilter ALLOW_ALL = new VideoFilter(new ArrayList<String>(), new ArrayList<String>(),
+														 new ArrayList<String>(), new ArrayList<String>(), -1, -1);
+	
+	final boolean hasIncludes;
+	//The automaton. Characters are mapped onto a small alphabet of the characters that appear in
+	//keywords, everything else is symbol 0.
+	final int[] asciiSymbols = new int[128];
+	final HashMap<Character, Integer> otherSymbols = new HashMap<Character, Integer>();
+	final int[][] transitions; //[state][symbol]
+	final int[] matches; //INCLUDE/EXCLUDE flags of the keywords ending at (or below) each state
+	
+	final HashSet<String> includeAuthors, excludeAuthors;
+	final int minSeconds, maxSeconds; //-1 for no limit
+	
+	public VideoFilter(List<String> includeKeywords, List<String> excludeKeywords, List<String> includeAuthorList,
+					   List<String> excludeAuthorList, int minDuration, int maxDuration){
+		hasIncludes = !includeKeywords.isEmpty();
+		includeAuthors = lowerCased(includeAuthorList);
+		excludeAuthors = lowerCased(excludeAuthorList);
+		minSeconds = minDuration;
+		maxSeconds = maxDuration;
+		
+		//Assign symbols to the keyword characters.
+		int alphabet = 1;
+		ArrayList<String> keywords = new ArrayList<String>();
+		ArrayList<Integer> flags = new ArrayList<Integer>();
+		for(String k : includeKeywords){
+			keywords.add(k.toLowerCase(Locale.US));
+			flags.add(INCLUDE);
+		}
+		for(String k : excludeKeywords){
+			keywords.add(k.toLowerCase(Locale.US));
+			flags.add(EXCLUDE);
+		}
+		for(String k : keywords){
+			for(int i = 0; i < k.length(); i++){
+				if(symbol(k.charAt(i)) == 0){
+					char c = k.charAt(i);
+					if(c < 128){
+						asciiSymbols[c] = alphabet++;
+					}else{
+						otherSymbols.put(c, alphabet++);
+					}
+				}
+			}
+		}
+		
+		//Build the trie.
+		ArrayList<int[]> trie = new ArrayList<int[]>();
+		ArrayList<Integer> out = new ArrayList<Integer>();
+		trie.add(new int[alphabet]);
+		out.add(0);
+		for(int k = 0; k < keywords.size(); k++){
+			String keyword = keywords.get(k);
+			if(keyword.length() == 0){
+				continue;
+			}
+			int state = 0;
+			for(int i = 0; i < keyword.length(); i++){
+				int sym = symbol(keyword.charAt(i));
+				if(trie.get(state)[sym] == 0){
+					trie.get(state)[sym] = trie.size();
+					trie.add(new int[alphabet]);
+					out.add(0);
+				}
+				state = trie.get(state)[sym];
+			}
+			out.set(state, out.get(state) | flags.get(k));
+		}
+		
+		//Breadth first, fill in the failure transitions so every state has a move on every symbol.
+		int[] fail = new int[trie.size()];
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		for(int sym = 0; sym < alphabet; sym++){
+			if(trie.get(0)[sym] != 0){
+				queue.add(trie.get(0)[sym]);
+			}
+		}
+		while(!queue.isEmpty()){
+			int state = queue.removeFirst();
+			out.set(state, out.get(state) | out.get(fail[state]));
+			for(int sym = 0; sym < alphabet; sym++){
+				int next = trie.get(state)[sym];
+				if(next != 0){
+					fail[next] = trie.get(fail[state])[sym];
+					queue.add(next);
+				}else{
+					trie.get(state)[sym] = trie.get(fail[state])[sym];
+				}
+			}
+		}
+		
+		transitions = trie.toArray(new int[trie.size()][]);
+		matches = new int[out.size()];
+		for(int i = 0; i < matches.length; i++){
+			matches[i] = out.get(i);
+		}
+	}
+	
+	static HashSet<String> lowerCased(List<String> list){
+		HashSet<String> set = new HashSet<String>();
+		for(String s : list){
+			set.add(s.trim().toLowerCase(Locale.US));
+		}
+		return set;
+	}
+	
+	int symbol(char c){
+		if(c < 128){
+			return asciiSymbols[c];
+		}
+		Integer sym = otherSymbols.get(c);
+		return sym == null ? 0 : sym;
+	}
+	
+	/**
+	 * @return The INCLUDE/EXCLUDE flags of every keyword found in the text.
+	 */
+	int scan(String text){
+		if(text == null){
+			return 0;
+		}
+		int state = 0, found = 0;
+		for(int i = 0; i < text.length(); i++){
+			state = transitions[state][symbol(Character.toLowerCase(text.charAt(i)))];
+			found |= matches[state];
+			if((found & EXCLUDE) != 0){
+				break; //nothing can save it now
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * @return true if the video should be delivered.
+	 */
+	public boolean accepts(VideoInfo vid){
+		int found = scan(vid.title);
+		if((found & EXCLUDE) != 0 || (hasIncludes && (found & INCLUDE) == 0)){
+			return false;
+		}
+		if(!includeAuthors.isEmpty() || !excludeAuthors.isEmpty()){
+			String author = vid.author == null ? "" : vid.author.trim().toLowerCase(Locale.US);
+			if(excludeAuthors.contains(author) || (!includeAuthors.isEmpty() && !includeAuthors.contains(author))){
+				return false;
+			}
+		}
+		if(minSeconds >= 0 || maxSeconds >= 0){
+			int seconds = durationSeconds(vid.duration);
+			//Videos of unknown length are let through.
+			if(seconds >= 0 && ((minSeconds >= 0 && seconds < minSeconds) || (maxSeconds >= 0 && seconds > maxSeconds))){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads a duration such as 4:05 or 1:02:33.
+	 * @return The duration in seconds, or -1 if it can't be read.
+	 */
+	static int durationSeconds(String duration){
+		if(duration == null || duration.length() == 0){
+			return -1;
+		}
+		int total = 0, part = 0;
+		boolean digits = false;
+		for(int i = 0; i < duration.length(); i++){
+			char c = duration.charAt(i);
+			if(c >= '0' && c <= '9'){
+				part = part * 10 + (c - '0');
+				digits = true;
+			}else if(c == ':' && digits){
+				total = total * 60 + part;
+				part = 0;
+				digits = false;
+			}else{
+				return -1;
+			}
+		}
+		return digits ? total * 60 + part : -1;
+	}
+}
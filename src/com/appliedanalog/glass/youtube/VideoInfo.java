@@ -0,0 +1,74 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Structure for holding the parts of a feed entry that end up on a card.
+ * @author betker
+ */
+public class VideoInfo {
+	String id, title, duration;
+	long published; //ms since the epoch, 0 if the feed didn't say
+	String author = ""; //empty if the feed didn't say
+	long views = -1; //-1 if the feed didn't say
+
+	public VideoInfo(String i, String tit, String dur){
+		this(i, tit, dur, 0);
+	}
+
+	public VideoInfo(String i, String tit, String dur, long pub){
+		id = i; title = tit; duration = dur; published = pub;
+	}
+
+	/**
+	 * Parses an Atom (RFC 3339) timestamp such as 2013-07-12T18:26:41.000Z.
+	 * @return ms since the epoch, or 0 if the timestamp can't be read.
+	 */
+	static long parseAtomDate(String date){
+		if(date == null){
+			return 0;
+		}
+		date = date.trim();
+		try{
+			Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+			cal.clear();
+			cal.set(Integer.parseInt(date.substring(0, 4)), Integer.parseInt(date.substring(5, 7)) - 1,
+					Integer.parseInt(date.substring(8, 10)), Integer.parseInt(date.substring(11, 13)),
+					Integer.parseInt(date.substring(14, 16)), Integer.parseInt(date.substring(17, 19)));
+			int i = 19;
+			if(i < date.length() && date.charAt(i) == '.'){ //skip fractional seconds
+				i++;
+				while(i < date.length() && Character.isDigit(date.charAt(i))){
+					i++;
+				}
+			}
+			long time = cal.getTimeInMillis();
+			if(i < date.length() && (date.charAt(i) == '+' || date.charAt(i) == '-')){
+				int offset = Integer.parseInt(date.substring(i + 1, i + 3)) * 60 + Integer.parseInt(date.substring(i + 4, i + 6));
+				time -= (date.charAt(i) == '+' ? 1 : -1) * offset * 60 * 1000L;
+			}
+			return time;
+		}catch(RuntimeException e){
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+    Youtube Feed - YouTube Atom Feed for Google Glass
+    Copyright (C) 2013 James Betker
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.appliedanalog.glass.youtube;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * Keeps what was parsed out of the feeds once it has been delivered: every video with its title,
+ * duration, channel, view count and publish time and whether its thumbnail was served from the
+ * local cache, and every card still on the timeline with the bundle it went out in. A video that is
+ * re-posted in a new bundle gets a new card row, so older bundles stay on record until retention
+ * removes them. Writes are done a whole sync at a time in one transaction with precompiled
+ * statements. Cards are indexed by bundle and delivery age, so later syncs and the home card can
+ * answer questions without going to the network.
+ * @author betker
+ */
+public class VideoStore extends SQLiteOpenHelper {
+	static final String TAG = "VideoStore";
+	
+	static final String DB_NAME = "videos.db";
+	static final int DB_VERSION = 3;
+	
+	static final String TABLE = "videos";
+	static final String CREATE_TABLE = "CREATE TABLE " + TABLE + " (" +
+			"feed_url TEXT NOT NULL, " +
+			"video_id TEXT NOT NULL, " +
+			"title TEXT, " +
+			"duration TEXT, " +
+			"author TEXT, " +
+			"views INTEGER NOT NULL DEFAULT -1, " +
+			"published INTEGER NOT NULL DEFAULT 0, " +
+			"delivered INTEGER NOT NULL DEFAULT 0, " + //ms since the epoch, of the latest delivery
+			"thumb_cached INTEGER NOT NULL DEFAULT 0, " +
+			"PRIMARY KEY (feed_url, video_id))";
+	//One row per card on the timeline, removed when the card is.
+	static final String CARDS = "cards";
+	static final String CREATE_CARDS = "CREATE TABLE " + CARDS + " (" +
+			"card_id TEXT PRIMARY KEY, " +
+			"bundle_id TEXT NOT NULL, " +
+			"feed_url TEXT NOT NULL, " +
+			"video_id TEXT NOT NULL, " +
+			"delivered INTEGER NOT NULL)";
+	static final String[] CREATE_INDEXES = {
+		"CREATE INDEX videos_delivered ON " + TABLE + " (delivered)",
+		"CREATE INDEX cards_bundle ON " + CARDS + " (bundle_id)",
+		"CREATE INDEX cards_delivered ON " + CARDS + " (delivered)",
+		"CREATE INDEX cards_video ON " + CARDS + " (feed_url, video_id)"
+	};
+	
+	//Insert then update rather than INSERT OR REPLACE, so a re-delivery doesn't lose columns it doesn't set.
+	static final String INSERT = "INSERT OR IGNORE INTO " + TABLE + " (feed_url, video_id) VALUES (?, ?)";
+	static final String UPDATE = "UPDATE " + TABLE + " SET title = ?, duration = ?, author = ?, views = ?, published = ?, " +
+								 "delivered = ?, thumb_cached = ? WHERE feed_url = ? AND video_id = ?";
+	//A card id is only reused when a bundle is updated in place, in which case it is the same card.
+	static final String INSERT_CARD = "INSERT OR REPLACE INTO " + CARDS + " (card_id, bundle_id, feed_url, video_id, delivered) " +
+									  "VALUES (?, ?, ?, ?, ?)";
+	
+	static VideoStore instance;
+	
+	public static synchronized VideoStore getInstance(Context context){
+		if(instance == null){
+			instance = new VideoStore(context.getApplicationContext());
+		}
+		return instance;
+	}
+	
+	VideoStore(Context context){
+		super(context, DB_NAME, null, DB_VERSION);
+	}
+	
+	@Override
+	public void onCreate(SQLiteDatabase db){
+		db.execSQL(CREATE_TABLE);
+		db.execSQL(CREATE_CARDS);
+		for(String index : CREATE_INDEXES){
+			db.execSQL(index);
+		}
+	}
+	
+	@Override
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion){
+		if(oldVersion < 3){
+			//The card and bundle used to be columns of the video, so only its latest card was known.
+			db.execSQL(CREATE_CARDS);
+			db.execSQL("INSERT OR IGNORE INTO " + CARDS + " (card_id, bundle_id, feed_url, video_id, delivered) " +
+					   "SELECT card_id, bundle_id, feed_url, video_id, delivered FROM " + TABLE +
+					   " WHERE card_id IS NOT NULL AND bundle_id IS NOT NULL");
+			db.execSQL("ALTER TABLE " + TABLE + " RENAME TO videos_v2");
+			db.execSQL(CREATE_TABLE);
+			db.execSQL("INSERT INTO " + TABLE + " (feed_url, video_id, title, duration, author, views, published, delivered, thumb_cached) " +
+					   "SELECT feed_url, video_id, title, duration, author, views, published, delivered, thumb_cached FROM videos_v2");
+			db.execSQL("DROP TABLE videos_v2"); //and its indexes with it
+			for(String index : CREATE_INDEXES){
+				db.execSQL(index);
+			}
+		}
+	}
+	
+	/**
+	 * A delivered video and where it went.
+	 */
+	public static class StoredVideo{
+		final String feedUrl;
+		final VideoInfo info;
+		final String cardId, bundleId;
+		final long delivered;
+		
+		StoredVideo(String url, VideoInfo vid, String card, String bundle, long when){
+			feedUrl = url; info = vid; cardId = card; bundleId = bundle; delivered = when;
+		}
+	}
+	
+	/**
+	 * Records the videos of a feed result as delivered, along with their cards, in a single transaction.
+	 * @param cardIds The card each video went out in, parallel to result.vids.
+	 * @param thumbCached Whether each video's thumbnail was served from the cache, parallel to result.vids.
+	 */
+	public synchronized void recordDelivered(FeedResult result, List<String> cardIds, boolean[] thumbCached, long now){
+		SQLiteDatabase db = getWritableDatabase();
+		SQLiteStatement insert = db.compileStatement(INSERT);
+		SQLiteStatement update = db.compileStatement(UPDATE);
+		SQLiteStatement insertCard = db.compileStatement(INSERT_CARD);
+		db.beginTransaction();
+		try{
+			for(int i = 0; i < result.vids.size(); i++){
+				VideoInfo vid = result.vids.get(i);
+				insert.bindString(1, result.feedUrl);
+				insert.bindString(2, vid.id);
+				insert.executeInsert();
+				
+				bindOrNull(update, 1, vid.title);
+				bindOrNull(update, 2, vid.duration);
+				bindOrNull(update, 3, vid.author);
+				update.bindLong(4, vid.views);
+				update.bindLong(5, vid.published);
+				update.bindLong(6, now);
+				update.bindLong(7, thumbCached[i] ? 1 : 0);
+				update.bindString(8, result.feedUrl);
+				update.bindString(9, vid.id);
+				update.executeUpdateDelete();
+				
+				if(cardIds.get(i) != null && result.bundleId != null){
+					insertCard.bindString(1, cardIds.get(i));
+					insertCard.bindString(2, result.bundleId);
+					insertCard.bindString(3, result.feedUrl);
+					insertCard.bindString(4, vid.id);
+					insertCard.bindLong(5, now);
+					insertCard.executeInsert();
+				}
+			}
+			db.setTransactionSuccessful();
+		}finally{
+			db.endTransaction();
+			insert.close();
+			update.close();
+			insertCard.close();
+		}
+		Log.v(TAG, "Stored " + result.vids.size() + " delivered videos for " + result.feedUrl);
+	}
+	
+	static void bindOrNull(SQLiteStatement stmt, int index, String value){
+		if(value == null){
+			stmt.bindNull(index);
+		}else{
+			stmt.bindString(index, value);
+		}
+	}
+	
+	public synchronized long countVideos(){
+		return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE);
+	}
+	
+	/**
+	 * @return How many videos have been delivered since the given time.
+	 */
+	public synchronized long countDeliveredSince(long since){
+		return DatabaseUtils.longForQuery(getReadableDatabase(), "SELECT COUNT(*) FROM " + TABLE + " WHERE delivered >= ?",
+										  new String[]{ String.valueOf(since) });
+	}
+	
+	/**
+	 * Forgets videos last delivered before the given time that no longer have a card on the timeline.
+	 * @return The number of videos removed.
+	 */
+	public synchronized int deleteDeliveredBefore(long cutoff){
+		return getWritableDatabase().delete(TABLE, "delivered < ? AND NOT EXISTS (SELECT 1 FROM " + CARDS + " c WHERE c.feed_url = " +
+											TABLE + ".feed_url AND c.video_id = " + TABLE + ".video_id)", new String[]{ String.valueOf(cutoff) });
+	}
+	
+	/**
+	 * A bundle of cards on the timeline, as far as the store knows.
+	 */
+	public static class StoredBundle{
+		final String bundleId, feedUrl;
+		final long newestDelivery;
+		final int cards;
+		
+		StoredBundle(String bundle, String url, long newest, int count){
+			bundleId = bundle; feedUrl = url; newestDelivery = newest; cards = count;
+		}
+	}
+	
+	/**
+	 * @return Every bundle that still has cards on the timeline, most recently delivered first.
+	 */
+	public synchronized List<StoredBundle> bundlesOnTimeline(){
+		Cursor c = getReadableDatabase().rawQuery("SELECT bundle_id, feed_url, MAX(delivered), COUNT(*) FROM " + CARDS +
+												  " GROUP BY bundle_id ORDER BY 3 DESC", null);
+		ArrayList<StoredBundle> bundles = new ArrayList<StoredBundle>();
+		try{
+			while(c.moveToNext()){
+				bundles.add(new StoredBundle(c.getString(0), c.getString(1), c.getLong(2), c.getInt(3)));
+			}
+		}finally{
+			c.close();
+		}
+		return bundles;
+	}
+	
+	/**
+	 * @return The videos of a bundle that still have a card on the timeline.
+	 */
+	public synchronized List<StoredVideo> cardsInBundle(String bundleId){
+		return readVideos(getReadableDatabase().rawQuery(SELECT_CARDS + " WHERE c.bundle_id = ?", new String[]{ bundleId }));
+	}
+	
+	/**
+	 * @return Cards delivered before the given time that are still on the timeline, oldest first.
+	 */
+	public synchronized List<StoredVideo> cardsDeliveredBefore(long cutoff){
+		return readVideos(getReadableDatabase().rawQuery(SELECT_CARDS + " WHERE c.delivered < ? ORDER BY c.delivered ASC",
+														 new String[]{ String.valueOf(cutoff) }));
+	}
+	
+	/**
+	 * Records that the given cards are gone from the timeline. The videos themselves are kept.
+	 */
+	public synchronized void clearCards(List<String> cardIds){
+		SQLiteDatabase db = getWritableDatabase();
+		SQLiteStatement clear = db.compileStatement("DELETE FROM " + CARDS + " WHERE card_id = ?");
+		db.beginTransaction();
+		try{
+			for(String cardId : cardIds){
+				clear.bindString(1, cardId);
+				clear.executeUpdateDelete();
+			}
+			db.setTransactionSuccessful();
+		}finally{
+			db.endTransaction();
+			clear.close();
+		}
+	}
+	
+	/**
+	 * @return The ids of the videos that still have a card on the timeline.
+	 */
+	public synchronized HashSet<String> videosOnTimeline(){
+		Cursor c = getReadableDatabase().rawQuery("SELECT DISTINCT video_id FROM " + CARDS, null);
+		HashSet<String> ids = new HashSet<String>();
+		try{
+			while(c.moveToNext()){
+				ids.add(c.getString(0));
+			}
+		}finally{
+			c.close();
+		}
+		return ids;
+	}
+	
+	public synchronized long countCards(){
+		return DatabaseUtils.queryNumEntries(getReadableDatabase(), CARDS);
+	}
+	
+	public synchronized long countBundles(){
+		return DatabaseUtils.longForQuery(getReadableDatabase(), "SELECT COUNT(DISTINCT bundle_id) FROM " + CARDS, null);
+	}
+	
+	//Cards with their videos, in the column order readVideos() expects.
+	static final String SELECT_CARDS = "SELECT c.feed_url, c.video_id, v.title, v.duration, v.author, v.views, v.published, " +
+									   "c.card_id, c.bundle_id, c.delivered FROM " + CARDS + " c LEFT JOIN " + TABLE +
+									   " v ON v.feed_url = c.feed_url AND v.video_id = c.video_id";
+	
+	List<StoredVideo> readVideos(Cursor c){
+		ArrayList<StoredVideo> videos = new ArrayList<StoredVideo>();
+		try{
+			while(c.moveToNext()){
+				VideoInfo vid = new VideoInfo(c.getString(1), c.getString(2), c.getString(3), c.getLong(6));
+				vid.author = c.isNull(4) ? "" : c.getString(4);
+				vid.views = c.getLong(5);
+				videos.add(new StoredVideo(c.getString(0), vid, c.getString(7), c.getString(8), c.getLong(9)));
+			}
+		}finally{
+			c.close();
+		}
+		return videos;
+	}
+}
@@ -18,27 +18,37 @@
 
 package com.appliedanalog.glass.youtube;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.net.URL;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.UUID;
 
 import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.SystemClock;
-import android.preference.PreferenceManager;
+import android.os.Process;
 import android.util.Log;
 import android.view.KeyEvent;
 
@@ -51,11 +61,6 @@ import com.google.googlex.glass.common.proto.MenuItem;
 import com.google.googlex.glass.common.proto.MenuValue;
 import com.google.googlex.glass.common.proto.NotificationConfig;
 import com.google.googlex.glass.common.proto.TimelineItem;
-import com.sun.syndication.feed.synd.SyndContent;
-import com.sun.syndication.feed.synd.SyndEntry;
-import com.sun.syndication.feed.synd.SyndFeed;
-import com.sun.syndication.io.SyndFeedInput;
-import com.sun.syndication.io.XmlReader;
 
 /**
  * A persistant service that maintains a card on the Glass timeline. When turned
@@ -66,22 +71,57 @@ import com.sun.syndication.io.XmlReader;
 public class YoutubeFeedService extends Service{
 	static final String TAG = "YoutubeFeedService";
 	
-	//This is just constant because I have no good way of making it configurable in glass.
-	final String CONFIGURATION_FILE = "/sdcard/.youtubefeedconfig";
-	
 	//Shared pref constants
 	final String LAST_VIDEO_ID = "LastVideoFed";
-	final String SERVICE_ENABLED = "ServiceEnabled";
+	static final String SERVICE_ENABLED = "ServiceEnabled";
 	final String HOME_CARD = "HomeCardIdent";
+	//Hash of the settings the home card was last updated to show, see refreshIntroductionCard().
+	final String HOME_CARD_STATE = "HomeCardState";
+	//Key for the seen index shared by all feeds, not a URL so it can't clash with a feed's own index.
+	static final String ALL_FEEDS = "*";
+	//Entries per feed that index is sized for. Feeds usually page at 25, this leaves room for bigger pages.
+	static final int FEED_PAGE_ENTRIES = 50;
+	
+	//Shared between service instances so that overlapping alarms can see what is already being synced.
+	static final FeedSyncScheduler<FeedResult> syncScheduler = new FeedSyncScheduler<FeedResult>();
 	
 	YoutubeFeedService me;
-	String feedUrl = "http://gdata.youtube.com/feeds/api/standardfeeds/top_rated";
+	//The configuration snapshot the fields below were last loaded from, see loadConfiguration().
+	FeedConfig config;
+	ArrayList<String> feedUrls = new ArrayList<String>();
 	int updateInterval = 10 * 60 * 1000; //every 10 minutes
+	boolean adaptivePolling = true; //learn how often to poll each feed, within the bounds below.
+	int minUpdateInterval = 15 * 60 * 1000;
+	int maxUpdateInterval = 12 * 60 * 60 * 1000;
 	boolean sendAllVideos = true; //everytime there is a new video, send all the videos from the feed as opposed to just one.
+	//How many already seen videos in a row end the read of a feed when only new videos are sent.
+	final int SEEN_RUN_LIMIT = 3;
+	boolean reuseBundles = false; //keep one bundle per feed up to date rather than pushing a new bundle on every change.
+	boolean cacheThumbnails = true; //prefetch thumbnails into a local cache and point cards at them.
+	int fetchTimeout = 60 * 1000; //give up on a feed download after this long
+	long maxFeedSize = 2 * 1024 * 1024; //or once it gets this big
+	boolean streamingParser = true; //read the feed with the streaming pull parser rather than building a ROME document.
+	boolean lazyCards = false; //push most cards of a new bundle as stubs and fill them in afterwards.
+	VideoFilter filter = VideoFilter.ALLOW_ALL; //which videos are wanted on the timeline.
+	boolean persistentWorker = false; //keep the service and a warm worker thread up between syncs.
+	int retainBundles = 20; //how many bundles to leave on the timeline, 0 for no limit.
+	long retainAge = 14L * 24 * 60 * 60 * 1000; //how long to leave cards on the timeline, 0 for no limit.
+	boolean mergeFeeds = true; //put the new videos of every feed in a sync into one bundle, each video only once.
+	
+	//Persistent worker mode. Alarms post their work to this thread, which keeps card building state
+	//warm across syncs. Only created in that mode.
+	static HandlerThread worker;
+	static Handler workerHandler;
+	static CardContext warmCards; //only touched on the worker thread
+	//Feed readers (with their pull parsers) kept per pool thread in that mode.
+	static final ThreadLocal<AtomEntryReader> warmReaders = new ThreadLocal<AtomEntryReader>();
     
 	//States
     boolean enabled = true;
     boolean feedStarted = false;
+    //Start bookkeeping so that the service only stops once the last sync has finished. Guarded by this.
+    int lastStartId = 0;
+    int activeSyncs = 0;
 	
 	@Override
 	public void onCreate(){
@@ -90,13 +130,26 @@ public class YoutubeFeedService extends Service{
 		
 		//For the card service
         GlassLocationManager.init(this);
+        
+        //Apply edits to the configuration file as they happen.
+        Intent reload = new Intent(getApplicationContext(), YoutubeFeedService.class);
+        reload.putExtra(FEED_SERVICE_OP, OP_RELOAD_CONFIG);
+        FeedConfig.watch(getApplicationContext(), reload);
 	}
 	
 	//Intent extras
-	final String FEED_SERVICE_OP = "op";
+	static final String FEED_SERVICE_OP = "op";
 	
 	//And values
 	final int OP_SYNC = 5832;
+	final int OP_DUMP_METRICS = 5834;
+	static final int OP_RETRY = 5835;
+	static final int OP_RELOAD_CONFIG = 5836;
+	//Extra for OP_RETRY, retry everything now rather than only what is due.
+	static final String RETRY_ALL = "retryAll";
+	//Extras for OP_SYNC and OP_RETRY alarms: the wall clock time the alarm was set for, and its repeat interval.
+	static final String ALARM_TIME = "alarmTime";
+	static final String ALARM_INTERVAL = "alarmInterval";
 	
 	@Override
 	public int onStartCommand(Intent intent, int flags, int startid){
@@ -104,8 +157,12 @@ public class YoutubeFeedService extends Service{
 		
 		Log.v(TAG, "Service onStartCommand intent=" + (intent == null ? "null" : intent.toString()));
 		Log.v(TAG, "Intent data URI: " + intent.getDataString());
+		synchronized(this){
+			lastStartId = startid;
+		}
 		
-		loadConfiguration(); //reload config every cycle.
+		FeedConfig previous = config;
+		loadConfiguration(); //pick up config changes every cycle, this only reads the file if it changed.
 		
 		try{
 			//If the service was started with a purpose, handle it.
@@ -114,12 +171,31 @@ public class YoutubeFeedService extends Service{
 				switch(intent.getExtras().getInt(FEED_SERVICE_OP)){
 				case OP_SYNC:
 					//We need to do a sync, but since it is a network operation we need to push it off the main thread.
-					Log.v(TAG, "SyncOp, syncing feed now.");
-					(new Thread("FeedParsing Thread."){
+					//Working out what is due reads the journal, so that goes along with it.
+					final long wakeup = alarmTime(intent.getExtras(), System.currentTimeMillis());
+					runInBackground("Sync Thread.", new Runnable(){
 						public void run(){
-							parseFeed();
+							syncDueFeeds(wakeup);
 						}
-					}).start();
+					});
+					break;
+				case OP_RELOAD_CONFIG:
+					Log.v(TAG, "ReloadConfigOp, applying the edited configuration.");
+					applyConfigurationChange(previous);
+					//Nothing else to do, so stop unless a sync is running.
+					synchronized(this){
+						activeSyncs++;
+					}
+					stopIfIdle();
+					break;
+				case OP_RETRY:
+					boolean all = intent.getExtras().getBoolean(RETRY_ALL, false);
+					Log.v(TAG, "RetryOp, retrying " + (all ? "all" : "due") + " failed work.");
+					retryPending(all, alarmTime(intent.getExtras(), System.currentTimeMillis()));
+					break;
+				case OP_DUMP_METRICS:
+					Log.v(TAG, "DumpMetricsOp, writing out the sync metrics.");
+					dumpMetrics();
 					break;
 				}
 				return START_NOT_STICKY;
@@ -137,7 +213,7 @@ public class YoutubeFeedService extends Service{
 			
 			//Fetch the enable state
 			Log.v(TAG, "Fell through op switch, doing default functionality");
-			SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(me);
+			SharedPreferences prefs = getStateStore();
 			enabled = prefs.getBoolean(SERVICE_ENABLED, true);
 			
 			String homeCardId = prefs.getString(HOME_CARD, null);
@@ -164,37 +240,74 @@ public class YoutubeFeedService extends Service{
 		return null;
 	}
 	
-	void loadConfiguration(){
-		//Attempt to load configuration settings if they exist
-		try{
-			BufferedReader reader = new BufferedReader(new FileReader(CONFIGURATION_FILE));
-			String line = "";
-			while((line = reader.readLine()) != null){
-				try{
-					if(line.startsWith("#")) continue; //its a comment
-					if(line.startsWith("youtubeFeed=")){
-						feedUrl = line.replace("youtubeFeed=", "");
-					}
-					if(line.startsWith("queryInterval=")){
-						updateInterval = Integer.parseInt(line.replace("queryInterval=", "")) * 60 * 1000;
-					}
-					if(line.startsWith("sendAllVideos=")){
-						sendAllVideos = Boolean.parseBoolean(line.replace("sendAllVideos=", ""));
-					}
-				}catch(Exception ex){
-					Log.v(TAG, "Improper configuration formatting on this line: `" + line + "` - " + ex.getMessage());
-				}
+	/**
+	 * Picks up the current configuration snapshot. This is just a stat of the configuration file
+	 * unless it has changed since it was last parsed.
+	 * @return true if the configuration changed since this service last loaded it.
+	 */
+	boolean loadConfiguration(){
+		FeedConfig latest = FeedConfig.get();
+		if(latest == config){
+			return false;
+		}
+		useConfiguration(latest);
+		return true;
+	}
+	
+	/**
+	 * Copies the settings of a configuration snapshot into the service.
+	 */
+	void useConfiguration(FeedConfig latest){
+		config = latest;
+		feedUrls = new ArrayList<String>(latest.feedUrls);
+		updateInterval = latest.updateInterval;
+		adaptivePolling = latest.adaptivePolling;
+		minUpdateInterval = latest.minUpdateInterval;
+		maxUpdateInterval = latest.maxUpdateInterval;
+		sendAllVideos = latest.sendAllVideos;
+		reuseBundles = latest.reuseBundles;
+		cacheThumbnails = latest.cacheThumbnails;
+		fetchTimeout = latest.fetchTimeout;
+		maxFeedSize = latest.maxFeedSize;
+		streamingParser = latest.streamingParser;
+		lazyCards = latest.lazyCards;
+		filter = latest.filter;
+		persistentWorker = latest.persistentWorker;
+		retainBundles = latest.retainBundles;
+		retainAge = latest.retainAge;
+		mergeFeeds = latest.mergeFeeds;
+		syncScheduler.setKeepThreadsWarm(persistentWorker);
+	}
+	
+	/**
+	 * Called when the configuration file has been edited. If the polling schedule changed and the feed
+	 * is on, the alarms are reset for the new intervals now rather than when the old ones next fire.
+	 */
+	void applyConfigurationChange(FeedConfig previous){
+		if(previous != null && !previous.scheduleDiffers(config)){
+			Log.v(TAG, "Configuration changed, but not the polling schedule.");
+		}else if(getStateStore().getBoolean(SERVICE_ENABLED, true)){
+			Log.v(TAG, "Polling schedule changed, rescheduling.");
+			AlarmManager mgr = (AlarmManager)getSystemService(Context.ALARM_SERVICE);
+			PendingIntent pi = getAlarmIntent();
+			mgr.cancel(pi);
+			long now = System.currentTimeMillis();
+			if(adaptivePolling){
+				getPollScheduler().applyBounds(feedUrls, now);
+				scheduleNextPoll();
+			}else{
+				mgr.setRepeating(AlarmManager.RTC_WAKEUP, now + updateInterval, updateInterval, getAlarmIntent(now + updateInterval, updateInterval));
 			}
-			Log.v(TAG, "Successfully parsed configuration file. youtubeFeed='" + feedUrl + "', queryInterval='" + updateInterval + "'");
-			reader.close();
-		}catch(Exception e){
-			Log.v(TAG, "Error loading configuration file: " + e.getMessage());
 		}
+		//The home card shows the interval and feeds.
+		refreshIntroductionCard();
 	}
 	
 	@Override
 	public void onDestroy(){
 		super.onDestroy();
+		getStateStore().flush();
+		stopWorker();
 	}
 
 	PendingIntent getAlarmIntent(){
@@ -204,6 +317,68 @@ public class YoutubeFeedService extends Service{
     	return pi;
 	}
 	
+	/**
+	 * The sync alarm intent for an alarm set to go off at the given time, so the sync can measure its
+	 * wakeup latency from when the alarm was due rather than from when the service got the intent.
+	 * @param interval The repeat interval, or 0 for a one-shot alarm.
+	 */
+	PendingIntent getAlarmIntent(long at, long interval){
+    	Intent i = new Intent(this, YoutubeFeedService.class);
+    	i.putExtra(FEED_SERVICE_OP, OP_SYNC);
+    	i.putExtra(ALARM_TIME, at);
+    	i.putExtra(ALARM_INTERVAL, interval);
+    	return PendingIntent.getService(this, 0, i, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+	
+	/**
+	 * Works out when the alarm that delivered these extras was due. A repeating alarm only carries its
+	 * first trigger time, so that is moved on by whole intervals to the latest one that has passed.
+	 * @return The wall clock time the alarm was due, or now if the intent didn't come from an alarm.
+	 */
+	static long alarmTime(Bundle extras, long now){
+		long at = extras == null ? -1 : extras.getLong(ALARM_TIME, -1);
+		if(at < 0 || at > now){
+			return now;
+		}
+		long interval = extras.getLong(ALARM_INTERVAL, 0);
+		if(interval > 0){
+			at += (now - at) / interval * interval;
+		}
+		return at;
+	}
+	
+	AdaptivePollScheduler getPollScheduler(){
+		return new AdaptivePollScheduler(getStateStore(), updateInterval, minUpdateInterval, maxUpdateInterval);
+	}
+	
+	/**
+	 * With adaptive polling there is no repeating alarm, so this sets the one-shot alarm for the next
+	 * feed that is due. Does nothing if the feed has been turned off in the meantime.
+	 */
+	void scheduleNextPoll(){
+		if(!adaptivePolling || !getStateStore().getBoolean(SERVICE_ENABLED, true)){
+			return;
+		}
+		long at = getPollScheduler().nextWakeup(feedUrls, System.currentTimeMillis());
+		Log.v(TAG, "Next feed wakeup in " + ((at - System.currentTimeMillis()) / 1000) + " seconds.");
+		AlarmManager mgr = (AlarmManager)getSystemService(Context.ALARM_SERVICE);
+		mgr.set(AlarmManager.RTC_WAKEUP, at, getAlarmIntent(at, 0));
+	}
+	
+	/**
+	 * With adaptive polling, pushes the one-shot alarm out to the longest poll interval before a sync starts.
+	 * scheduleNextPoll() brings it back in once the sync is done, and if the sync never gets that far (the
+	 * process is killed, delivery fails) polling still carries on from here.
+	 */
+	void armFallbackPoll(){
+		if(!adaptivePolling || !getStateStore().getBoolean(SERVICE_ENABLED, true)){
+			return;
+		}
+		AlarmManager mgr = (AlarmManager)getSystemService(Context.ALARM_SERVICE);
+		long at = System.currentTimeMillis() + maxUpdateInterval;
+		mgr.set(AlarmManager.RTC_WAKEUP, at, getAlarmIntent(at, 0));
+	}
+	
 	/**
 	 * Starts up the sensors/bluetooth connection and begins pushing data to the timeline.
 	 */
@@ -224,7 +399,20 @@ public class YoutubeFeedService extends Service{
 		//turn off autosync if it has been started
     	mgr.cancel(pi);
 		//turn it on now.
-    	mgr.setRepeating(AlarmManager.RTC_WAKEUP, SystemClock.elapsedRealtime(), updateInterval, pi);
+    	long now = System.currentTimeMillis();
+    	if(adaptivePolling){
+    		//One sync right away, after that each sync schedules the next wakeup itself.
+    		mgr.set(AlarmManager.RTC_WAKEUP, now, getAlarmIntent(now, 0));
+    	}else{
+    		mgr.setRepeating(AlarmManager.RTC_WAKEUP, now, updateInterval, getAlarmIntent(now, updateInterval));
+    	}
+    	//Pick the retries back up if the feed was turned off with work still in the journal. That reads
+    	//the journal, which isn't something to do on the main thread.
+    	runInBackground("Retry Schedule Thread.", new Runnable(){
+    		public void run(){
+    			scheduleRetry();
+    		}
+    	});
     	feedStarted = true;
 
 		//Update home card
@@ -242,191 +430,1048 @@ public class YoutubeFeedService extends Service{
 		PendingIntent pi = getAlarmIntent();
 		//turn off autosync
     	mgr.cancel(pi);
+    	//and the retries, the journal keeps the failed work for when the feed is turned back on.
+    	mgr.cancel(getRetryIntent());
     	feedStarted = false;
     	
 		enabled = false;
 		saveEnableState();
+		if(persistentWorker){
+			//Nothing to stay up for now.
+			synchronized(this){
+				activeSyncs++;
+			}
+			stopIfIdle();
+		}
 		
 		//Update home card
 		refreshIntroductionCard();
 	}
 	
 	void saveEnableState(){
-		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(me);
+		StateStore prefs = getStateStore();
 		SharedPreferences.Editor ed = prefs.edit();
 		ed.putBoolean(SERVICE_ENABLED, enabled);
 		ed.commit();
+		prefs.flush();
 	}
 
-	//structure for holding title and id
-	class VideoInfo{
-		String id, title, duration;
-		public VideoInfo(String i, String tit, String dur){
-			id = i; title = tit; duration = dur;
-		}
-	}
-	
-	String fetchVideoDurationFromContents(List contents){
-		//fetch the video duration from the content if we can find it
-		final String TIME_DENOTE = "Time:</span>";
-		Iterator contiter = contents.iterator();
-		while(contiter.hasNext()){
-			SyndContent content = (SyndContent)contiter.next();
-			if(content.getValue().contains(TIME_DENOTE)){
-				//This is the one we *probably* want to parse.
+	/**
+	 * Decides which feed entries get delivered as it is handed them, in feed order. An entry is new if
+	 * it isn't in the feed's seen index, so reordered feeds and removed videos don't confuse it. When
+	 * only new videos are being sent, the read stops after a run of SEEN_RUN_LIMIT already seen videos,
+	 * since the rest of the feed has almost certainly been delivered before.
+	 * <p>
+	 * When feeds are merged, a video another feed has already delivered is not new either. It doesn't
+	 * count towards the seen run though, this feed may never have delivered the videos after it, and
+	 * it is left out when the whole feed is sent.
+	 */
+	class FeedCollector implements FeedSource.EntryHandler{
+		final SeenVideoIndex seen;
+		final SeenVideoIndex delivered; //null unless feeds are merged
+		//The single-id cursor from older versions. Only used while the index is still empty so upgrading
+		//doesn't re-deliver the whole feed - everything from the cursor down counts as seen.
+		final String legacyCursor;
+		boolean pastLegacyCursor = false;
+		//This list will hold all of the videos in the feed that we are going to deliver.
+		final ArrayList<VideoInfo> vids = new ArrayList<VideoInfo>();
+		//Every video that was read, these are marked as seen once the delivery has gone through.
+		final ArrayList<String> readIds = new ArrayList<String>();
+		final ArrayList<Long> readPublished = new ArrayList<Long>();
+		int newVideos = 0, seenRun = 0, filtered = 0, duplicates = 0;
+		
+		FeedCollector(SeenVideoIndex index, SeenVideoIndex deliveredIndex, String cursor){
+			seen = index;
+			delivered = deliveredIndex;
+			legacyCursor = index.isEmpty() && cursor != null && cursor.length() > 0 ? cursor : null;
+		}
+		
+		public boolean onEntry(VideoInfo vid){
+			if(vid.id.equals("")){
+				Log.v(TAG, "Error parsing video id for: " + vid.title);
+				return true;
+			}
+			readIds.add(vid.id);
+			readPublished.add(vid.published);
+			if(legacyCursor != null && legacyCursor.equals(vid.id)){
+				pastLegacyCursor = true;
+			}
+			boolean elsewhere = delivered != null && delivered.contains(vid.id);
+			if(!pastLegacyCursor && !seen.contains(vid.id) && !elsewhere){
+				seenRun = 0;
+				//Filtered out videos are still marked as seen, so they never count as new again. When the whole
+				//feed is sent they go through the filter again on every sync, since seen videos are sent too.
+				if(filter.accepts(vid)){
+					newVideos++;
+					vids.add(vid);
+				}else{
+					filtered++;
+				}
+				return true;
+			}
+			if(!elsewhere || pastLegacyCursor || seen.contains(vid.id)){
+				seenRun++;
+			}else{
+				duplicates++; //new to this feed, but already delivered from another
+			}
+			if(sendAllVideos){
+				//The whole feed goes out, so keep reading however many seen videos there are. Videos this
+				//feed never had itself stay out though, another feed's bundle already carried them.
+				if((!elsewhere || seen.contains(vid.id)) && filter.accepts(vid)){
+					vids.add(vid);
+				}
+			}else if(seenRun >= SEEN_RUN_LIMIT){
+				Log.v(TAG, "Hit a run of already seen videos in the feed. " + newVideos + " new videos found.");
+				return false; //we've hit the point in the feed where we already were at, don't bother reading on.
+			}
+			return true;
+		}
+		
+		boolean hasNewVideos(){
+			return newVideos > 0;
+		}
+	}
+	
+	/**
+	 * Kicks off a sync of the given feeds on the sync scheduler. Feeds that are still being
+	 * synced from an earlier alarm are folded into that sync rather than fetched twice.
+	 */
+	void syncFeeds(List<String> feeds, long wakeup){
+		//Count the sync before it starts, it may well finish before syncAll() returns.
+		synchronized(this){
+			activeSyncs++;
+		}
+		armFallbackPoll();
+		final AdaptivePollScheduler pollScheduler = getPollScheduler();
+		final SyncMetrics.Cycle cycle = getMetrics().startCycle(wakeup, persistentWorker);
+		boolean started = syncScheduler.syncAll(feeds, new FeedSyncScheduler.FeedSyncer<FeedResult>(){
+			public FeedResult syncFeed(String feedUrl) throws Exception{
 				try{
-					String duration = content.getValue().substring(content.getValue().indexOf(TIME_DENOTE) + TIME_DENOTE.length());
-					//now we are left with something like this: `<span style="color: #000000; font-size: 11px; font-weight: bold;">39:52</span></td> ...{crud}`
-					//cut off the last part first.
-					if(duration.contains("</span>")){
-						duration = duration.substring(0, duration.indexOf("</span>"));
-						//and cut out just the time.
-						int index = duration.lastIndexOf('>');
-						if(index == -1){
-							break;
+					FeedResult result = parseFeed(feedUrl, cycle);
+					pollScheduler.recordSync(feedUrl, result, System.currentTimeMillis());
+					getJournal().fetchSucceeded(feedUrl);
+					return result;
+				}catch(Exception e){
+					cycle.recordFailure();
+					getJournal().fetchFailed(feedUrl, System.currentTimeMillis());
+					pollScheduler.recordFailure(feedUrl, System.currentTimeMillis());
+					throw e;
+				}
+			}
+		}, new FeedSyncScheduler.CompletionHandler<FeedResult>(){
+			public void onSyncComplete(final List<FeedResult> results, final List<String> synced){
+				if(persistentWorker){
+					//Build and write the cards on the worker, where the card state is warm.
+					getWorker().post(new Runnable(){
+						public void run(){
+							deliverFeedResults(results, synced, cycle);
 						}
-						duration = duration.substring(index + 1); //should have the final string now.
-						if(duration.length() > 12){ //This is a final sanity check
-							break;
+					});
+				}else{
+					deliverFeedResults(results, synced, cycle);
+				}
+			}
+		});
+		if(!started){
+			Log.v(TAG, "Nothing new to sync, any due feeds were folded into the running sync.");
+			scheduleNextPoll();
+			stopIfIdle();
+		}
+	}
+	
+	/**
+	 * Syncs the feeds that are due on this wakeup.
+	 * @param wakeup The wall clock time the alarm was due.
+	 */
+	void syncDueFeeds(long wakeup){
+		List<String> due = adaptivePolling ? getPollScheduler().dueFeeds(feedUrls, System.currentTimeMillis()) : feedUrls;
+		due = withoutPendingBatches(due);
+		Log.v(TAG, "SyncOp, syncing " + due.size() + " of " + feedUrls.size() + " feeds now.");
+		syncFeeds(due, wakeup);
+	}
+	
+	/**
+	 * @return The persistent worker's handler, starting the worker if it isn't running.
+	 */
+	static synchronized Handler getWorker(){
+		if(worker == null){
+			worker = new HandlerThread("Feed Worker.", Process.THREAD_PRIORITY_BACKGROUND);
+			worker.start();
+			workerHandler = new Handler(worker.getLooper());
+		}
+		return workerHandler;
+	}
+	
+	static synchronized void stopWorker(){
+		if(worker != null){
+			worker.quit();
+			worker = null;
+			workerHandler = null;
+			warmCards = null;
+		}
+	}
+	
+	static synchronized boolean onWorkerThread(){
+		return worker != null && Thread.currentThread() == worker;
+	}
+	
+	/**
+	 * @return The card state to build with: the warm one on the persistent worker, a new one anywhere else.
+	 */
+	CardContext getCardContext(){
+		if(onWorkerThread()){
+			if(warmCards == null){
+				warmCards = new CardContext(getContentResolver());
+			}
+			return warmCards;
+		}
+		return new CardContext(getContentResolver());
+	}
+	
+	/**
+	 * Picks the reader for a feed: the format given for it in the configuration file if there is one,
+	 * otherwise JSON for a JSON response and the streaming or ROME reader for anything else.
+	 */
+	FeedSource getFeedSource(String feedUrl, String contentType){
+		String format = config == null ? null : config.feedFormats.get(feedUrl);
+		if(format == null){
+			if(contentType != null && contentType.toLowerCase().contains("json")){
+				format = FeedConfig.FORMAT_JSON;
+			}else{
+				format = streamingParser ? FeedConfig.FORMAT_ATOM : FeedConfig.FORMAT_ROME;
+			}
+		}
+		if(format.equals(FeedConfig.FORMAT_JSON)){
+			return new JsonFeedSource();
+		}else if(format.equals(FeedConfig.FORMAT_ROME)){
+			return new RomeFeedSource();
+		}
+		return getEntryReader();
+	}
+	
+	/**
+	 * @return The Atom reader to use on this thread. Pool threads keep theirs in persistent worker mode.
+	 */
+	AtomEntryReader getEntryReader(){
+		if(!persistentWorker){
+			return new AtomEntryReader();
+		}
+		AtomEntryReader reader = warmReaders.get();
+		if(reader == null){
+			reader = new AtomEntryReader();
+			warmReaders.set(reader);
+		}
+		return reader;
+	}
+	
+	/**
+	 * Retries the journaled work that failed earlier: card batches are written again straight from the
+	 * journal, and feeds that could not be fetched are synced again.
+	 * @param all Retry everything, not just what is due (connectivity has just come back).
+	 * @param wakeup The wall clock time the retry alarm was due.
+	 */
+	void retryPending(final boolean all, final long wakeup){
+		synchronized(this){
+			activeSyncs++;
+		}
+		(new Thread("Retry Thread."){
+			public void run(){
+				try{
+					if(!getStateStore().getBoolean(SERVICE_ENABLED, true)){
+						//The journal is kept, the work is picked up again when the feed is turned back on.
+						Log.v(TAG, "Feed is turned off, not retrying.");
+						scheduleRetry();
+						return;
+					}
+					SyncJournal journal = getJournal();
+					long now = System.currentTimeMillis();
+					//Batches that went into one merged bundle are written again together, so the bundle comes out the same.
+					LinkedHashMap<String, ArrayList<SyncJournal.PendingBatch>> bundles = new LinkedHashMap<String, ArrayList<SyncJournal.PendingBatch>>();
+					for(SyncJournal.PendingBatch batch : journal.dueBatches(now, all)){
+						ArrayList<SyncJournal.PendingBatch> bundle = bundles.get(batch.bundleId);
+						if(bundle == null){
+							bundle = new ArrayList<SyncJournal.PendingBatch>();
+							bundles.put(batch.bundleId, bundle);
 						}
-						return duration;
+						bundle.add(batch);
 					}
-				}catch(Exception e){
-					e.printStackTrace();
+					for(ArrayList<SyncJournal.PendingBatch> bundle : bundles.values()){
+						ArrayList<FeedResult> results = new ArrayList<FeedResult>();
+						for(SyncJournal.PendingBatch batch : bundle){
+							Log.v(TAG, "Retrying card batch " + batch.batchId + " for " + batch.feedUrl + ", attempt " + (batch.attempts + 1));
+							results.add(batch.toResult());
+						}
+						try{
+							pushCards(results, true);
+						}catch(Exception e){
+							Log.v(TAG, "Retry of card batch failed: " + e.getMessage());
+							journal.bundleFailed(bundle.get(0).bundleId, System.currentTimeMillis());
+							continue;
+						}
+						boolean committed = true;
+						for(int i = 0; i < bundle.size(); i++){
+							SyncJournal.PendingBatch batch = bundle.get(i);
+							try{
+								commitDelivered(results.get(i), batch.etag, batch.lastModified);
+								journal.batchDelivered(batch.batchId);
+							}catch(Exception e){
+								Log.v(TAG, "Failed to commit retried card batch: " + e.getMessage());
+								committed = false;
+							}
+						}
+						if(!committed){
+							journal.bundleFailed(bundle.get(0).bundleId, System.currentTimeMillis());
+						}
+					}
+					List<String> feeds = withoutPendingBatches(journal.dueFetches(now, all));
+					if(!feeds.isEmpty()){
+						syncFeeds(feeds, wakeup);
+					}
+					getStateStore().flush();
+					scheduleRetry();
+				}finally{
+					stopIfIdle();
+				}
+			}
+		}).start();
+	}
+	
+	/**
+	 * Drops the feeds that still have cards waiting in the journal. Their seen index hasn't been
+	 * updated yet, so syncing them would push the same videos again.
+	 */
+	List<String> withoutPendingBatches(List<String> feeds){
+		SyncJournal journal = getJournal();
+		ArrayList<String> ready = new ArrayList<String>();
+		for(String feed : feeds){
+			if(!journal.hasPendingBatch(feed)){
+				ready.add(feed);
+			}
+		}
+		return ready;
+	}
+	
+	SyncJournal getJournal(){
+		return SyncJournal.get(getJournalFile());
+	}
+	
+	File getJournalFile(){
+		return new File(getFilesDir(), SyncJournal.FILE_NAME);
+	}
+	
+	PendingIntent getRetryIntent(){
+		Intent i = new Intent(this, YoutubeFeedService.class);
+		i.putExtra(FEED_SERVICE_OP, OP_RETRY);
+		//A different request code, so this alarm doesn't replace the sync alarm.
+		return PendingIntent.getService(this, 1, i, 0);
+	}
+	
+	/**
+	 * The retry intent for an alarm set to go off at the given time, see getAlarmIntent(long, long).
+	 */
+	PendingIntent getRetryIntent(long at){
+		Intent i = new Intent(this, YoutubeFeedService.class);
+		i.putExtra(FEED_SERVICE_OP, OP_RETRY);
+		i.putExtra(ALARM_TIME, at);
+		return PendingIntent.getService(this, 1, i, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+	
+	/**
+	 * Sets an alarm for the next journaled retry, or cancels it if nothing is pending or the feed is off.
+	 */
+	void scheduleRetry(){
+		AlarmManager mgr = (AlarmManager)getSystemService(Context.ALARM_SERVICE);
+		long at = getStateStore().getBoolean(SERVICE_ENABLED, true) ? getJournal().nextRetry() : -1;
+		if(at == -1){
+			mgr.cancel(getRetryIntent());
+			return;
+		}
+		Log.v(TAG, "Next retry of failed work in " + ((at - System.currentTimeMillis()) / 1000) + " seconds.");
+		mgr.set(AlarmManager.RTC_WAKEUP, at, getRetryIntent(at));
+	}
+	
+	/**
+	 * Runs work off the main thread, on the persistent worker if there is one and on a thread of its own
+	 * otherwise. It counts as a sync so the service doesn't stop before the work is done.
+	 */
+	void runInBackground(String name, final Runnable work){
+		synchronized(this){
+			activeSyncs++;
+		}
+		Runnable counted = new Runnable(){
+			public void run(){
+				try{
+					work.run();
+				}finally{
+					stopIfIdle();
+				}
+			}
+		};
+		if(persistentWorker){
+			getWorker().post(counted);
+		}else{
+			(new Thread(counted, name)).start();
+		}
+	}
+	
+	/**
+	 * Writes out the sync metrics off the main thread. It counts as a sync so the service stops once it is done.
+	 */
+	void dumpMetrics(){
+		synchronized(this){
+			activeSyncs++;
+		}
+		(new Thread("Metrics Dump Thread."){
+			public void run(){
+				try{
+					getMetrics().dump();
+				}finally{
+					stopIfIdle();
 				}
-				break; //in case we fell through
 			}
+		}).start();
+	}
+	
+	/**
+	 * Called whenever a sync finishes. Stops the service once there are no syncs left, using the most
+	 * recent start id so a start that comes in at the same time isn't lost.
+	 */
+	synchronized void stopIfIdle(){
+		activeSyncs--;
+		if(activeSyncs == 0 && persistentWorker && enabled){
+			Log.v(TAG, "No syncs left in flight, staying up as the persistent worker.");
+		}else if(activeSyncs == 0){
+			Log.v(TAG, "No syncs left in flight, stopping service (start id " + lastStartId + ").");
+			stopSelf(lastStartId);
 		}
-		return "";
 	}
 	
-	void parseFeed(){
-		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-		String lastPostedVideoId = prefs.getString(LAST_VIDEO_ID, "");
+	String lastVideoKey(String feedUrl){
+		return LAST_VIDEO_ID + ":" + feedUrl;
+	}
+	
+	File getSeenIndexDir(){
+		return new File(getFilesDir(), "seen");
+	}
+	
+	/**
+	 * @return The index of every video delivered from any feed, used to drop videos that turn up in several feeds.
+	 *         It is sized to hold a full page of every feed.
+	 */
+	SeenVideoIndex getDeliveredIndex() throws IOException{
+		return SeenVideoIndex.forFeed(getSeenIndexDir(), ALL_FEEDS, SeenVideoIndex.capacityFor(feedUrls.size() * FEED_PAGE_ENTRIES));
+	}
+	
+	SyncMetrics getMetrics(){
+		return new SyncMetrics(new File(getFilesDir(), "metrics.ring"));
+	}
+	
+	/**
+	 * Fetches and reads a single feed. Nothing is pushed or saved here, see deliverFeedResults().
+	 * @return The videos to deliver from this feed, or null if the feed hasn't changed.
+	 */
+	FeedResult parseFeed(String feedUrl, SyncMetrics.Cycle cycle) throws Exception{
+		SharedPreferences prefs = getStateStore();
+		//Older versions tracked a single cursor per feed (or just one overall), it seeds a brand new seen index.
+		String lastPostedVideoId = prefs.getString(lastVideoKey(feedUrl), prefs.getString(LAST_VIDEO_ID, ""));
+		
+		Log.v(TAG, "Parsing feed: " + feedUrl + " Last Vid ID=" + lastPostedVideoId);
 		
-		Log.v(TAG, "Parsing feed: " + feedUrl);
+		//Conditional GET - if the feed hasn't changed since the last poll there is nothing to parse.
+		FeedFetcher fetcher = new FeedFetcher(prefs, fetchTimeout, maxFeedSize);
+		FeedFetcher.Response response = fetcher.fetch(feedUrl);
+		if(response == null){
+			Log.v(TAG, "Feed has not been modified since the last sync.");
+			cycle.recordNotModified(fetcher);
+			return null;
+		}
 		
 		try{
-			SyndFeedInput input = new SyndFeedInput();
-			SyndFeed feed = input.build(new XmlReader(new URL(feedUrl)));
-			Log.v(TAG, "Feed contains " + feed.getEntries().size() + " items. Last Vid ID=" + lastPostedVideoId);
-			
-			//This list will hold all of the IDs in the RSS stream, which we will then iterate to deliver. We have to do two iterations to make
-			//sure we don't re-deliver movies and such.
-			ArrayList<VideoInfo> vids = new ArrayList<VideoInfo>();
-			Iterator entries = feed.getEntries().iterator();
-			boolean hasNewVideos = true; boolean firstEntry = true; boolean hitEnd = false;
-			while(entries.hasNext()){
-				SyndEntry entry = (SyndEntry)entries.next();
-				String link = entry.getLink(); //this will be something like youtube.com/watch?v=<id>&featuer=blahblahblah, we just want the id
-				String id = link.substring(link.indexOf("watch?v=") + 8);
-				if(id.contains("&")){
-					id = id.substring(0, id.indexOf("&"));
+			//The parser reads straight off the network, so wall time is mostly the download and cpu time is the parse.
+			long readStart = System.nanoTime(), cpuStart = Debug.threadCpuTimeNanos();
+			FeedCollector collector = new FeedCollector(SeenVideoIndex.forFeed(getSeenIndexDir(), feedUrl),
+														usingMergedBundles() ? getDeliveredIndex() : null, lastPostedVideoId);
+			FeedSource source = getFeedSource(feedUrl, response.getContentType());
+			int read = source.read(response.getStream(), response.getContentType(), collector);
+			Log.v(TAG, "Read " + read + " entries from the feed with " + source.getClass().getSimpleName() + ", "
+				  + response.getWireBytes() + " bytes over the wire.");
+			if(collector.filtered > 0){
+				Log.v(TAG, "Filtered out " + collector.filtered + " new videos.");
+			}
+			if(collector.duplicates > 0){
+				Log.v(TAG, "Dropped " + collector.duplicates + " videos already delivered from other feeds.");
+			}
+			if(!collector.hasNewVideos()){
+				Log.v(TAG, "Feed does not have any new videos");
+			}
+			ArrayList<VideoInfo> vids = collector.hasNewVideos() ? collector.vids : new ArrayList<VideoInfo>();
+			cycle.recordFetch(fetcher, response, (System.nanoTime() - readStart) / 1000000,
+							  (Debug.threadCpuTimeNanos() - cpuStart) / 1000000, collector.readIds.size(), vids.size());
+			return new FeedResult(feedUrl, response, vids, collector.readIds, collector.readPublished);
+		}finally{
+			response.close();
+		}
+	}
+	
+	/**
+	 * Pushes the new videos from every feed in a sync to the timeline in a single write, then
+	 * marks everything that was read as seen.
+	 * @param synced The feeds the sync ran, they are released from the sync scheduler once this is done with them.
+	 */
+	void deliverFeedResults(List<FeedResult> results, List<String> synced, SyncMetrics.Cycle cycle){
+		try{
+			SyncJournal journal = getJournal();
+			ArrayList<FeedResult> toPush = new ArrayList<FeedResult>();
+			boolean pushed = false;
+			//Merged, everything in this sync goes into one bundle.
+			String mergedBundleId = usingMergedBundles() ? UUID.randomUUID().toString() : null;
+			for(FeedResult result : results){
+				if(!result.vids.isEmpty()){
+					result.bundleId = mergedBundleId;
+					//Write ahead, if the push doesn't make it the journal has everything needed to retry it.
+					journal.addBatch(result);
+					toPush.add(result);
 				}
-				if(id.equals("")){
-					Log.v(TAG, "Error parsing video title.." + entry.getLink());
+			}
+			try{
+				if(!toPush.isEmpty()){
+					if(cacheThumbnails){
+						//Pull the thumbnails down first so the cards can point at local copies. Stub cards get theirs when they are hydrated.
+						ArrayList<String> ids = new ArrayList<String>();
+						for(ArrayList<VideoInfo> vids : bundleVideos(toPush).values()){
+							int count = usingLazyCards() ? Math.min(CardHydrator.EAGER_CARDS, vids.size()) : vids.size();
+							for(int i = 0; i < count; i++){
+								ids.add(vids.get(i).id);
+							}
+						}
+						int hits = ThumbnailCache.getInstance(this).prefetch(ids);
+						cycle.recordThumbnails(hits, ids.size() - hits);
+					}
+					//Push the videos to the timeline
+					long writeStart = System.nanoTime();
+					pushCards(toPush, false);
+					cycle.recordTimelineWrite((System.nanoTime() - writeStart) / 1000000);
+					pushed = true;
+				}else{
+					//Nothing new, a good time to tidy up the timeline.
+					enforceRetention();
 				}
-				if(firstEntry && lastPostedVideoId != null && lastPostedVideoId.equals(id)){
-					Log.v(TAG, "Feed does not have any new videos");
-					hasNewVideos = false;
-					break;
+			}catch(Exception e){
+				Log.v(TAG, "Failed to deliver feed results, they will be retried from the journal.");
+				e.printStackTrace();
+				LinkedHashSet<String> bundles = new LinkedHashSet<String>();
+				for(FeedResult result : toPush){
+					bundles.add(result.bundleId);
+				}
+				for(String bundleId : bundles){
+					journal.bundleFailed(bundleId, System.currentTimeMillis());
 				}
-				firstEntry = false;
-				if(lastPostedVideoId != null && lastPostedVideoId.equals(id)){
-					if(!hitEnd){
-						Log.v(TAG, "Hit the last processed video in the feed. " + vids.size() + " new videos found.");
-						hitEnd = true;
+				//Feeds with nothing to push are still done with.
+				ArrayList<FeedResult> done = new ArrayList<FeedResult>();
+				for(FeedResult result : results){
+					if(result.vids.isEmpty()){
+						done.add(result);
+					}
+				}
+				results = done;
+			}
+		
+			//Last but not least, make sure we record what we have delivered so it isn't posted again.
+			LinkedHashSet<String> uncommitted = new LinkedHashSet<String>();
+			for(FeedResult result : results){
+				try{
+					commitDelivered(result, result.response.etag, result.response.lastModified);
+					if(result.batchId != null){
+						journal.batchDelivered(result.batchId);
 					}
-					if(!sendAllVideos){ //then do not include any more videos in the array list we will be sending off to the cards.
-						break; //we've hit the point in the feed where we already were at, don't repost cards.
+				}catch(IOException e){
+					//The batch stays in the journal, retrying it rewrites the same cards and commits again.
+					Log.v(TAG, "Failed to commit delivered videos for " + result.feedUrl + ": " + e.getMessage());
+					if(result.batchId != null){
+						uncommitted.add(result.bundleId);
 					}
 				}
-				vids.add(new VideoInfo(id, entry.getTitle(), fetchVideoDurationFromContents(entry.getContents())));
 			}
+			for(String bundleId : uncommitted){
+				journal.bundleFailed(bundleId, System.currentTimeMillis());
+			}
+			//Everything the cycle changed in the preferences goes out in one write.
+			getStateStore().flush();
+			getMetrics().finishCycle(cycle);
+			if(pushed){
+				//The home card's sync summary and counts now include this delivery.
+				refreshIntroductionCard(true);
+			}
+		}finally{
+			//The feeds are committed or journaled, so they can be synced again. Those asked for meanwhile are synced now.
+			List<String> again = syncScheduler.release(synced);
+			if(!again.isEmpty()){
+				again = withoutPendingBatches(again);
+				Log.v(TAG, "Re-syncing " + again.size() + " feeds that were asked for while they were being delivered.");
+				if(!again.isEmpty()){
+					syncFeeds(again, System.currentTimeMillis());
+				}
+			}
+			//Even if something above blew up, keep polling and let the service stop.
+			scheduleNextPoll();
+			scheduleRetry();
 			
-			//Last but not least, make sure we save the latest video we received back into the shared prefs.
-			if(hasNewVideos){
-				//Push the videos to the timeline
-				pushCards(vids);
-				//Save the newest card as the latest read video.
-				VideoInfo latestVid = vids.get(0);
-				SharedPreferences.Editor ed = prefs.edit();
-				ed.putString(LAST_VIDEO_ID, latestVid.id);
-				ed.commit();
-				Log.v(TAG, "Saving last read video id: " + latestVid.id);
-			}
-		}catch(Exception rss){
-			Log.v(TAG, "Failed to fetch feed");
-			rss.printStackTrace();
+			//stop the service if it is no longer needed.
+			stopIfIdle();
+		}
+	}
+	
+	/**
+	 * Removes old cards and bundles from the timeline and prunes the video store, if that hasn't been
+	 * done in the last hour.
+	 */
+	void enforceRetention(){
+		SharedPreferences prefs = getStateStore();
+		long now = System.currentTimeMillis();
+		if(!RetentionManager.isDue(prefs, now)){
+			return;
+		}
+		RetentionManager.markRun(prefs, now);
+		try{
+			RetentionManager retention = new RetentionManager(VideoStore.getInstance(this), getTimeline(),
+															  getBundleStateDir(), retainBundles, retainAge);
+			int removed = retention.enforce(now);
+			if(removed > 0){
+				Log.v(TAG, "Removed " + removed + " old cards from the timeline.");
+				refreshIntroductionCard(true);
+			}
+		}catch(Exception e){
+			//Whatever wasn't removed is still in the store, and is picked up next time.
+			Log.v(TAG, "Failed to remove old cards: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Commits a feed's state once its videos are on the timeline: everything read is marked as seen,
+	 * the validators are saved so the next poll can be conditional, and the delivered videos are
+	 * added to the video store.
+	 */
+	void commitDelivered(FeedResult result, String etag, String lastModified) throws IOException{
+		SeenVideoIndex seen = SeenVideoIndex.forFeed(getSeenIndexDir(), result.feedUrl);
+		long now = System.currentTimeMillis();
+		for(String id : result.readIds){
+			seen.markSeen(id, now);
+		}
+		seen.force();
+		Log.v(TAG, "Marked " + result.readIds.size() + " videos as seen for " + result.feedUrl);
+		FeedFetcher.commitValidators(getStateStore(), result.feedUrl, etag, lastModified);
+		
+		if(usingMergedBundles() && !result.vids.isEmpty()){
+			SeenVideoIndex delivered = getDeliveredIndex();
+			for(VideoInfo vid : result.vids){
+				delivered.markSeen(vid.id, now);
+			}
+			delivered.force();
 		}
 		
-		//stop the service, it is no longer needed.
-		stopSelf();
+		if(!result.vids.isEmpty()){
+			boolean[] thumbCached = new boolean[result.vids.size()];
+			for(int i = 0; i < thumbCached.length; i++){
+				thumbCached[i] = cacheThumbnails && ThumbnailCache.getInstance(this).isCached(result.vids.get(i).id);
+			}
+			try{
+				VideoStore.getInstance(this).recordDelivered(result, result.cardIds, thumbCached, now);
+			}catch(RuntimeException e){
+				//The store is a record of what was delivered, losing a write of it doesn't affect delivery.
+				Log.v(TAG, "Failed to store delivered videos for " + result.feedUrl + ": " + e.getMessage());
+			}
+		}
 	}
 	
+	/**
+	 * Builds a bundle of cards for each bundle id among the results (one per feed, or a single merged
+	 * one) and inserts all of them with one bulk insert. In bundle reuse mode, each feed's existing
+	 * bundle is updated in place instead.
+	 * @param replace This is a retry of a write that may have partly landed. Card ids are derived from the
+	 *                bundle and video, so every card is deleted before it is inserted and none are doubled up.
+	 */
+	void pushCards(List<FeedResult> results, boolean replace) throws Exception{
+		pushCards(results, replace, getTimeline());
+	}
 	
-
-	void pushCards(ArrayList<VideoInfo> vidInfos){	
-		final String HTML_B4_IMG = "<article class=\"photo\">\n  <img src=\"";
-		final String HTML_B4_TXT = "\" width=\"100%\" height=\"100%\">\n  <div class=\"photo-overlay\"></div><section><p class=\"text-auto-size\">";
-		final String HTML_FOOT = "</p></section></article>";
+	void pushCards(List<FeedResult> results, boolean replace, TimelineSink timeline) throws Exception{
+		CardContext ctx = getCardContext();
+		if(reuseBundles){
+			updateBundles(results, ctx, timeline, replace);
+			return;
+		}
 		
-    	ContentResolver cr = getContentResolver();
-    	//For some reason an TimelineHelper instance is required to call some methods.
-    	final TimelineHelper tlHelper = new TimelineHelper();
-    	
-    	String bundleId = UUID.randomUUID().toString();
-    	ArrayList<TimelineItem> cards = new ArrayList<TimelineItem>();
+		ArrayList<TimelineItem> cards = new ArrayList<TimelineItem>();
+		//A retry writes full cards, there may be nobody left to hydrate stubs.
+		ArrayList<CardHydrator.Job> stubs = usingLazyCards() && !replace ? new ArrayList<CardHydrator.Job>() : null;
+		for(Map.Entry<String, ArrayList<VideoInfo>> bundle : bundleVideos(results).entrySet()){
+			buildBundle(bundle.getValue(), bundle.getKey(), ctx, cards, stubs);
+		}
+		for(FeedResult result : results){
+			//A video in several of the merged feeds has a single card, every result points at it.
+			result.cardIds.clear();
+			for(VideoInfo vid : result.vids){
+				result.cardIds.add(cardId(result.bundleId, vid.id));
+			}
+		}
+		
+		if(replace){
+			ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+			for(TimelineItem card : cards){
+				ops.add(ContentProviderOperation.newDelete(cardUri(card.getId())).build());
+				ops.add(ContentProviderOperation.newInsert(TimelineProvider.TIMELINE_URI).withValues(TimelineHelper.toContentValues(card)).build());
+			}
+			timeline.apply(ops);
+			return;
+		}
+		//Bulk insert the cards
+		timeline.insert(cards);
+		
+		if(stubs != null && !stubs.isEmpty()){
+			Log.v(TAG, "Inserted " + stubs.size() + " stub cards, hydrating them in the background.");
+			//Hydration keeps the service up like a sync does.
+			synchronized(this){
+				activeSyncs++;
+			}
+			timeline.hydrate(stubs, new Runnable(){
+				public void run(){
+					stopIfIdle();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Groups the videos of the results by the bundle they go into, giving results without one a bundle of
+	 * their own. Where several results share a bundle their videos are merged: each video only once, and
+	 * newest first.
+	 */
+	LinkedHashMap<String, ArrayList<VideoInfo>> bundleVideos(List<FeedResult> results){
+		LinkedHashMap<String, ArrayList<VideoInfo>> bundles = new LinkedHashMap<String, ArrayList<VideoInfo>>();
+		HashMap<String, HashSet<String>> bundleIds = new HashMap<String, HashSet<String>>();
+		for(FeedResult result : results){
+			if(result.bundleId == null){
+				result.bundleId = UUID.randomUUID().toString();
+			}
+			ArrayList<VideoInfo> vids = bundles.get(result.bundleId);
+			if(vids == null){
+				//The usual single feed bundle keeps the feed's order.
+				bundles.put(result.bundleId, result.vids);
+				continue;
+			}
+			HashSet<String> ids = bundleIds.get(result.bundleId);
+			if(ids == null){
+				vids = new ArrayList<VideoInfo>(vids);
+				bundles.put(result.bundleId, vids);
+				ids = new HashSet<String>();
+				for(VideoInfo vid : vids){
+					ids.add(vid.id);
+				}
+				bundleIds.put(result.bundleId, ids);
+			}
+			for(VideoInfo vid : result.vids){
+				if(ids.add(vid.id)){
+					vids.add(vid);
+				}
+			}
+		}
+		for(String bundleId : bundleIds.keySet()){
+			Collections.sort(bundles.get(bundleId), NEWEST_FIRST);
+		}
+		return bundles;
+	}
+	
+	//Videos without a publish time sort last, the sort is stable so they keep their feed order.
+	static final Comparator<VideoInfo> NEWEST_FIRST = new Comparator<VideoInfo>(){
+		public int compare(VideoInfo a, VideoInfo b){
+			return a.published == b.published ? 0 : a.published > b.published ? -1 : 1;
+		}
+	};
+	
+	boolean usingMergedBundles(){
+		//Bundle reuse keeps a bundle per feed.
+		return mergeFeeds && !reuseBundles;
+	}
+	
+	boolean usingLazyCards(){
+		//Bundle reuse diffs against what is on the timeline, it needs the full cards there.
+		return lazyCards && !reuseBundles;
+	}
+	
+	/**
+	 * @return A card id that is the same every time the given card of a bundle is built.
+	 */
+	static String cardId(String bundleId, String key){
+		return UUID.nameUUIDFromBytes((bundleId + "/" + key).getBytes()).toString();
+	}
+
+	/**
+	 * @param stubs If not null, only the newest CardHydrator.EAGER_CARDS videos get full cards. The rest are
+	 *              built as stubs, which are added to this list to be hydrated once they are inserted.
+	 */
+	void buildBundle(ArrayList<VideoInfo> vidInfos, String bundleId, CardContext ctx, ArrayList<TimelineItem> cards,
+					 List<CardHydrator.Job> stubs){	
+    	if(bundleId == null){
+    		bundleId = UUID.randomUUID().toString();
+    	}
 
     	//Push a home card to the end of the list so the user can disable the feed if desired.
-    	TimelineItem.Builder ntib = tlHelper.createTimelineItemBuilder(me, new SettingsSecure(cr));
-    	applyHomeCardValues(ntib);
-    	ntib.setBundleId(bundleId);
-    	cards.add(ntib.build());
+    	cards.add(buildBundleHomeCard(bundleId, ctx));
     	
     	//Iterate through all of the new videos coming in and add them to the same bundle. We are iterating in reverse so that
     	//the newest video gets pushed to the top of the stack.
 		ListIterator<VideoInfo> iter = vidInfos.listIterator(vidInfos.size());
     	boolean firstCard = true;
     	while(iter.hasPrevious()){
+    		boolean eager = stubs == null || iter.previousIndex() < CardHydrator.EAGER_CARDS;
     		VideoInfo vidInfo = iter.previous();
-    		ntib = tlHelper.createTimelineItemBuilder(me, new SettingsSecure(cr));
-        	ntib.setTitle("YouTube Feed");
-        	//add the 'view video' option - only works if you have the youtube app installed
-        	ntib.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.VIEW_WEB_SITE).setId(UUID.randomUUID().toString())
-        										  .addValue(MenuValue.newBuilder().setDisplayName("View Video").build()).build());
-        	//add the delete menu option
-        	ntib.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.DELETE).setId(UUID.randomUUID().toString()).build());
-        	ntib.setSendToPhoneUrl("https://www.youtube.com/watch?v=" + vidInfo.id);
-        	ntib.setText(vidInfo.title + " (" + vidInfo.duration + ")");
-        	String html = HTML_B4_IMG + "http://img.youtube.com/vi/" + vidInfo.id + "/hqdefault.jpg" + 
-        				  HTML_B4_TXT + ntib.getText() + HTML_FOOT;
-        	ntib.setHtml(html);
-        	ntib.setBundleId(bundleId);
+    		TimelineItem.Builder ntib;
+    		if(eager){
+    			ntib = videoCardBuilder(vidInfo, bundleId, ctx);
+    		}else{
+    			ntib = stubCardBuilder(vidInfo, bundleId, ctx);
+    			stubs.add(new CardHydrator.Job(cardId(bundleId, vidInfo.id), vidInfo));
+    		}
         	if(firstCard){
         		ntib.setNotification(NotificationConfig.newBuilder().setLevel(NotificationConfig.Level.DEFAULT)); //Doesn't work, probably because we are sideloading the card
         	}
         	cards.add(ntib.build());
         	firstCard = false;
     	}
+	}
+	
+	TimelineItem buildBundleHomeCard(String bundleId, CardContext ctx){
+    	TimelineItem.Builder ntib = ctx.tlHelper.createTimelineItemBuilder(me, ctx.settings);
+    	applyHomeCardValues(ntib);
+    	ntib.setId(cardId(bundleId, "home"));
+    	ntib.setBundleId(bundleId);
+    	return ntib.build();
+	}
+	
+	TimelineItem.Builder videoCardBuilder(VideoInfo vidInfo, String bundleId, CardContext ctx){
+		TimelineItem.Builder ntib = stubCardBuilder(vidInfo, bundleId, ctx);
+    	String text = videoCardText(vidInfo);
+    	ntib.setText(text);
+    	ntib.setHtml(videoCardHtml(vidInfo, text, ctx));
+    	return ntib;
+	}
+	
+	/**
+	 * A video card without its HTML or duration, see CardHydrator.
+	 */
+	TimelineItem.Builder stubCardBuilder(VideoInfo vidInfo, String bundleId, CardContext ctx){
+		TimelineItem.Builder ntib = ctx.tlHelper.createTimelineItemBuilder(me, ctx.settings);
+		ntib.setId(cardId(bundleId, vidInfo.id));
+    	ntib.setTitle("YouTube Feed");
+    	//add the 'view video' option - only works if you have the youtube app installed
+    	ntib.addMenuItem(ctx.viewVideoMenu);
+    	//add the delete menu option
+    	ntib.addMenuItem(ctx.deleteMenu);
+    	ntib.setSendToPhoneUrl("https://www.youtube.com/watch?v=" + vidInfo.id);
+    	ntib.setText(vidInfo.title);
+    	ntib.setBundleId(bundleId);
+    	return ntib;
+	}
+	
+	static String videoCardText(VideoInfo vidInfo){
+		return vidInfo.title + " (" + vidInfo.duration + ")";
+	}
+	
+	String videoCardHtml(VideoInfo vidInfo, String text, CardContext ctx){
+		return VIDEO_CARD_HTML.render(ctx.html, thumbnailUrl(vidInfo.id), text).toString();
+	}
+	
+	String thumbnailUrl(String videoId){
+		return cacheThumbnails ? ThumbnailCache.getInstance(this).urlFor(videoId) : ThumbnailCache.remoteUrl(videoId);
+	}
+	
+	/**
+	 * @return The service's preferences. Writes are buffered until the store is flushed.
+	 */
+	StateStore getStateStore(){
+		return StateStore.get(this);
+	}
+	
+	TimelineSink getTimeline(){
+		return new GlassTimelineSink(this);
+	}
+	
+	File getBundleStateDir(){
+		return new File(getFilesDir(), "bundles");
+	}
+	
+	static Uri cardUri(String cardId){
+		return Uri.withAppendedPath(TimelineProvider.TIMELINE_URI, cardId);
+	}
+	
+	/**
+	 * Brings the tracked bundle of every feed up to date with a single batch of provider operations,
+	 * then saves the new bundle state. If the batch fails nothing is saved, and the next sync diffs
+	 * against the old state again. Cards the diff deleted are cleared from the video store as well.
+	 */
+	void updateBundles(List<FeedResult> results, CardContext ctx, TimelineSink timeline, boolean replace) throws Exception{
+		ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		ArrayList<TimelineBundleTracker> trackers = new ArrayList<TimelineBundleTracker>();
+		ArrayList<String> deleted = new ArrayList<String>();
+		for(FeedResult result : results){
+			TimelineBundleTracker tracker = TimelineBundleTracker.load(getBundleStateDir(), result.feedUrl);
+			diffBundle(result.vids, result.bundleId, tracker, ctx, replace, ops, deleted);
+			trackers.add(tracker);
+			result.cardIds.clear();
+			for(VideoInfo vid : result.vids){
+				result.cardIds.add(tracker.cards.get(vid.id).cardId);
+			}
+		}
+		
+		Log.v(TAG, "Applying " + ops.size() + " timeline operations.");
+		if(!ops.isEmpty()){
+			timeline.apply(ops);
+		}
+		for(TimelineBundleTracker tracker : trackers){
+			tracker.save();
+		}
+		if(!deleted.isEmpty()){
+			try{
+				VideoStore.getInstance(this).clearCards(deleted);
+			}catch(RuntimeException e){
+				//A stale row only costs retention a delete of a card that is gone already.
+				Log.v(TAG, "Failed to clear " + deleted.size() + " deleted cards from the store: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Works out the provider operations that turn the tracked bundle into one showing vids: new videos
+	 * are inserted, videos whose title or duration changed are rewritten, and (when the whole feed is
+	 * being sent) videos that have dropped out of the feed are deleted. Videos retention retired are
+	 * dropped from vids rather than inserted again. The tracker is updated to match.
+	 * @param deleted Gets the ids of the cards that were deleted.
+	 */
+	void diffBundle(ArrayList<VideoInfo> vids, String newBundleId, TimelineBundleTracker tracker, CardContext ctx,
+					boolean replace, ArrayList<ContentProviderOperation> ops, ArrayList<String> deleted){
+		if(!tracker.hasBundle()){
+			tracker.bundleId = newBundleId != null ? newBundleId : UUID.randomUUID().toString();
+			TimelineItem home = buildBundleHomeCard(tracker.bundleId, ctx);
+			tracker.homeCardId = home.getId();
+			if(replace){
+				ops.add(ContentProviderOperation.newDelete(cardUri(home.getId())).build());
+			}
+			ops.add(ContentProviderOperation.newInsert(TimelineProvider.TIMELINE_URI).withValues(TimelineHelper.toContentValues(home)).build());
+		}
 		
-    	//Bulk insert the cards
-    	tlHelper.bulkInsertTimelineItem(me, cards);
+		if(sendAllVideos){
+			//vids is the whole feed, so anything that isn't in it has expired.
+			HashSet<String> current = new HashSet<String>();
+			for(VideoInfo vid : vids){
+				current.add(vid.id);
+			}
+			Iterator<Map.Entry<String, TimelineBundleTracker.CardRecord>> tracked = tracker.cards.entrySet().iterator();
+			while(tracked.hasNext()){
+				Map.Entry<String, TimelineBundleTracker.CardRecord> entry = tracked.next();
+				if(!current.contains(entry.getKey())){
+					ops.add(ContentProviderOperation.newDelete(cardUri(entry.getValue().cardId)).build());
+					deleted.add(entry.getValue().cardId);
+					tracked.remove();
+				}
+			}
+			//Retired videos only need remembering while they are still in the feed.
+			tracker.retired.retainAll(current);
+		}else{
+			tracker.retired.clear(); //only new videos are sent, and a retired video is never new
+		}
+		
+		//Same as buildBundle(), oldest first so the newest video ends up on top.
+		ListIterator<VideoInfo> iter = vids.listIterator(vids.size());
+		boolean firstCard = true;
+		while(iter.hasPrevious()){
+			VideoInfo vid = iter.previous();
+			TimelineBundleTracker.CardRecord rec = tracker.cards.get(vid.id);
+			if(rec == null && tracker.retired.contains(vid.id)){
+				iter.remove(); //retention took its card down, it isn't delivered again
+			}else if(rec == null){
+				TimelineItem.Builder ntib = videoCardBuilder(vid, tracker.bundleId, ctx);
+				if(firstCard){
+					ntib.setNotification(NotificationConfig.newBuilder().setLevel(NotificationConfig.Level.DEFAULT));
+					firstCard = false;
+				}
+				TimelineItem card = ntib.build();
+				if(replace){
+					ops.add(ContentProviderOperation.newDelete(cardUri(card.getId())).build());
+				}
+				ops.add(ContentProviderOperation.newInsert(TimelineProvider.TIMELINE_URI).withValues(TimelineHelper.toContentValues(card)).build());
+				tracker.cards.put(vid.id, new TimelineBundleTracker.CardRecord(card.getId(), vid.title, vid.duration));
+			}else if(rec.differsFrom(vid)){
+				TimelineItem.Builder ntib = videoCardBuilder(vid, tracker.bundleId, ctx);
+				ntib.setId(rec.cardId);
+				ops.add(ContentProviderOperation.newUpdate(cardUri(rec.cardId)).withValues(TimelineHelper.toContentValues(ntib.build())).build());
+				tracker.cards.put(vid.id, new TimelineBundleTracker.CardRecord(rec.cardId, vid.title, vid.duration));
+			}
+		}
+	}
+	
+	//Card HTML, compiled once.
+	static final CardTemplate VIDEO_CARD_HTML = new CardTemplate("<article class=\"photo\">\n  <img src=\"{thumbnail}\" width=\"100%\" height=\"100%\">\n" +
+			"  <div class=\"photo-overlay\"></div><section><p class=\"text-auto-size\">{text}</p></section></article>");
+	static final CardTemplate HOME_CARD_HTML = new CardTemplate("<article> <section> <b>YouTube Feed for Glass</b><br><div class=\"text-small\" style=\"padding-top:15px;\">" +
+			"Updates Every {interval} minutes</div><div class=\"text-small\" style=\"padding-top:5px;\">Feed:</div><div class=\"blue text-x-small\">{feeds}</div>" +
+			"{!lastSync}{!stats}</section></article>");
+	static final CardTemplate HOME_NOTE_HTML = new CardTemplate("<div class=\"text-x-small\" style=\"padding-top:5px;\">{summary}</div>");
+	//Fixed ids for the home card menu items.
+	static final String HOME_MENU_TOGGLE = "home-toggle";
+	static final String HOME_MENU_DELETE = "home-delete";
+	static final String HOME_CARD_DISABLED_HTML = "<article> <section> <b>YouTube Feed for Glass</b><br /><b class=\"red\">Turned Off</b></section></article>";
+	
+	/**
+	 * @return A line for the home card counting the delivered videos and what is still on the timeline,
+	 *         straight from the video store.
+	 */
+	String deliveredStats(){
+		try{
+			VideoStore store = VideoStore.getInstance(this);
+			long total = store.countVideos();
+			if(total == 0){
+				return "";
+			}
+			long today = store.countDeliveredSince(System.currentTimeMillis() - 24 * 60 * 60 * 1000);
+			return HOME_NOTE_HTML.render(total + " videos delivered, " + today + " in the last day. "
+										 + store.countCards() + " cards in " + store.countBundles() + " bundles on the timeline");
+		}catch(RuntimeException e){
+			Log.v(TAG, "Unable to read video counts: " + e.getMessage());
+			return "";
+		}
 	}
 	
+	/**
+	 * @return The HTML the home card should be showing now.
+	 */
+	String renderHomeCardHtml(){
+		if(!enabled){
+			return HOME_CARD_DISABLED_HTML;
+		}
+		String feeds = feedUrls.size() == 1 ? feedUrls.get(0) : feedUrls.size() + " feeds";
+		long[] lastSync = getMetrics().lastCycle();
+		String syncLine = lastSync == null ? "" : HOME_NOTE_HTML.render(SyncMetrics.summarize(lastSync));
+		return HOME_CARD_HTML.render(String.valueOf(updateInterval / 1000 / 60), feeds, syncLine, deliveredStats());
+	}
 	
+	/**
+	 * @return A hash of the settings the home card shows. The sync summary and counts are left out, they change
+	 *         with every delivery and the delivery and retention paths refresh the card for them.
+	 */
+	String homeCardState(){
+		return Long.toHexString(SeenVideoIndex.hash((enabled ? "on\n" : "off\n") + updateInterval + "\n" + feedUrls));
+	}
 	
 	void applyHomeCardValues(TimelineItem.Builder tibuilder){
-		final String HTML_B4_UPDATE_INTERVAL = "<article> <section> <b>YouTube Feed for Glass</b><br><div class=\"text-small\" style=\"padding-top:15px;\">Updates Every ";
-		final String HTML_B4_FEED_URL = " minutes</div><div class=\"text-small\" style=\"padding-top:5px;\">Feed:</div><div class=\"blue text-x-small\">";
-		final String HTML_FOOT = "</div></section></article>";
-		final String HTML_NOT_ENABLED = "<article> <section> <b>YouTube Feed for Glass</b><br /><b class=\"red\">Turned Off</b></section></article>";
-		
-		String url, text, html;
+		applyHomeCardValues(tibuilder, renderHomeCardHtml());
+	}
+	
+	void applyHomeCardValues(TimelineItem.Builder tibuilder, String html){
+		String url, text;
 		if(enabled){
 			url = "youtubefeedservice://stopFeed";
 			text = "Stop feed";
-			html = HTML_B4_UPDATE_INTERVAL + (updateInterval / 1000 / 60) + HTML_B4_FEED_URL + feedUrl + HTML_FOOT;
 			
 			//pin status.
 			tibuilder.setIsPinned(false);
@@ -434,7 +1479,6 @@ public class YoutubeFeedService extends Service{
 		}else{
 			url = "youtubefeedservice://startFeed";
 			text = "Start feed";
-			html = HTML_NOT_ENABLED;
 			
 			//pin status.
 			tibuilder.setIsPinned(true);
@@ -444,10 +1488,11 @@ public class YoutubeFeedService extends Service{
     	//custom URL that this app will intercept.
 		tibuilder.setSendToPhoneUrl(url);
 		tibuilder.clearMenuItem();
-		tibuilder.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.VIEW_WEB_SITE).setId(UUID.randomUUID().toString())
+		//Menu ids stay the same from update to update, so an unchanged menu isn't rebuilt.
+		tibuilder.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.VIEW_WEB_SITE).setId(HOME_MENU_TOGGLE)
     										       .addValue(MenuValue.newBuilder().setDisplayName(text).build()).build());
     	//delete option
-		tibuilder.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.DELETE).setId(UUID.randomUUID().toString()).build());
+		tibuilder.addMenuItem(MenuItem.newBuilder().setAction(MenuItem.Action.DELETE).setId(HOME_MENU_DELETE).build());
 		
 		//HTML
     	tibuilder.setHtml(html);
@@ -458,42 +1503,71 @@ public class YoutubeFeedService extends Service{
     	//For some reason an TimelineHelper instance is required to call some methods.
     	final TimelineHelper tlHelper = new TimelineHelper();
     	TimelineItem.Builder ntib = tlHelper.createTimelineItemBuilder(me,  new SettingsSecure(cr));
-    	applyHomeCardValues(ntib);
+    	String html = renderHomeCardHtml();
+    	applyHomeCardValues(ntib, html);
     	TimelineItem card = ntib.build();
     	ContentValues vals = TimelineHelper.toContentValues(card);
     	cr.insert(TimelineProvider.TIMELINE_URI, vals);
     	
     	//Store the ID for later use
-		SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(me);
+		StateStore pref = getStateStore();
     	SharedPreferences.Editor editor = pref.edit();
     	editor.putString(HOME_CARD, card.getId());
+    	editor.putString(HOME_CARD_STATE, homeCardState());
     	editor.commit();
+    	pref.flush();
 	}
 	
 	/**
-	 * changes the home card to reflect the current state of the system.
+	 * changes the home card to reflect the current settings. If they are the same as when the card was
+	 * last updated, the timeline isn't touched at all, and neither are the metrics or the video store.
 	 */
 	void refreshIntroductionCard(){
-		SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(me);   
+		refreshIntroductionCard(false);
+	}
+	
+	/**
+	 * changes the home card to reflect the current state of the system.
+	 * @param statsChanged Cards were delivered or removed, so the sync summary and counts are out of date
+	 *                     even if the settings aren't. Only call this with true off the main thread.
+	 */
+	void refreshIntroductionCard(boolean statsChanged){
+		final StateStore pref = getStateStore();
 		String homeCardId = pref.getString(HOME_CARD, null);
 		if(homeCardId == null){ //no point going further
 			return;
 		}
+		final String state = homeCardState();
+		//A turned off card doesn't show the stats.
+		if(state.equals(pref.getString(HOME_CARD_STATE, null)) && !(statsChanged && enabled)){
+			Log.v(TAG, "Home card is already up to date.");
+			return;
+		}
+		final String html = renderHomeCardHtml();
 		
     	final TimelineHelper tlHelper = new TimelineHelper();
     	final ContentResolver cr = getContentResolver();
 		final TimelineItem baseItem = tlHelper.queryTimelineItem(cr, homeCardId);
+		if(baseItem == null){
+			Log.v(TAG, "Home card is no longer on the timeline.");
+			return;
+		}
 		TimelineHelper.Update updater = new TimelineHelper.Update(){
 			@Override
 			public TimelineItem onExecute() {
 	    		TimelineItem.Builder builder = TimelineItem.newBuilder(baseItem);
-	    		applyHomeCardValues(builder);
+	    		applyHomeCardValues(builder, html);
 	    		
 	    		//also, pin this card so that the service can be re-started in the future.
 	    		
 	    		
 	    		//I still haven't figured out quite what the last two booleans here do..
-	    		return tlHelper.updateTimelineItem(me, builder.build(), null, true, false);
+	    		TimelineItem updated = tlHelper.updateTimelineItem(me, builder.build(), null, true, false);
+	    		if(updated != null){
+	    			pref.edit().putString(HOME_CARD_STATE, state).commit();
+	    			pref.flush();
+	    		}
+	    		return updated;
 			}
 		};
 		//Send the callback off to the thread. This should block until the update is complete.